@@ -1,13 +1,21 @@
 package com.atm;
 
 import com.atm.application.ATMFacade;
+import com.atm.exception.CommandException;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class Main {
   public static void main(String[] args) {
     try (ATMFacade app = new ATMFacade()) {
-      app.start();
+      if (args.length > 0) {
+        app.runAdmin(args);
+      } else {
+        app.start();
+      }
+    } catch (CommandException e) {
+      System.err.println(e.getMessage());
+      System.exit(1);
     } catch (Exception e) {
       log.error("Application error", e);
       System.exit(1);
@@ -3,15 +3,27 @@ package com.atm.application;
 import com.atm.cli.ATMCli;
 import com.atm.cli.CLIHandler;
 import com.atm.cli.CLIHandlerImpl;
+import com.atm.command.Command;
+import com.atm.command.ExportCommand;
+import com.atm.command.HotAccountCommand;
+import com.atm.command.ImportUsersCommand;
 import com.atm.database.Database;
+import com.atm.database.DatabaseConfig;
+import com.atm.database.DatabaseFactory;
+import com.atm.exception.CommandException;
 import com.atm.service.balance.BalanceService;
 import com.atm.service.balance.BalanceServiceImpl;
 import com.atm.service.session.SessionService;
-import com.atm.service.session.SessionServiceImpl;
+import com.atm.service.session.SessionServiceFactory;
 import com.atm.service.transaction.TransactionService;
 import com.atm.service.transaction.TransactionServiceImpl;
+import com.atm.service.user.KnownUsernames;
 import com.atm.service.user.UserService;
 import com.atm.service.user.UserServiceImpl;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -22,19 +34,33 @@ public class ATMFacade implements AutoCloseable {
   private final TransactionService transactionService;
   private final BalanceService balanceService;
   private final ATMCli cli;
+  private final Map<String, Command> adminCommands = new HashMap<>();
 
   public ATMFacade() {
     this(new CLIHandlerImpl());
   }
 
   public ATMFacade(CLIHandler cliHandler) {
-    this.database = new Database();
-    this.sessionService = new SessionServiceImpl(database);
-    this.balanceService = new BalanceServiceImpl(database);
-    this.userService = new UserServiceImpl(database, sessionService);
-    this.transactionService = new TransactionServiceImpl(database, balanceService);
+    DatabaseConfig config = DatabaseConfig.load();
+    this.database = DatabaseFactory.create(config);
+    this.sessionService = SessionServiceFactory.create(config, database);
+    this.balanceService =
+        new BalanceServiceImpl(
+            database,
+            config.isBalanceCacheEnabled()
+                ? Duration.ofMillis(config.getBalanceCacheTtlMillis())
+                : null);
+    this.userService =
+        new UserServiceImpl(
+            database,
+            sessionService,
+            config.isUsernameFilterEnabled() ? KnownUsernames.load(database) : null);
+    this.transactionService = new TransactionServiceImpl(database);
     this.cli =
         new ATMCli(userService, sessionService, balanceService, transactionService, cliHandler);
+    adminCommands.put("export", new ExportCommand(userService, transactionService));
+    adminCommands.put("import-users", new ImportUsersCommand(userService));
+    adminCommands.put("hot-account", new HotAccountCommand(userService, transactionService));
   }
 
   public void start() {
@@ -49,6 +75,18 @@ public class ATMFacade implements AutoCloseable {
     }
   }
 
+  /**
+   * Runs a single administrative command given on the command line, e.g. {@code export}, instead of
+   * the interactive ATM session.
+   */
+  public void runAdmin(String... args) {
+    Command command = adminCommands.get(args[0].toLowerCase());
+    if (command == null) {
+      throw new CommandException("Unknown command: " + args[0]);
+    }
+    command.execute(Arrays.copyOfRange(args, 1, args.length));
+  }
+
   /*
    * Register a shutdown hook to gracefully shutdown the application when the JVM is shutting down.
    * https://www.baeldung.com/jvm-shutdown-hooks
@@ -68,6 +106,7 @@ public class ATMFacade implements AutoCloseable {
     try {
       log.info("Shutting down ATM application...");
       cli.stop();
+      sessionService.close();
       database.close();
       log.info("ATM application shutdown complete");
     } catch (Exception e) {
@@ -3,10 +3,13 @@ package com.atm.cli;
 import com.atm.command.BalanceCommand;
 import com.atm.command.Command;
 import com.atm.command.DepositCommand;
+import com.atm.command.HistoryCommand;
 import com.atm.command.LoginCommand;
 import com.atm.command.LogoutCommand;
+import com.atm.command.PayoutCommand;
 import com.atm.command.RegisterCommand;
 import com.atm.command.SessionHolder;
+import com.atm.command.SummaryCommand;
 import com.atm.command.TransferCommand;
 import com.atm.command.WithdrawCommand;
 import com.atm.exception.CommandException;
@@ -46,16 +49,16 @@ public class ATMCli {
     commands.put("register", new RegisterCommand(userService));
     commands.put("login", new LoginCommand(userService, sessionHolder));
     commands.put("logout", new LogoutCommand(sessionService, sessionHolder));
+    commands.put("deposit", new DepositCommand(transactionService, sessionHolder, sessionService));
     commands.put(
-        "deposit",
-        new DepositCommand(transactionService, balanceService, sessionHolder, sessionService));
-    commands.put(
-        "withdraw",
-        new WithdrawCommand(transactionService, balanceService, sessionHolder, sessionService));
+        "withdraw", new WithdrawCommand(transactionService, sessionHolder, sessionService));
     commands.put(
         "transfer",
         new TransferCommand(userService, transactionService, sessionHolder, sessionService));
+    commands.put("payout", new PayoutCommand(transactionService, sessionHolder, sessionService));
     commands.put("balance", new BalanceCommand(balanceService, sessionHolder, sessionService));
+    commands.put("history", new HistoryCommand(transactionService, sessionHolder, sessionService));
+    commands.put("summary", new SummaryCommand(transactionService, sessionHolder, sessionService));
   }
 
   public void start() {
@@ -126,7 +129,10 @@ public class ATMCli {
     cliHandler.print("  deposit <amount>               - Deposit money");
     cliHandler.print("  withdraw <amount>              - Withdraw money");
     cliHandler.print("  transfer <username> <amount>   - Transfer money to another user");
+    cliHandler.print("  payout <file>                  - Pay every recipient listed in a file");
     cliHandler.print("  balance                        - Check your balance");
+    cliHandler.print("  history [--before <id>] [--limit <n>] - Show your transactions");
+    cliHandler.print("  summary [--from <date>] [--to <date>] - Show your daily totals");
     cliHandler.print("  help                           - Show this help message");
     cliHandler.print("  exit                           - Exit the application");
   }
@@ -1,10 +1,10 @@
 package com.atm.command;
 
 import com.atm.exception.CommandException;
+import com.atm.model.Money;
 import com.atm.model.Session;
 import com.atm.service.balance.BalanceService;
 import com.atm.service.session.SessionService;
-import java.math.BigDecimal;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -25,14 +25,14 @@ public class BalanceCommand implements Command {
         throw new CommandException("No active session, Please login first!");
       }
 
-      boolean hasActiveSession = sessionService.hasActiveSession(currentSession.getUserId());
+      boolean hasActiveSession = sessionService.isActive(currentSession);
 
       if (!hasActiveSession) {
         sessionHolder.terminateSession();
         throw new CommandException("No active session, Please login first!");
       }
 
-      BigDecimal balance = balanceService.getBalance(currentSession.getUserId());
+      Money balance = balanceService.getBalance(currentSession.getUserId());
 
       System.out.println("Balance: $" + balance);
     } catch (CommandException e) {
@@ -1,11 +1,11 @@
 package com.atm.command;
 
 import com.atm.exception.CommandException;
+import com.atm.model.Money;
 import com.atm.model.Session;
-import com.atm.service.balance.BalanceService;
+import com.atm.model.TransactionResult;
 import com.atm.service.session.SessionService;
 import com.atm.service.transaction.TransactionService;
-import java.math.BigDecimal;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -14,7 +14,6 @@ import lombok.extern.slf4j.Slf4j;
 public class DepositCommand implements Command {
 
   private final TransactionService transactionService;
-  private final BalanceService balanceService;
   private final SessionHolder sessionHolder;
   private final SessionService sessionService;
 
@@ -33,7 +32,7 @@ public class DepositCommand implements Command {
         throw new CommandException("No active session, Please login first!");
       }
 
-      boolean hasActiveSession = sessionService.hasActiveSession(currentSession.getUserId());
+      boolean hasActiveSession = sessionService.isActive(currentSession);
 
       Long userId = currentSession.getUserId();
 
@@ -42,20 +41,19 @@ public class DepositCommand implements Command {
         throw new CommandException("No active session, Please login first!");
       }
 
-      BigDecimal depositAmount = null;
+      Money depositAmount = null;
 
       try {
-        depositAmount = new BigDecimal(args[0]);
+        depositAmount = Money.parse(args[0]);
       } catch (NumberFormatException e) {
         throw new CommandException("Invalid amount format");
       }
 
       log.info("DepositCommand: execute: user : {}", userId);
 
-      transactionService.deposit(userId, depositAmount);
-      BigDecimal balance = balanceService.getBalance(userId);
+      TransactionResult result = transactionService.deposit(userId, depositAmount);
 
-      System.out.println("Deposit successful. New balance: $" + balance);
+      System.out.println("Deposit successful. New balance: $" + result.getBalance());
     } catch (CommandException e) {
       throw e;
     } catch (IllegalArgumentException e) {
@@ -0,0 +1,96 @@
+package com.atm.command;
+
+import com.atm.exception.CommandException;
+import com.atm.model.ExportResult;
+import com.atm.model.TransactionExport;
+import com.atm.service.transaction.TransactionService;
+import com.atm.service.user.UserService;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Dumps the ledger to a file for auditors. This is an administrative command run from the command
+ * line rather than from an ATM session, see {@link com.atm.application.ATMFacade#runAdmin}.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ExportCommand implements Command {
+  private static final String USAGE =
+      "Usage: export <file> [--format csv|binary] [--from <yyyy-mm-dd>] [--to <yyyy-mm-dd>]"
+          + " [--user <username>]";
+
+  private final UserService userService;
+  private final TransactionService transactionService;
+
+  @Override
+  public void execute(String... args) {
+    if (args.length == 0 || args.length % 2 == 0) {
+      throw new CommandException(USAGE);
+    }
+
+    TransactionExport.TransactionExportBuilder export =
+        TransactionExport.builder().file(Paths.get(args[0]));
+    try {
+      for (int i = 1; i < args.length; i += 2) {
+        String value = args[i + 1];
+        switch (args[i]) {
+          case "--format":
+            export.format(parseFormat(value));
+            break;
+          case "--from":
+            export.from(LocalDate.parse(value));
+            break;
+          case "--to":
+            export.to(LocalDate.parse(value));
+            break;
+          case "--user":
+            export.userId(resolveUser(value));
+            break;
+          default:
+            throw new CommandException(USAGE);
+        }
+      }
+    } catch (DateTimeParseException e) {
+      throw new CommandException("Invalid date format, expected yyyy-mm-dd");
+    }
+
+    try {
+      ExportResult result = transactionService.export(export.build());
+
+      System.out.println(
+          "Exported "
+              + result.getRows()
+              + " transactions ("
+              + result.getBytes()
+              + " bytes) to "
+              + args[0]
+              + " in "
+              + result.getElapsedMillis()
+              + " ms, "
+              + result.getRowsPerSecond()
+              + " rows/s");
+    } catch (IllegalArgumentException e) {
+      throw new CommandException(e.getMessage());
+    } catch (Exception e) {
+      log.error("Failed to export transactions", e);
+      throw new CommandException("Failed to export transactions");
+    }
+  }
+
+  private TransactionExport.Format parseFormat(String value) {
+    try {
+      return TransactionExport.Format.valueOf(value.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new CommandException("Invalid format, expected csv or binary");
+    }
+  }
+
+  private Long resolveUser(String username) {
+    return userService
+        .getUserIdByUsername(username)
+        .orElseThrow(() -> new CommandException("User not found"));
+  }
+}
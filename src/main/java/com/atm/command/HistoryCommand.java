@@ -0,0 +1,116 @@
+package com.atm.command;
+
+import com.atm.exception.CommandException;
+import com.atm.model.Session;
+import com.atm.model.Transaction;
+import com.atm.service.session.SessionService;
+import com.atm.service.transaction.TransactionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Prints the current account's ledger newest first, one page at a time. The cursor printed after a
+ * full page is passed back with {@code --before} to read the next, older page.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class HistoryCommand implements Command {
+  private static final String USAGE = "Usage: history [--before <id>] [--limit <n>]";
+  private static final int DEFAULT_LIMIT = 20;
+
+  private final TransactionService transactionService;
+  private final SessionHolder sessionHolder;
+  private final SessionService sessionService;
+
+  @Override
+  public void execute(String... args) {
+    Long beforeId = null;
+    int limit = DEFAULT_LIMIT;
+
+    if (args.length % 2 != 0) {
+      throw new CommandException(USAGE);
+    }
+    try {
+      for (int i = 0; i < args.length; i += 2) {
+        switch (args[i]) {
+          case "--before":
+            beforeId = Long.parseLong(args[i + 1]);
+            break;
+          case "--limit":
+            limit = Integer.parseInt(args[i + 1]);
+            break;
+          default:
+            throw new CommandException(USAGE);
+        }
+      }
+    } catch (NumberFormatException e) {
+      throw new CommandException("Invalid number format");
+    }
+
+    try {
+      Session currentSession = sessionHolder.getCurrentSession();
+
+      if (currentSession == null) {
+        throw new CommandException("No active session, Please login first!");
+      }
+
+      boolean hasActiveSession = sessionService.isActive(currentSession);
+
+      if (!hasActiveSession) {
+        sessionHolder.terminateSession();
+        throw new CommandException("No active session, Please login first!");
+      }
+
+      Long userId = currentSession.getUserId();
+
+      log.info("HistoryCommand: execute: user : {}, before : {}", userId, beforeId);
+
+      int[] printed = {0};
+      Long nextCursor =
+          transactionService.history(
+              userId,
+              beforeId,
+              limit,
+              transaction -> {
+                System.out.println(format(transaction, userId));
+                printed[0]++;
+              });
+
+      if (printed[0] == 0) {
+        System.out.println("No transactions found.");
+      } else if (nextCursor != null) {
+        System.out.println("More: history --before " + nextCursor);
+      }
+    } catch (CommandException e) {
+      throw e;
+    } catch (IllegalArgumentException e) {
+      throw new CommandException(e.getMessage());
+    } catch (Exception e) {
+      log.error("Failed to read history", e);
+      throw new CommandException("Failed to read history");
+    }
+  }
+
+  private String format(Transaction transaction, Long userId) {
+    String line =
+        "#"
+            + transaction.getId()
+            + "  "
+            + transaction.getCreatedAt()
+            + "  "
+            + transaction.getType()
+            + "  ";
+
+    switch (transaction.getType()) {
+      case DEPOSIT:
+        return line + "+$" + transaction.getAmount();
+      case WITHDRAW:
+        return line + "-$" + transaction.getAmount();
+      default:
+        if (userId.equals(transaction.getFromUserId())) {
+          return line + "-$" + transaction.getAmount() + " to user " + transaction.getToUserId();
+        }
+        return line + "+$" + transaction.getAmount() + " from user " + transaction.getFromUserId();
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package com.atm.command;
+
+import com.atm.exception.CommandException;
+import com.atm.service.transaction.TransactionService;
+import com.atm.service.user.UserService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Marks an account receiving many concurrent credits, a merchant or a payroll source, as hot: its
+ * credits are spread over the given number of balance slots instead of all queueing on its one
+ * balance row. 0 slots makes it a plain account again. This is an administrative command, see
+ * {@link com.atm.application.ATMFacade#runAdmin}.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class HotAccountCommand implements Command {
+  private static final String USAGE = "Usage: hot-account <username> <slots>";
+
+  private final UserService userService;
+  private final TransactionService transactionService;
+
+  @Override
+  public void execute(String... args) {
+    if (args.length != 2) {
+      throw new CommandException(USAGE);
+    }
+
+    int slots;
+    try {
+      slots = Integer.parseInt(args[1]);
+    } catch (NumberFormatException e) {
+      throw new CommandException("Invalid number of slots: " + args[1]);
+    }
+
+    Long userId =
+        userService
+            .getUserIdByUsername(args[0])
+            .orElseThrow(() -> new CommandException("User not found"));
+
+    try {
+      transactionService.setBalanceSlots(userId, slots);
+    } catch (IllegalArgumentException e) {
+      throw new CommandException(e.getMessage());
+    } catch (Exception e) {
+      log.error("Failed to set balance slots", e);
+      throw new CommandException("Failed to set balance slots");
+    }
+
+    System.out.println(
+        slots == 0
+            ? args[0] + " is a plain account again"
+            : args[0] + " now spreads its credits over " + slots + " balance slots");
+  }
+}
@@ -0,0 +1,102 @@
+package com.atm.command;
+
+import com.atm.exception.CommandException;
+import com.atm.model.ImportResult;
+import com.atm.model.UserImport;
+import com.atm.service.user.UserService;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Onboards users in bulk from a file with one {@code <username> <password>} pair per line,
+ * separated by whitespace or a comma. Blank lines and lines starting with '#' are ignored. The file
+ * is streamed and imported in chunks so memory use does not grow with its size. This is an
+ * administrative command, see {@link com.atm.application.ATMFacade#runAdmin}.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ImportUsersCommand implements Command {
+  static final int CHUNK_SIZE = 5000;
+  private static final int MAX_REPORTED = 20;
+
+  private final UserService userService;
+
+  @Override
+  public void execute(String... args) {
+    if (args.length != 1) {
+      throw new CommandException("Usage: import-users <file>");
+    }
+
+    Path file = Paths.get(args[0]);
+    long started = System.nanoTime();
+    ImportResult total = ImportResult.builder().build();
+
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      List<UserImport> chunk = new ArrayList<>(CHUNK_SIZE);
+      String line;
+      int lineNumber = 0;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+
+        String[] parts = line.split("[,\\s]+", 2);
+        if (parts.length != 2) {
+          total.getRejected().add("line " + lineNumber + ": expected <username> <password>");
+          continue;
+        }
+        chunk.add(
+            UserImport.builder().line(lineNumber).username(parts[0]).password(parts[1]).build());
+
+        if (chunk.size() == CHUNK_SIZE) {
+          total.add(userService.importUsers(chunk));
+          chunk = new ArrayList<>(CHUNK_SIZE);
+          log.info("Imported {} users so far, at line {}", total.getImported(), lineNumber);
+        }
+      }
+      if (!chunk.isEmpty()) {
+        total.add(userService.importUsers(chunk));
+      }
+    } catch (IOException e) {
+      throw new CommandException("Unable to read import file: " + file);
+    } catch (Exception e) {
+      log.error("Failed to import users", e);
+      throw new CommandException(
+          "Failed to import users, " + total.getImported() + " imported before the failure");
+    }
+
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    System.out.println(
+        "Imported "
+            + total.getImported()
+            + " users in "
+            + elapsedMillis
+            + " ms, "
+            + total.getDuplicates().size()
+            + " duplicates, "
+            + total.getRejected().size()
+            + " rejected");
+    report("Duplicate", total.getDuplicates());
+    report("Rejected", total.getRejected());
+  }
+
+  private void report(String label, List<String> entries) {
+    for (int i = 0; i < entries.size() && i < MAX_REPORTED; i++) {
+      System.out.println("  " + label + ": " + entries.get(i));
+    }
+    if (entries.size() > MAX_REPORTED) {
+      System.out.println("  ... and " + (entries.size() - MAX_REPORTED) + " more");
+    }
+  }
+}
@@ -23,7 +23,7 @@ public class LogoutCommand implements Command {
         throw new CommandException("No active session, Please login first!");
       }
 
-      boolean hasActiveSession = sessionService.hasActiveSession(currentSession.getUserId());
+      boolean hasActiveSession = sessionService.isActive(currentSession);
 
       if (!hasActiveSession) {
         sessionHolder.terminateSession();
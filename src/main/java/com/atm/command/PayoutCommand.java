@@ -0,0 +1,110 @@
+package com.atm.command;
+
+import com.atm.exception.CommandException;
+import com.atm.exception.InsufficientFundsException;
+import com.atm.model.Money;
+import com.atm.model.PayoutItem;
+import com.atm.model.PayoutResult;
+import com.atm.model.Session;
+import com.atm.service.session.SessionService;
+import com.atm.service.transaction.TransactionService;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pays many recipients from the current account in one transaction. The recipient file has one
+ * {@code <username> <amount>} pair per line, separated by whitespace or a comma. Blank lines and
+ * lines starting with '#' are ignored.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class PayoutCommand implements Command {
+
+  private final TransactionService transactionService;
+  private final SessionHolder sessionHolder;
+  private final SessionService sessionService;
+
+  @Override
+  public void execute(String... args) {
+    if (args.length != 1) {
+      throw new CommandException("Usage: payout <file>");
+    }
+
+    try {
+      Session currentSession = sessionHolder.getCurrentSession();
+
+      if (currentSession == null) {
+        throw new CommandException("No active session, Please login first!");
+      }
+
+      boolean hasActiveSession = sessionService.isActive(currentSession);
+
+      if (!hasActiveSession) {
+        sessionHolder.terminateSession();
+        throw new CommandException("No active session, Please login first!");
+      }
+
+      Long userId = currentSession.getUserId();
+
+      List<PayoutItem> items = readRecipients(Paths.get(args[0]));
+
+      log.info("PayoutCommand: execute: user : {}, recipients : {}", userId, items.size());
+
+      PayoutResult result = transactionService.transferBatch(userId, items);
+
+      System.out.println(
+          "Payout successful. Paid $"
+              + result.getTotalAmount()
+              + " to "
+              + result.getRecipients()
+              + " recipients. New balance: $"
+              + result.getBalance());
+    } catch (CommandException e) {
+      throw e;
+    } catch (InsufficientFundsException e) {
+      throw new CommandException(e.getMessage());
+    } catch (IllegalArgumentException e) {
+      throw new CommandException(e.getMessage());
+    } catch (Exception e) {
+      log.error("Failed to pay out", e);
+      throw new CommandException("Failed to pay out");
+    }
+  }
+
+  private List<PayoutItem> readRecipients(Path file) {
+    List<PayoutItem> items = new ArrayList<>();
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      String line;
+      int lineNumber = 0;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+
+        String[] parts = line.split("[,\\s]+");
+        if (parts.length != 2) {
+          throw new CommandException("Invalid payout line " + lineNumber + ": " + line);
+        }
+
+        try {
+          items.add(PayoutItem.builder().username(parts[0]).amount(Money.parse(parts[1])).build());
+        } catch (NumberFormatException e) {
+          throw new CommandException("Invalid amount format on line " + lineNumber);
+        }
+      }
+    } catch (IOException e) {
+      throw new CommandException("Unable to read payout file: " + file);
+    }
+    return items;
+  }
+}
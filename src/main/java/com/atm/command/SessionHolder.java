@@ -8,6 +8,11 @@ public class SessionHolder {
 
   private Session currentSession;
 
+  /** Signed token of the current session, null when logged out or for database sessions. */
+  public String getToken() {
+    return currentSession == null ? null : currentSession.getToken();
+  }
+
   public void terminateSession() {
     this.currentSession = null;
   }
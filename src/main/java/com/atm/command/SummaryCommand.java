@@ -0,0 +1,111 @@
+package com.atm.command;
+
+import com.atm.exception.CommandException;
+import com.atm.model.DailyTotal;
+import com.atm.model.Session;
+import com.atm.service.session.SessionService;
+import com.atm.service.transaction.TransactionService;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Prints the current account's number and sum of transactions per UTC day and type, today by
+ * default. Dates are inclusive {@code --from} and exclusive {@code --to} like the export.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class SummaryCommand implements Command {
+  private static final String USAGE = "Usage: summary [--from <yyyy-mm-dd>] [--to <yyyy-mm-dd>]";
+
+  private final TransactionService transactionService;
+  private final SessionHolder sessionHolder;
+  private final SessionService sessionService;
+
+  @Override
+  public void execute(String... args) {
+    LocalDate from = null;
+    LocalDate to = null;
+
+    if (args.length % 2 != 0) {
+      throw new CommandException(USAGE);
+    }
+    try {
+      for (int i = 0; i < args.length; i += 2) {
+        switch (args[i]) {
+          case "--from":
+            from = LocalDate.parse(args[i + 1]);
+            break;
+          case "--to":
+            to = LocalDate.parse(args[i + 1]);
+            break;
+          default:
+            throw new CommandException(USAGE);
+        }
+      }
+    } catch (DateTimeParseException e) {
+      throw new CommandException("Invalid date format, expected yyyy-mm-dd");
+    }
+
+    // A single missing bound makes the range one day long
+    if (from == null) {
+      from = to != null ? to.minusDays(1) : LocalDate.now(ZoneOffset.UTC);
+    }
+    if (to == null) {
+      to = from.plusDays(1);
+    }
+
+    try {
+      Session currentSession = sessionHolder.getCurrentSession();
+
+      if (currentSession == null) {
+        throw new CommandException("No active session, Please login first!");
+      }
+
+      boolean hasActiveSession = sessionService.isActive(currentSession);
+
+      if (!hasActiveSession) {
+        sessionHolder.terminateSession();
+        throw new CommandException("No active session, Please login first!");
+      }
+
+      Long userId = currentSession.getUserId();
+
+      log.info("SummaryCommand: execute: user : {}, from : {}, to : {}", userId, from, to);
+
+      List<DailyTotal> totals = transactionService.dailyTotals(userId, from, to);
+
+      if (totals.isEmpty()) {
+        System.out.println("No transactions found.");
+      }
+      for (DailyTotal total : totals) {
+        System.out.println(format(total));
+      }
+    } catch (CommandException e) {
+      throw e;
+    } catch (IllegalArgumentException e) {
+      throw new CommandException(e.getMessage());
+    } catch (Exception e) {
+      log.error("Failed to read summary", e);
+      throw new CommandException("Failed to read summary");
+    }
+  }
+
+  private String format(DailyTotal total) {
+    String sign =
+        total.getType() == DailyTotal.Type.DEPOSIT || total.getType() == DailyTotal.Type.TRANSFER_IN
+            ? "+$"
+            : "-$";
+    return total.getDay()
+        + "  "
+        + total.getType()
+        + "  "
+        + total.getCount()
+        + (total.getCount() == 1 ? " transaction  " : " transactions  ")
+        + sign
+        + total.getAmount();
+  }
+}
@@ -2,12 +2,11 @@ package com.atm.command;
 
 import com.atm.exception.CommandException;
 import com.atm.exception.InsufficientFundsException;
+import com.atm.model.Money;
 import com.atm.model.Session;
-import com.atm.model.User;
 import com.atm.service.session.SessionService;
 import com.atm.service.transaction.TransactionService;
 import com.atm.service.user.UserService;
-import java.math.BigDecimal;
 import java.util.Optional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -34,7 +33,7 @@ public class TransferCommand implements Command {
         throw new CommandException("No active session, Please login first!");
       }
 
-      boolean hasActiveSession = sessionService.hasActiveSession(currentSession.getUserId());
+      boolean hasActiveSession = sessionService.isActive(currentSession);
 
       if (!hasActiveSession) {
         sessionHolder.terminateSession();
@@ -45,22 +44,22 @@ public class TransferCommand implements Command {
 
       String targetUsername = args[0];
 
-      BigDecimal transferAmount = null;
+      Money transferAmount = null;
       try {
-        transferAmount = new BigDecimal(args[1]);
+        transferAmount = Money.parse(args[1]);
       } catch (NumberFormatException e) {
         throw new CommandException("Invalid amount format");
       }
 
       log.info("TransferCommand: execute: user : {}", userId);
 
-      Optional<User> targetUser = userService.getUserByUsername(targetUsername);
+      Optional<Long> targetUserId = userService.getUserIdByUsername(targetUsername);
 
-      if (!targetUser.isPresent()) {
+      if (!targetUserId.isPresent()) {
         throw new CommandException("User not found");
       }
 
-      transactionService.transfer(userId, targetUser.get().getId(), transferAmount);
+      transactionService.transfer(userId, targetUserId.get(), transferAmount);
       System.out.println("Transfer successful.");
     } catch (CommandException e) {
       throw e;
@@ -2,11 +2,11 @@ package com.atm.command;
 
 import com.atm.exception.CommandException;
 import com.atm.exception.InsufficientFundsException;
+import com.atm.model.Money;
 import com.atm.model.Session;
-import com.atm.service.balance.BalanceService;
+import com.atm.model.TransactionResult;
 import com.atm.service.session.SessionService;
 import com.atm.service.transaction.TransactionService;
-import java.math.BigDecimal;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -15,7 +15,6 @@ import lombok.extern.slf4j.Slf4j;
 public class WithdrawCommand implements Command {
 
   private final TransactionService transactionService;
-  private final BalanceService balanceService;
   private final SessionHolder sessionHolder;
   private final SessionService sessionService;
 
@@ -34,7 +33,7 @@ public class WithdrawCommand implements Command {
         throw new CommandException("No active session, Please login first!");
       }
 
-      boolean hasActiveSession = sessionService.hasActiveSession(currentSession.getUserId());
+      boolean hasActiveSession = sessionService.isActive(currentSession);
 
       Long userId = currentSession.getUserId();
 
@@ -43,21 +42,19 @@ public class WithdrawCommand implements Command {
         throw new CommandException("No active session, Please login first!");
       }
 
-      BigDecimal withdrawAmount = null;
+      Money withdrawAmount = null;
 
       try {
-        withdrawAmount = new BigDecimal(args[0]);
+        withdrawAmount = Money.parse(args[0]);
       } catch (NumberFormatException e) {
         throw new CommandException("Invalid amount format");
       }
 
       log.info("WithdrawCommand: execute: user : {}", userId);
 
-      transactionService.withdraw(userId, withdrawAmount);
+      TransactionResult result = transactionService.withdraw(userId, withdrawAmount);
 
-      BigDecimal newBalance = balanceService.getBalance(userId);
-
-      System.out.println("Withdraw successful. New balance: $" + newBalance);
+      System.out.println("Withdraw successful. New balance: $" + result.getBalance());
     } catch (CommandException e) {
       throw e;
     } catch (InsufficientFundsException e) {
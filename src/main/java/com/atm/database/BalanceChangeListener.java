@@ -0,0 +1,23 @@
+package com.atm.database;
+
+import com.atm.model.Money;
+
+/** Receives the balance changes committed by any process sharing the database. */
+public interface BalanceChangeListener {
+
+  /** A balance changed, changes of one user arrive in commit order. */
+  void balanceChanged(long userId, Money balance, long version);
+
+  /**
+   * The balance changed to a value not given. Either this process wrote it, possibly ahead of its
+   * {@link #balanceChanged} notification, and then it is called even when the write failed since it
+   * may have committed, or a hot account changed, whose balance is spread over several rows.
+   */
+  void balanceInvalidated(long userId);
+
+  /** Changes are delivered from now on, any committed while unsubscribed were missed. */
+  void subscribed();
+
+  /** Changes are no longer delivered until the next {@link #subscribed()}. */
+  void unsubscribed();
+}
@@ -0,0 +1,152 @@
+package com.atm.database;
+
+import com.atm.model.Money;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+/**
+ * Delivers the balance changes published by the balance triggers to {@link BalanceChangeListener}s.
+ * It holds one dedicated connection outside the pools that LISTENs for them. A connection that
+ * fails, or does not answer the ping sent after {@link #PING_INTERVAL_NANOS} without notifications,
+ * is replaced after {@link #RECONNECT_DELAY_MILLIS}, and listeners are told they were unsubscribed
+ * in between.
+ */
+@Slf4j
+public class BalanceChangeNotifier implements AutoCloseable {
+  private static final int POLL_TIMEOUT_MILLIS = 500;
+  private static final long PING_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+  private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+  private final DatabaseConfig config;
+  private final List<BalanceChangeListener> listeners = new CopyOnWriteArrayList<>();
+  private final Thread thread;
+  private final AtomicBoolean started = new AtomicBoolean();
+  private volatile boolean stopped;
+
+  public BalanceChangeNotifier(DatabaseConfig config) {
+    this.config = config;
+    this.thread = new Thread(this::run, "balance-change-notifier");
+    thread.setDaemon(true);
+  }
+
+  /** Starts listening on a daemon thread, later calls do nothing. */
+  public void start() {
+    if (started.compareAndSet(false, true)) {
+      thread.start();
+    }
+  }
+
+  public void addListener(BalanceChangeListener listener) {
+    listeners.add(listener);
+  }
+
+  /** Tells listeners right away that the balance changed, see {@link BalanceChangeListener}. */
+  public void invalidate(long userId) {
+    for (BalanceChangeListener listener : listeners) {
+      listener.balanceInvalidated(userId);
+    }
+  }
+
+  private void run() {
+    while (!stopped) {
+      try (Connection connection =
+          DriverManager.getConnection(
+              config.getJdbcUrl(), config.getUsername(), config.getPassword())) {
+        try (Statement stmt = connection.createStatement()) {
+          stmt.execute(PostgreSQLQueries.Notifications.LISTEN_BALANCES);
+        }
+        log.info("Listening for balance changes");
+        listeners.forEach(BalanceChangeListener::subscribed);
+        try {
+          receive(connection);
+        } finally {
+          listeners.forEach(BalanceChangeListener::unsubscribed);
+        }
+      } catch (SQLException e) {
+        if (!stopped) {
+          log.warn("Balance change listener connection lost, reconnecting", e);
+        }
+      }
+      sleep(RECONNECT_DELAY_MILLIS);
+    }
+  }
+
+  private void receive(Connection connection) throws SQLException {
+    PGConnection pgConnection = connection.unwrap(PGConnection.class);
+    long lastHeardAt = System.nanoTime();
+    while (!stopped) {
+      PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+      if (notifications != null && notifications.length > 0) {
+        for (PGNotification notification : notifications) {
+          dispatch(notification.getParameter());
+        }
+        lastHeardAt = System.nanoTime();
+      } else if (System.nanoTime() - lastHeardAt >= PING_INTERVAL_NANOS) {
+        // A silently dropped connection only shows up on a round trip
+        try (Statement stmt = connection.createStatement()) {
+          stmt.execute(PostgreSQLQueries.Notifications.PING);
+        }
+        lastHeardAt = System.nanoTime();
+      }
+    }
+  }
+
+  // Payload: user_id:version:balance, or the bare user_id of a hot account
+  private void dispatch(String payload) {
+    int first = payload.indexOf(':');
+    if (first < 0) {
+      dispatchInvalidation(payload);
+      return;
+    }
+    int second = payload.indexOf(':', first + 1);
+    long userId;
+    long version;
+    Money balance;
+    try {
+      userId = Long.parseLong(payload.substring(0, first));
+      version = Long.parseLong(payload.substring(first + 1, second));
+      balance = Money.parse(payload.substring(second + 1));
+    } catch (RuntimeException e) {
+      log.warn("Ignoring malformed balance notification: {}", payload);
+      return;
+    }
+    for (BalanceChangeListener listener : listeners) {
+      listener.balanceChanged(userId, balance, version);
+    }
+  }
+
+  private void dispatchInvalidation(String payload) {
+    long userId;
+    try {
+      userId = Long.parseLong(payload);
+    } catch (NumberFormatException e) {
+      log.warn("Ignoring malformed balance notification: {}", payload);
+      return;
+    }
+    invalidate(userId);
+  }
+
+  private void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      stopped = true;
+    }
+  }
+
+  @Override
+  public void close() {
+    stopped = true;
+    thread.interrupt();
+  }
+}
@@ -0,0 +1,40 @@
+package com.atm.database;
+
+import com.atm.model.Money;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/** Multi-row balance locking shared by the batched write paths. */
+final class BalanceLocks {
+  private BalanceLocks() {}
+
+  /**
+   * Locks the balances of the given users in ascending user id order, so concurrent batches can
+   * never deadlock on each other, and returns the locked balances. Missing users are absent from
+   * the result.
+   */
+  static Map<Long, Money> lockInOrder(Connection connection, Collection<Long> userIds)
+      throws SQLException {
+    Map<Long, Money> balances = new HashMap<>();
+    Array ids = connection.createArrayOf("bigint", new TreeSet<>(userIds).toArray());
+    try (PreparedStatement lock =
+        connection.prepareStatement(PostgreSQLQueries.Balances.LOCK_MANY)) {
+      lock.setArray(1, ids);
+      try (ResultSet rs = lock.executeQuery()) {
+        while (rs.next()) {
+          balances.put(rs.getLong("user_id"), Money.ofMinorUnits(rs.getLong("balance")));
+        }
+      }
+    } finally {
+      ids.free();
+    }
+    return balances;
+  }
+}
@@ -0,0 +1,101 @@
+package com.atm.database;
+
+import com.atm.exception.DatabaseException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Draws the balance slots of hot accounts into their balances row in the background. Credits to a
+ * hot account are spread over its slots, while debits, and the funds checks of optimistic mode,
+ * group commit and payouts, read the balances row first, so funds credited to a slot only become
+ * cheap to spend once consolidated. Each run walks the hot accounts in user id order, {@code
+ * batchSize} per short transaction. Rows locked by a running operation are skipped rather than
+ * waited on and picked up by the next run, so the consolidator never queues behind the hot path and
+ * consolidators in several ATM processes do not block each other.
+ */
+@Slf4j
+public class BalanceSlotConsolidator implements AutoCloseable {
+  private final PostgresTransaction transaction;
+  private final int batchSize;
+  private ScheduledExecutorService scheduler;
+
+  public BalanceSlotConsolidator(PostgresTransaction transaction, int batchSize) {
+    this.transaction = transaction;
+    this.batchSize = batchSize;
+  }
+
+  /** Consolidates every {@code intervalSeconds} on a daemon thread, starting after one interval. */
+  public void start(long intervalSeconds) {
+    scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "balance-slot-consolidator");
+              thread.setDaemon(true);
+              return thread;
+            });
+    scheduler.scheduleWithFixedDelay(
+        this::consolidateSafely, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+  }
+
+  /** Walks all hot accounts once, returns the number whose slots were drawn. */
+  public synchronized long consolidate() {
+    long started = System.nanoTime();
+    long cursor = 0;
+    long moved = 0;
+    while (true) {
+      long[] batch = consolidateBatch(cursor);
+      moved += batch[1];
+      if (batch[0] < 0) {
+        break;
+      }
+      cursor = batch[0];
+    }
+
+    if (moved > 0) {
+      log.info(
+          "Consolidated the balance slots of {} hot accounts in {} ms",
+          moved,
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+    return moved;
+  }
+
+  // Returns the last user id looked at, -1 once past the last hot account, and the accounts moved
+  private long[] consolidateBatch(long after) {
+    return transaction.executeInTransaction(
+        connection -> {
+          try (PreparedStatement pstmt =
+              connection.prepareStatement(PostgreSQLQueries.Balances.CONSOLIDATE_SLOTS)) {
+            pstmt.setLong(1, after);
+            pstmt.setInt(2, batchSize);
+            try (ResultSet rs = pstmt.executeQuery()) {
+              rs.next();
+              long last = rs.getLong("last_user_id");
+              return new long[] {rs.wasNull() ? -1 : last, rs.getLong("moved")};
+            }
+          } catch (SQLException e) {
+            throw new DatabaseException("Failed to consolidate balance slots", e);
+          }
+        });
+  }
+
+  private void consolidateSafely() {
+    try {
+      consolidate();
+    } catch (Exception e) {
+      log.error("Balance slot consolidation failed", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+}
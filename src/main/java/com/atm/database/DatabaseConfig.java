@@ -1,5 +1,8 @@
 package com.atm.database;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
 import lombok.Builder;
 import lombok.Getter;
 
@@ -9,4 +12,280 @@ public class DatabaseConfig {
   private final String jdbcUrl;
   private final String username;
   private final String password;
+
+  /**
+   * Isolation level of the primary pool, e.g. read_committed, repeatable_read or serializable.
+   * Serialization failures under the stricter levels are retried by {@link PostgresTransaction}.
+   */
+  @Builder.Default private final String transactionIsolation = "read_committed";
+
+  /** Attempts per unit of work on serialization failures and deadlocks, 1 disables retries. */
+  @Builder.Default private final int retryMaxAttempts = 5;
+
+  @Builder.Default private final long retryBaseBackoffMillis = 10;
+  @Builder.Default private final long retryMaxBackoffMillis = 1000;
+
+  /**
+   * How {@link PostgresDatabase} guards balance writes, {@code pessimistic} row locks or {@code
+   * optimistic} version checks.
+   */
+  @Builder.Default
+  private final String balanceConcurrency = PostgresDatabase.CONCURRENCY_PESSIMISTIC;
+
+  /**
+   * Where {@link PostgresDatabase} keeps balances, {@code table} updates the balances rows in
+   * place, {@code ledger} appends entries and derives balances from them, see {@link
+   * LedgerBalances}.
+   */
+  @Builder.Default private final String balanceStore = PostgresDatabase.BALANCE_STORE_TABLE;
+
+  /** How long the ledger store serves a balance from memory before reloading it. */
+  @Builder.Default private final long ledgerMaxStalenessMillis = 1000;
+
+  /** Ledger entries are folded into balance snapshots this often, 0 disables the snapshotter. */
+  @Builder.Default private final long ledgerSnapshotIntervalSeconds = 60;
+
+  /** Ledger entry ids covered by one snapshot transaction. */
+  @Builder.Default private final int ledgerSnapshotBatchSize = 10_000;
+
+  /**
+   * Balance slots of hot accounts are drawn into their balances row this often, 0 disables the
+   * consolidator. Table store only.
+   */
+  @Builder.Default private final long balanceSlotConsolidateIntervalSeconds = 5;
+
+  /** Hot accounts consolidated by one transaction. */
+  @Builder.Default private final int balanceSlotConsolidateBatchSize = 100;
+
+  /**
+   * Caches balances in {@link com.atm.service.balance.BalanceServiceImpl}, kept current through
+   * LISTEN/NOTIFY. Every ATM process sharing the database needs the same setting, the trigger
+   * publishing the changes is installed or dropped at startup accordingly.
+   */
+  private final boolean balanceCacheEnabled;
+
+  /** How long a cached balance is trusted while change notifications are not being received. */
+  @Builder.Default private final long balanceCacheTtlMillis = 5000;
+
+  /** Storage engine backing {@link Database}, see {@link DatabaseFactory}. */
+  @Builder.Default private final String engine = DatabaseFactory.ENGINE_POSTGRES;
+
+  /** Routes money movements through {@link GroupCommitLedgerWriter} when enabled. */
+  private final boolean groupCommitEnabled;
+
+  @Builder.Default private final int groupCommitMaxBatchSize = 256;
+  @Builder.Default private final long groupCommitMaxWaitMillis = 2;
+
+  /** Monthly transaction partitions, see {@link TransactionPartitionMaintainer}. */
+  @Builder.Default private final int partitionPremakeMonths = 3;
+
+  /** Partitions older than this many months are detached, 0 keeps them forever. */
+  private final int partitionRetentionMonths;
+
+  @Builder.Default private final long partitionMaintenanceIntervalMinutes = 24 * 60;
+
+  /** Inactivity after which a session expires. */
+  @Builder.Default private final long sessionTimeoutSeconds = 60;
+
+  /** Expired sessions are swept this often, 0 disables the sweeper. */
+  @Builder.Default private final long sessionSweepIntervalSeconds = 60;
+
+  /** Sessions deleted per sweep transaction. */
+  @Builder.Default private final int sessionSweepBatchSize = 1000;
+
+  /**
+   * Where sessions live, {@code database} or {@code signed} for stateless HMAC-signed tokens, see
+   * {@link com.atm.service.session.SessionServiceFactory}.
+   */
+  @Builder.Default private final String sessionMode = "database";
+
+  /** Base64 HMAC key of at least 32 bytes for signed sessions, generated per process when unset. */
+  private final String sessionSigningKey;
+
+  /** Signed session tokens expire after this long regardless of activity. */
+  @Builder.Default private final long sessionTokenLifetimeSeconds = 900;
+
+  /** Logouts of signed sessions are persisted here, kept in memory only when unset. */
+  private final String sessionRevocationFile;
+
+  /**
+   * Keeps sessions in an unlogged table: logins and activity skip the WAL, but a crash or failover
+   * logs every user out.
+   */
+  private final boolean sessionsUnlogged;
+
+  /** Pause between two full sweep batches, spreads a large backlog out for autovacuum. */
+  @Builder.Default private final long sessionSweepPauseMillis = 100;
+
+  /**
+   * Keeps a Bloom filter of every username in memory so lookups of unknown usernames skip the
+   * database, see {@link com.atm.service.user.KnownUsernames}.
+   */
+  @Builder.Default private final boolean usernameFilterEnabled = true;
+
+  /** Read-only replica for replica-safe reads, disabled when no URL is configured. */
+  private final String replicaJdbcUrl;
+
+  /** Replica credentials, the primary's are used when not set. */
+  private final String replicaUsername;
+
+  private final String replicaPassword;
+
+  /** Replica-safe reads go to the primary while the replica is further behind than this. */
+  @Builder.Default private final long replicaMaxLagMillis = 1000;
+
+  public boolean isReplicaEnabled() {
+    return replicaJdbcUrl != null && !replicaJdbcUrl.trim().isEmpty();
+  }
+
+  /**
+   * Loads the configuration from database.properties, environment variables take precedence over
+   * the file.
+   */
+  public static DatabaseConfig load() {
+    Properties props = loadProperties();
+
+    return DatabaseConfig.builder()
+        .jdbcUrl(resolve(props, "DB_URL", "db.url", null))
+        .username(resolve(props, "DB_USERNAME", "db.username", null))
+        .password(resolve(props, "DB_PASSWORD", "db.password", null))
+        .engine(resolve(props, "DB_ENGINE", "db.engine", DatabaseFactory.ENGINE_POSTGRES))
+        .transactionIsolation(resolve(props, "DB_ISOLATION", "db.isolation", "read_committed"))
+        .retryMaxAttempts(
+            Integer.parseInt(resolve(props, "DB_RETRY_MAX_ATTEMPTS", "db.retry.maxAttempts", "5")))
+        .retryBaseBackoffMillis(
+            Long.parseLong(
+                resolve(props, "DB_RETRY_BASE_BACKOFF_MS", "db.retry.baseBackoffMillis", "10")))
+        .retryMaxBackoffMillis(
+            Long.parseLong(
+                resolve(props, "DB_RETRY_MAX_BACKOFF_MS", "db.retry.maxBackoffMillis", "1000")))
+        .balanceConcurrency(
+            resolve(
+                props,
+                "DB_BALANCE_CONCURRENCY",
+                "db.balanceConcurrency",
+                PostgresDatabase.CONCURRENCY_PESSIMISTIC))
+        .balanceStore(
+            resolve(
+                props, "DB_BALANCE_STORE", "db.balanceStore", PostgresDatabase.BALANCE_STORE_TABLE))
+        .ledgerMaxStalenessMillis(
+            Long.parseLong(
+                resolve(
+                    props, "DB_LEDGER_MAX_STALENESS_MS", "db.ledger.maxStalenessMillis", "1000")))
+        .ledgerSnapshotIntervalSeconds(
+            Long.parseLong(
+                resolve(
+                    props,
+                    "DB_LEDGER_SNAPSHOT_INTERVAL_S",
+                    "db.ledger.snapshotIntervalSeconds",
+                    "60")))
+        .ledgerSnapshotBatchSize(
+            Integer.parseInt(
+                resolve(
+                    props,
+                    "DB_LEDGER_SNAPSHOT_BATCH_SIZE",
+                    "db.ledger.snapshotBatchSize",
+                    "10000")))
+        .balanceSlotConsolidateIntervalSeconds(
+            Long.parseLong(
+                resolve(
+                    props,
+                    "DB_BALANCE_SLOTS_CONSOLIDATE_INTERVAL_S",
+                    "db.balanceSlots.consolidateIntervalSeconds",
+                    "5")))
+        .balanceSlotConsolidateBatchSize(
+            Integer.parseInt(
+                resolve(
+                    props,
+                    "DB_BALANCE_SLOTS_CONSOLIDATE_BATCH_SIZE",
+                    "db.balanceSlots.consolidateBatchSize",
+                    "100")))
+        .balanceCacheEnabled(
+            Boolean.parseBoolean(
+                resolve(props, "DB_BALANCE_CACHE", "db.balanceCache.enabled", "false")))
+        .balanceCacheTtlMillis(
+            Long.parseLong(
+                resolve(props, "DB_BALANCE_CACHE_TTL_MS", "db.balanceCache.ttlMillis", "5000")))
+        .groupCommitEnabled(
+            Boolean.parseBoolean(
+                resolve(props, "DB_GROUP_COMMIT", "db.groupCommit.enabled", "false")))
+        .groupCommitMaxBatchSize(
+            Integer.parseInt(
+                resolve(props, "DB_GROUP_COMMIT_MAX_BATCH", "db.groupCommit.maxBatchSize", "256")))
+        .groupCommitMaxWaitMillis(
+            Long.parseLong(
+                resolve(props, "DB_GROUP_COMMIT_MAX_WAIT_MS", "db.groupCommit.maxWaitMillis", "2")))
+        .partitionPremakeMonths(
+            Integer.parseInt(
+                resolve(props, "DB_PARTITION_PREMAKE_MONTHS", "db.partitions.premakeMonths", "3")))
+        .partitionRetentionMonths(
+            Integer.parseInt(
+                resolve(
+                    props, "DB_PARTITION_RETENTION_MONTHS", "db.partitions.retentionMonths", "0")))
+        .partitionMaintenanceIntervalMinutes(
+            Long.parseLong(
+                resolve(
+                    props,
+                    "DB_PARTITION_MAINTENANCE_INTERVAL_MINUTES",
+                    "db.partitions.maintenanceIntervalMinutes",
+                    "1440")))
+        .sessionTimeoutSeconds(
+            Long.parseLong(
+                resolve(props, "DB_SESSION_TIMEOUT_S", "db.sessions.timeoutSeconds", "60")))
+        .sessionSweepIntervalSeconds(
+            Long.parseLong(
+                resolve(
+                    props,
+                    "DB_SESSION_SWEEP_INTERVAL_S",
+                    "db.sessions.sweepIntervalSeconds",
+                    "60")))
+        .sessionSweepBatchSize(
+            Integer.parseInt(
+                resolve(
+                    props, "DB_SESSION_SWEEP_BATCH_SIZE", "db.sessions.sweepBatchSize", "1000")))
+        .sessionSweepPauseMillis(
+            Long.parseLong(
+                resolve(props, "DB_SESSION_SWEEP_PAUSE_MS", "db.sessions.sweepPauseMillis", "100")))
+        .sessionMode(resolve(props, "DB_SESSION_MODE", "db.sessions.mode", "database"))
+        .sessionSigningKey(resolve(props, "DB_SESSION_SIGNING_KEY", "db.sessions.signingKey", null))
+        .sessionTokenLifetimeSeconds(
+            Long.parseLong(
+                resolve(
+                    props,
+                    "DB_SESSION_TOKEN_LIFETIME_S",
+                    "db.sessions.tokenLifetimeSeconds",
+                    "900")))
+        .sessionRevocationFile(
+            resolve(props, "DB_SESSION_REVOCATION_FILE", "db.sessions.revocationFile", null))
+        .sessionsUnlogged(
+            Boolean.parseBoolean(
+                resolve(props, "DB_SESSIONS_UNLOGGED", "db.sessions.unlogged", "false")))
+        .usernameFilterEnabled(
+            Boolean.parseBoolean(resolve(props, "DB_USERNAME_FILTER", "db.users.filter", "true")))
+        .replicaJdbcUrl(resolve(props, "DB_REPLICA_URL", "db.replica.url", null))
+        .replicaUsername(resolve(props, "DB_REPLICA_USERNAME", "db.replica.username", null))
+        .replicaPassword(resolve(props, "DB_REPLICA_PASSWORD", "db.replica.password", null))
+        .replicaMaxLagMillis(
+            Long.parseLong(
+                resolve(props, "DB_REPLICA_MAX_LAG_MS", "db.replica.maxLagMillis", "1000")))
+        .build();
+  }
+
+  private static String resolve(Properties props, String env, String key, String defaultValue) {
+    return System.getenv().getOrDefault(env, props.getProperty(key, defaultValue));
+  }
+
+  private static Properties loadProperties() {
+    Properties props = new Properties();
+    try (InputStream input =
+        DatabaseConfig.class.getClassLoader().getResourceAsStream("database.properties")) {
+      if (input == null) {
+        throw new RuntimeException("Unable to find database.properties");
+      }
+      props.load(input);
+      return props;
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to load database properties", e);
+    }
+  }
 }
@@ -0,0 +1,24 @@
+package com.atm.database;
+
+import java.time.Duration;
+
+/** Selects the {@link Database} engine configured through {@code db.engine} / DB_ENGINE. */
+public final class DatabaseFactory {
+  public static final String ENGINE_POSTGRES = "postgres";
+  public static final String ENGINE_MEMORY = "memory";
+
+  private DatabaseFactory() {}
+
+  public static Database create(DatabaseConfig config) {
+    String engine = config.getEngine() == null ? ENGINE_POSTGRES : config.getEngine().trim();
+
+    switch (engine.toLowerCase()) {
+      case ENGINE_POSTGRES:
+        return new PostgresDatabase(config);
+      case ENGINE_MEMORY:
+        return new InMemoryDatabase(Duration.ofSeconds(config.getSessionTimeoutSeconds()));
+      default:
+        throw new IllegalArgumentException("Unknown database engine: " + engine);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package com.atm.database;
+
+import com.atm.exception.DatabaseException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Deletes long-expired sessions in the background. A user's session row is reused by their next
+ * login, so only rows expired for over a day, users that stopped coming back, are deleted. Each run
+ * removes them in batches of {@code batchSize}, one short transaction per batch, and pauses {@code
+ * pauseMillis} between batches so a large backlog is spread out instead of producing a burst of
+ * dead tuples for autovacuum. Batches pick their rows with {@code FOR UPDATE SKIP LOCKED}, so
+ * sweepers in several ATM processes split the work instead of blocking on each other.
+ */
+@Slf4j
+public class ExpiredSessionSweeper implements AutoCloseable {
+  private final PostgresTransaction transaction;
+  private final int batchSize;
+  private final long pauseMillis;
+  private final AtomicLong sessionsReclaimed = new AtomicLong();
+  private final AtomicLong batches = new AtomicLong();
+  private volatile boolean stopped;
+  private ScheduledExecutorService scheduler;
+
+  public ExpiredSessionSweeper(PostgresTransaction transaction, int batchSize, long pauseMillis) {
+    this.transaction = transaction;
+    this.batchSize = batchSize;
+    this.pauseMillis = pauseMillis;
+  }
+
+  /** Sweeps every {@code intervalSeconds} on a daemon thread, starting after one interval. */
+  public void start(long intervalSeconds) {
+    scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "expired-session-sweeper");
+              thread.setDaemon(true);
+              return thread;
+            });
+    scheduler.scheduleWithFixedDelay(
+        this::sweepSafely, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+  }
+
+  /** Deletes expired sessions until a batch comes back short, returns the number deleted. */
+  public long sweep() {
+    long started = System.nanoTime();
+    long deleted = 0;
+    int batch;
+    do {
+      batch = deleteBatch();
+      deleted += batch;
+      batches.incrementAndGet();
+      sessionsReclaimed.addAndGet(batch);
+    } while (batch == batchSize && pause());
+
+    if (deleted > 0) {
+      log.info(
+          "Reclaimed {} expired sessions in {} ms, {} since startup",
+          deleted,
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started),
+          sessionsReclaimed.get());
+    }
+    return deleted;
+  }
+
+  /** Expired sessions deleted by this sweeper since startup. */
+  public long getSessionsReclaimed() {
+    return sessionsReclaimed.get();
+  }
+
+  /** Delete batches run by this sweeper since startup, including empty ones. */
+  public long getBatches() {
+    return batches.get();
+  }
+
+  private int deleteBatch() {
+    return transaction.executeInTransaction(
+        connection -> {
+          try (PreparedStatement pstmt =
+              connection.prepareStatement(PostgreSQLQueries.Sessions.DELETE_EXPIRED_BATCH)) {
+            pstmt.setInt(1, batchSize);
+            return pstmt.executeUpdate();
+          } catch (SQLException e) {
+            throw new DatabaseException("Failed to delete expired sessions", e);
+          }
+        });
+  }
+
+  private boolean pause() {
+    if (stopped) {
+      return false;
+    }
+    try {
+      Thread.sleep(pauseMillis);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private void sweepSafely() {
+    try {
+      sweep();
+    } catch (Exception e) {
+      log.error("Expired session sweep failed", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    stopped = true;
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,279 @@
+package com.atm.database;
+
+import com.atm.exception.DatabaseException;
+import com.atm.exception.InsufficientFundsException;
+import com.atm.model.Money;
+import com.atm.model.TransactionResult;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Group commit pipeline for money movements. Callers enqueue operations and get a future back, a
+ * single writer thread drains the queue and applies each batch in one database transaction:
+ *
+ * <ol>
+ *   <li>lock every balance touched by the batch in user id order and read it
+ *   <li>evaluate the operations in arrival order, rejecting the ones without funds
+ *   <li>write the resulting balances and the ledger rows with JDBC batches
+ *   <li>commit once, then complete the futures
+ * </ol>
+ *
+ * A future completes only after the shared commit succeeded, so durability is the same as with one
+ * commit per operation while the WAL flush is paid once per batch.
+ */
+@Slf4j
+public class GroupCommitLedgerWriter implements AutoCloseable {
+  private final PostgresTransaction transaction;
+  private final int maxBatchSize;
+  private final long maxWaitNanos;
+  private final BlockingQueue<PendingOperation> queue = new LinkedBlockingQueue<>();
+  private final Thread writer;
+  private volatile boolean running = true;
+
+  public GroupCommitLedgerWriter(
+      PostgresTransaction transaction, int maxBatchSize, long maxWaitMillis) {
+    this.transaction = transaction;
+    this.maxBatchSize = maxBatchSize;
+    this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    this.writer = new Thread(this::run, "ledger-group-commit");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  public CompletableFuture<TransactionResult> submitTransaction(
+      Long userId, Money amount, String type) {
+    return enqueue(new PendingOperation(type, userId, userId, amount));
+  }
+
+  public CompletableFuture<TransactionResult> submitTransfer(
+      Long fromUserId, Long toUserId, Money amount) {
+    return enqueue(new PendingOperation("TRANSFER", fromUserId, toUserId, amount));
+  }
+
+  private CompletableFuture<TransactionResult> enqueue(PendingOperation operation) {
+    if (!running) {
+      operation.future.completeExceptionally(
+          new DatabaseException("Group commit writer is closed"));
+      return operation.future;
+    }
+    queue.add(operation);
+    // A close in between may have drained the queue for the last time, unless the writer took it
+    if (!running && queue.remove(operation)) {
+      operation.future.completeExceptionally(
+          new DatabaseException("Group commit writer is closed"));
+    }
+    return operation.future;
+  }
+
+  private void run() {
+    List<PendingOperation> batch = new ArrayList<>(maxBatchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        PendingOperation first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+
+        // Linger briefly so concurrent callers can join the same commit
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while (batch.size() < maxBatchSize) {
+          if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+            continue;
+          }
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0) {
+            break;
+          }
+          PendingOperation next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+        }
+
+        commitBatch(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        // The operations taken off the queue so far are no longer in it for failPending
+        running = false;
+        for (PendingOperation operation : batch) {
+          operation.future.completeExceptionally(
+              new DatabaseException("Group commit writer is closed"));
+        }
+        break;
+      } finally {
+        batch.clear();
+      }
+    }
+    failPending(new DatabaseException("Group commit writer is closed"));
+  }
+
+  private void commitBatch(List<PendingOperation> batch) {
+    try {
+      // Rejections are completed while the batch is applied, so a replay could contradict them
+      List<PendingOperation> accepted =
+          transaction.executeInTransactionOnce(connection -> applyBatch(connection, batch));
+
+      for (PendingOperation operation : accepted) {
+        operation.future.complete(operation.result);
+      }
+      log.debug("Group committed {} of {} operations", accepted.size(), batch.size());
+    } catch (RuntimeException e) {
+      log.error("Failed to group commit {} operations", batch.size(), e);
+      for (PendingOperation operation : batch) {
+        operation.future.completeExceptionally(e);
+      }
+    }
+  }
+
+  private List<PendingOperation> applyBatch(Connection connection, List<PendingOperation> batch) {
+    try {
+      Map<Long, Money> balances = lockBalances(connection, batch);
+
+      List<PendingOperation> accepted = new ArrayList<>(batch.size());
+      Set<Long> dirty = new LinkedHashSet<>();
+      for (PendingOperation operation : batch) {
+        RuntimeException rejection = evaluate(operation, balances);
+        if (rejection != null) {
+          operation.future.completeExceptionally(rejection);
+          continue;
+        }
+        dirty.add(operation.fromUserId);
+        dirty.add(operation.toUserId);
+        accepted.add(operation);
+      }
+
+      if (accepted.isEmpty()) {
+        return accepted;
+      }
+
+      try (PreparedStatement update = connection.prepareStatement(PostgreSQLQueries.Balances.SET)) {
+        for (Long userId : dirty) {
+          update.setLong(1, balances.get(userId).getMinorUnits());
+          update.setLong(2, userId);
+          update.addBatch();
+        }
+        update.executeBatch();
+      }
+
+      try (PreparedStatement insert =
+          connection.prepareStatement(
+              PostgreSQLQueries.Transactions.CREATE, Statement.RETURN_GENERATED_KEYS)) {
+        for (PendingOperation operation : accepted) {
+          insert.setLong(1, operation.fromUserId);
+          insert.setLong(2, operation.toUserId);
+          insert.setLong(3, operation.amount.getMinorUnits());
+          insert.setString(4, operation.type);
+          insert.addBatch();
+        }
+        insert.executeBatch();
+
+        try (ResultSet keys = insert.getGeneratedKeys()) {
+          for (PendingOperation operation : accepted) {
+            if (!keys.next()) {
+              throw new DatabaseException("Failed to create transaction record");
+            }
+            operation.result.setTransactionId(keys.getLong(1));
+          }
+        }
+      }
+      return accepted;
+    } catch (SQLException e) {
+      throw new DatabaseException("Failed to apply group commit batch", e);
+    }
+  }
+
+  private Map<Long, Money> lockBalances(Connection connection, List<PendingOperation> batch)
+      throws SQLException {
+    Set<Long> userIds = new HashSet<>();
+    for (PendingOperation operation : batch) {
+      userIds.add(operation.fromUserId);
+      userIds.add(operation.toUserId);
+    }
+    return BalanceLocks.lockInOrder(connection, userIds);
+  }
+
+  /** Applies the operation to the in-batch balances, returns the rejection if it cannot apply. */
+  private RuntimeException evaluate(PendingOperation operation, Map<Long, Money> balances) {
+    Money source = balances.get(operation.fromUserId);
+    if (source == null) {
+      return new DatabaseException("No balance record found for user: " + operation.fromUserId);
+    }
+
+    switch (operation.type) {
+      case "DEPOSIT":
+        balances.put(operation.fromUserId, source.plus(operation.amount));
+        break;
+      case "WITHDRAW":
+      case "TRANSFER":
+        if (source.isLessThan(operation.amount)) {
+          return new InsufficientFundsException(
+              "Insufficient funds. Available: " + source + ", Required: " + operation.amount);
+        }
+        Money target = balances.get(operation.toUserId);
+        if (target == null) {
+          return new DatabaseException(
+              "No balance record found for target user: " + operation.toUserId);
+        }
+        balances.put(operation.fromUserId, source.minus(operation.amount));
+        if (operation.type.equals("TRANSFER")) {
+          balances.put(operation.toUserId, target.plus(operation.amount));
+        }
+        break;
+      default:
+        return new IllegalArgumentException("Unknown transaction type: " + operation.type);
+    }
+
+    operation.result.setBalance(balances.get(operation.fromUserId));
+    return null;
+  }
+
+  private void failPending(RuntimeException cause) {
+    PendingOperation operation;
+    while ((operation = queue.poll()) != null) {
+      operation.future.completeExceptionally(cause);
+    }
+  }
+
+  @Override
+  public void close() {
+    running = false;
+    try {
+      writer.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    failPending(new DatabaseException("Group commit writer is closed"));
+  }
+
+  private static final class PendingOperation {
+    private final String type;
+    private final Long fromUserId;
+    private final Long toUserId;
+    private final Money amount;
+    private final TransactionResult result = TransactionResult.builder().build();
+    private final CompletableFuture<TransactionResult> future = new CompletableFuture<>();
+
+    private PendingOperation(String type, Long fromUserId, Long toUserId, Money amount) {
+      this.type = type;
+      this.fromUserId = fromUserId;
+      this.toUserId = toUserId;
+      this.amount = amount;
+    }
+  }
+}
@@ -0,0 +1,590 @@
+package com.atm.database;
+
+import com.atm.exception.DatabaseException;
+import com.atm.exception.InsufficientFundsException;
+import com.atm.model.Balance;
+import com.atm.model.DailyTotal;
+import com.atm.model.ExportResult;
+import com.atm.model.Money;
+import com.atm.model.PayoutItem;
+import com.atm.model.PayoutResult;
+import com.atm.model.Session;
+import com.atm.model.Transaction;
+import com.atm.model.TransactionExport;
+import com.atm.model.TransactionResult;
+import com.atm.model.User;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-process storage engine, intended for edge terminals and for benchmarking the service layer
+ * without database round trips. Nothing is persisted across restarts.
+ *
+ * <p>Balances are partitioned across a fixed number of lock stripes, each stripe owning a
+ * primitive-keyed map of user id to balance. Transfers lock the stripes of both accounts in
+ * ascending stripe order, mirroring the ordered locking of {@link PostgresDatabase}.
+ */
+@Slf4j
+public class InMemoryDatabase implements Database {
+  private static final int STRIPES = 64;
+
+  private final BalanceStripe[] stripes = new BalanceStripe[STRIPES];
+  private final Duration sessionTimeout;
+
+  private final Map<String, User> usersByUsername = new ConcurrentHashMap<>();
+  private final Map<Long, User> usersById = new ConcurrentHashMap<>();
+  private final AtomicLong userIds = new AtomicLong();
+
+  private final Map<Long, Session> sessionsById = new ConcurrentHashMap<>();
+  private final Map<Long, Long> sessionIdsByUser = new ConcurrentHashMap<>();
+  private final AtomicLong sessionIds = new AtomicLong();
+
+  private final Queue<Transaction> ledger = new ConcurrentLinkedQueue<>();
+  private final AtomicLong transactionIds = new AtomicLong();
+
+  // Ledger entries by participant, keyed by transaction id, the in-memory history indexes
+  private final Map<Long, ConcurrentNavigableMap<Long, Transaction>> historyByUser =
+      new ConcurrentHashMap<>();
+
+  // Totals by participant, UTC day and type, updated with each ledger entry like the rollup table
+  private final Map<
+          Long,
+          ConcurrentNavigableMap<LocalDate, ConcurrentNavigableMap<DailyTotal.Type, DailyTotal>>>
+      dailyTotalsByUser = new ConcurrentHashMap<>();
+
+  public InMemoryDatabase() {
+    this(Duration.ofMinutes(1));
+  }
+
+  public InMemoryDatabase(Duration sessionTimeout) {
+    this.sessionTimeout = sessionTimeout;
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new BalanceStripe();
+    }
+    log.info("In-memory database initialized with {} balance stripes", STRIPES);
+  }
+
+  /*
+   * User operations
+   */
+  @Override
+  public Long createUser(String username, String passwordHash) {
+    Long userId = userIds.incrementAndGet();
+    User user = User.builder().id(userId).username(username).passwordHash(passwordHash).build();
+
+    if (usersByUsername.putIfAbsent(username, user) != null) {
+      throw new DatabaseException("Duplicate entry: " + username);
+    }
+    usersById.put(userId, user);
+
+    BalanceStripe stripe = stripeFor(userId);
+    stripe.lock.lock();
+    try {
+      stripe.balances.put(userId, Money.ZERO);
+    } finally {
+      stripe.lock.unlock();
+    }
+
+    log.info("Successfully created user: {}", username);
+    return userId;
+  }
+
+  @Override
+  public List<String> createUsers(List<User> users) {
+    List<String> duplicates = new ArrayList<>();
+    for (User user : users) {
+      try {
+        createUser(user.getUsername(), user.getPasswordHash());
+      } catch (DatabaseException e) {
+        duplicates.add(user.getUsername());
+      }
+    }
+    return duplicates;
+  }
+
+  @Override
+  public Optional<User> getUserByUsername(String username) {
+    return Optional.ofNullable(usersByUsername.get(username));
+  }
+
+  @Override
+  public Optional<Long> getUserIdByUsername(String username) {
+    return getUserByUsername(username).map(User::getId);
+  }
+
+  @Override
+  public long estimateUserCount() {
+    return usersById.size();
+  }
+
+  @Override
+  public void streamUsernames(long afterUserId, BiConsumer<Long, String> consumer) {
+    usersById.values().stream()
+        .filter(user -> user.getId() > afterUserId)
+        .sorted(Comparator.comparing(User::getId))
+        .forEach(user -> consumer.accept(user.getId(), user.getUsername()));
+  }
+
+  @Override
+  public Map<String, Long> getUserIdsByUsernames(Collection<String> usernames) {
+    Map<String, Long> userIds = new HashMap<>();
+    for (String username : usernames) {
+      User user = usersByUsername.get(username);
+      if (user != null) {
+        userIds.put(username, user.getId());
+      }
+    }
+    return userIds;
+  }
+
+  @Override
+  public void updateLastLogin(Long userId) {
+    User user = usersById.get(userId);
+    if (user != null) {
+      user.setLastLogin(LocalDateTime.now());
+    }
+  }
+
+  /*
+   * Session operations
+   */
+  @Override
+  public Long createSession(Long userId) {
+    Long sessionId = sessionIds.incrementAndGet();
+    LocalDateTime now = LocalDateTime.now();
+    Session session =
+        Session.builder()
+            .id(sessionId)
+            .userId(userId)
+            .createdAt(now)
+            .lastActivityAt(now)
+            .expiresAt(now.plus(sessionTimeout))
+            .build();
+
+    sessionIdsByUser.compute(
+        userId,
+        (id, previous) -> {
+          if (previous != null) {
+            sessionsById.remove(previous);
+          }
+          sessionsById.put(sessionId, session);
+          return sessionId;
+        });
+
+    log.info("Created session for user: {}", userId);
+    return sessionId;
+  }
+
+  @Override
+  public Optional<Session> getSessionById(Long sessionId) {
+    return Optional.ofNullable(sessionsById.get(sessionId)).filter(this::isActive);
+  }
+
+  @Override
+  public Optional<Session> touchSession(Long sessionId) {
+    Session updated =
+        sessionsById.computeIfPresent(
+            sessionId,
+            (id, session) -> {
+              if (!isActive(session)) {
+                return session;
+              }
+              LocalDateTime now = LocalDateTime.now();
+              session.setLastActivityAt(now);
+              session.setExpiresAt(now.plus(sessionTimeout));
+              return session;
+            });
+    return Optional.ofNullable(updated).filter(this::isActive);
+  }
+
+  @Override
+  public Set<Long> touchSessions(Collection<Long> sessionIds) {
+    Set<Long> touched = new HashSet<>();
+    for (Long sessionId : sessionIds) {
+      touchSession(sessionId).ifPresent(session -> touched.add(sessionId));
+    }
+    return touched;
+  }
+
+  @Override
+  public Optional<Session> getActiveSession(Long userId) {
+    return Optional.ofNullable(sessionIdsByUser.get(userId)).flatMap(this::getSessionById);
+  }
+
+  @Override
+  public void deleteSession(Long sessionId) {
+    Session removed = sessionsById.remove(sessionId);
+    if (removed == null) {
+      throw new DatabaseException("Session not found: " + sessionId);
+    }
+    sessionIdsByUser.remove(removed.getUserId(), sessionId);
+  }
+
+  /*
+   * Balance operations
+   */
+  @Override
+  public Money getBalance(Long userId) {
+    BalanceStripe stripe = stripeFor(userId);
+    stripe.lock.lock();
+    try {
+      return requireBalance(stripe, userId, "user");
+    } finally {
+      stripe.lock.unlock();
+    }
+  }
+
+  /** Versions are not tracked in memory, callers get 0. */
+  @Override
+  public Balance getBalanceSnapshot(Long userId) {
+    return Balance.builder().userId(userId).balance(getBalance(userId)).version(0L).build();
+  }
+
+  /** Balances are read from memory directly, there is nothing worth caching. */
+  @Override
+  public boolean subscribeBalanceChanges(BalanceChangeListener listener) {
+    return false;
+  }
+
+  /*
+   * Transaction operations
+   */
+  @Override
+  public TransactionResult createTransaction(Long userId, Money amount, String type) {
+    BalanceStripe stripe = stripeFor(userId);
+    Long transactionId;
+    Money newBalance;
+
+    stripe.lock.lock();
+    try {
+      Money currentBalance = requireBalance(stripe, userId, "user");
+
+      if (type.equals("DEPOSIT")) {
+        newBalance = currentBalance.plus(amount);
+      } else {
+        if (currentBalance.isLessThan(amount)) {
+          throw new InsufficientFundsException(
+              "Insufficient funds. Available: " + currentBalance + ", Required: " + amount);
+        }
+        newBalance = currentBalance.minus(amount);
+      }
+
+      stripe.balances.put(userId, newBalance);
+      transactionId = appendToLedger(userId, userId, amount, type);
+    } finally {
+      stripe.lock.unlock();
+    }
+
+    log.info(
+        "Successfully performed transaction of {} for user {}. Transaction ID: {}",
+        amount,
+        userId,
+        transactionId);
+    return TransactionResult.builder().transactionId(transactionId).balance(newBalance).build();
+  }
+
+  @Override
+  public void performTransfer(Long fromUserId, Long toUserId, Money amount) {
+    BalanceStripe fromStripe = stripeFor(fromUserId);
+    BalanceStripe toStripe = stripeFor(toUserId);
+
+    // Ordered locking on stripe index, same as the user id ordering used by PostgreSQL
+    int fromIndex = stripeIndex(fromUserId);
+    int toIndex = stripeIndex(toUserId);
+    BalanceStripe firstLock = fromIndex <= toIndex ? fromStripe : toStripe;
+    BalanceStripe secondLock = fromIndex <= toIndex ? toStripe : fromStripe;
+
+    Long transactionId;
+    firstLock.lock.lock();
+    try {
+      if (secondLock != firstLock) {
+        secondLock.lock.lock();
+      }
+      try {
+        Money sourceBalance = requireBalance(fromStripe, fromUserId, "source user");
+        if (sourceBalance.isLessThan(amount)) {
+          throw new InsufficientFundsException(
+              "Insufficient funds. Available: " + sourceBalance + ", Required: " + amount);
+        }
+        Money destinationBalance = requireBalance(toStripe, toUserId, "target user");
+
+        fromStripe.balances.put(fromUserId, sourceBalance.minus(amount));
+        toStripe.balances.put(toUserId, destinationBalance.plus(amount));
+        transactionId = appendToLedger(fromUserId, toUserId, amount, "TRANSFER");
+      } finally {
+        if (secondLock != firstLock) {
+          secondLock.lock.unlock();
+        }
+      }
+    } finally {
+      firstLock.lock.unlock();
+    }
+
+    log.info(
+        "Successfully transferred {} from user {} to user {}. Transaction ID: {}",
+        amount,
+        fromUserId,
+        toUserId,
+        transactionId);
+  }
+
+  @Override
+  public PayoutResult performBatchTransfer(Long fromUserId, List<PayoutItem> items) {
+    Money total = Money.ZERO;
+    Money newBalance;
+    TreeSet<Integer> stripeIndexes = new TreeSet<>();
+    stripeIndexes.add(stripeIndex(fromUserId));
+    for (PayoutItem item : items) {
+      total = total.plus(item.getAmount());
+      stripeIndexes.add(stripeIndex(item.getUserId()));
+    }
+
+    // Ordered locking over every stripe involved, ascending like the two-party transfer
+    for (int index : stripeIndexes) {
+      stripes[index].lock.lock();
+    }
+    try {
+      Money sourceBalance = requireBalance(stripeFor(fromUserId), fromUserId, "source user");
+      for (PayoutItem item : items) {
+        requireBalance(stripeFor(item.getUserId()), item.getUserId(), "target user");
+      }
+      if (sourceBalance.isLessThan(total)) {
+        throw new InsufficientFundsException(
+            "Insufficient funds. Available: " + sourceBalance + ", Required: " + total);
+      }
+
+      newBalance = sourceBalance.minus(total);
+      stripeFor(fromUserId).balances.put(fromUserId, newBalance);
+      for (PayoutItem item : items) {
+        BalanceStripe stripe = stripeFor(item.getUserId());
+        stripe.balances.put(
+            item.getUserId(), stripe.balances.get(item.getUserId()).plus(item.getAmount()));
+        appendToLedger(fromUserId, item.getUserId(), item.getAmount(), "TRANSFER");
+      }
+    } finally {
+      for (int index : stripeIndexes.descendingSet()) {
+        stripes[index].lock.unlock();
+      }
+    }
+
+    log.info("Successfully paid {} to {} recipients from user {}", total, items.size(), fromUserId);
+    return PayoutResult.builder()
+        .recipients(items.size())
+        .totalAmount(total)
+        .balance(newBalance)
+        .build();
+  }
+
+  /** Stripes lock at most a handful of accounts briefly, there is no row lock to spread. */
+  @Override
+  public void setBalanceSlots(Long userId, int slots) {
+    getBalance(userId);
+  }
+
+  @Override
+  public void streamTransactionHistory(
+      Long userId, Long beforeId, int limit, Consumer<Transaction> consumer) {
+    ConcurrentNavigableMap<Long, Transaction> history = historyByUser.get(userId);
+    if (history == null) {
+      return;
+    }
+
+    ConcurrentNavigableMap<Long, Transaction> page =
+        beforeId != null ? history.headMap(beforeId, false) : history;
+    int remaining = limit;
+    for (Transaction entry : page.descendingMap().values()) {
+      if (remaining-- == 0) {
+        break;
+      }
+      consumer.accept(entry);
+    }
+  }
+
+  /** Writes the ledger as CSV in the same column layout as the PostgreSQL export. */
+  @Override
+  public ExportResult exportTransactions(TransactionExport export) {
+    if (export.getFormat() != TransactionExport.Format.CSV) {
+      throw new DatabaseException("Binary export requires the postgres engine");
+    }
+
+    long started = System.nanoTime();
+    long rows = 0;
+    try (BufferedWriter writer =
+        Files.newBufferedWriter(export.getFile(), StandardCharsets.UTF_8)) {
+      writer.write("id,from_user_id,to_user_id,amount,type,created_at");
+      writer.newLine();
+      for (Transaction entry : ledger) {
+        if (!matches(entry, export)) {
+          continue;
+        }
+        writer.write(
+            entry.getId()
+                + ","
+                + entry.getFromUserId()
+                + ","
+                + entry.getToUserId()
+                + ","
+                + entry.getAmount()
+                + ","
+                + entry.getType()
+                + ","
+                + entry.getCreatedAt());
+        writer.newLine();
+        rows++;
+      }
+    } catch (IOException e) {
+      throw new DatabaseException("Failed to export transactions", e);
+    }
+
+    try {
+      return ExportResult.builder()
+          .rows(rows)
+          .bytes(Files.size(export.getFile()))
+          .elapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started))
+          .build();
+    } catch (IOException e) {
+      throw new DatabaseException("Failed to export transactions", e);
+    }
+  }
+
+  @Override
+  public List<DailyTotal> getDailyTotals(Long userId, LocalDate from, LocalDate to) {
+    List<DailyTotal> totals = new ArrayList<>();
+    ConcurrentNavigableMap<LocalDate, ConcurrentNavigableMap<DailyTotal.Type, DailyTotal>> days =
+        dailyTotalsByUser.get(userId);
+    if (days != null) {
+      days.subMap(from, true, to, false).values().forEach(day -> totals.addAll(day.values()));
+    }
+    return totals;
+  }
+
+  /*
+   * Utility methods
+   */
+  private boolean matches(Transaction entry, TransactionExport export) {
+    if (export.getUserId() != null
+        && !export.getUserId().equals(entry.getFromUserId())
+        && !export.getUserId().equals(entry.getToUserId())) {
+      return false;
+    }
+    LocalDateTime createdAt = toUtc(entry.getCreatedAt());
+    if (export.getFrom() != null && createdAt.isBefore(export.getFrom().atStartOfDay())) {
+      return false;
+    }
+    return export.getTo() == null || createdAt.isBefore(export.getTo().atStartOfDay());
+  }
+
+  private Long appendToLedger(Long fromUserId, Long toUserId, Money amount, String type) {
+    Long transactionId = transactionIds.incrementAndGet();
+    Transaction entry =
+        Transaction.builder()
+            .id(transactionId)
+            .fromUserId(fromUserId)
+            .toUserId(toUserId)
+            .amount(amount)
+            .type(Transaction.TransactionType.valueOf(type))
+            .build();
+    ledger.add(entry);
+    historyFor(fromUserId).put(transactionId, entry);
+    if (!fromUserId.equals(toUserId)) {
+      historyFor(toUserId).put(transactionId, entry);
+    }
+
+    LocalDate day = toUtc(entry.getCreatedAt()).toLocalDate();
+    if (entry.getType() == Transaction.TransactionType.TRANSFER) {
+      addToDailyTotal(fromUserId, day, DailyTotal.Type.TRANSFER_OUT, amount);
+      addToDailyTotal(toUserId, day, DailyTotal.Type.TRANSFER_IN, amount);
+    } else {
+      addToDailyTotal(fromUserId, day, DailyTotal.Type.valueOf(type), amount);
+    }
+    return transactionId;
+  }
+
+  private void addToDailyTotal(Long userId, LocalDate day, DailyTotal.Type type, Money amount) {
+    dailyTotalsByUser
+        .computeIfAbsent(userId, id -> new ConcurrentSkipListMap<>())
+        .computeIfAbsent(day, d -> new ConcurrentSkipListMap<>())
+        .merge(
+            type,
+            DailyTotal.builder().day(day).type(type).count(1).amount(amount).build(),
+            (total, added) ->
+                DailyTotal.builder()
+                    .day(day)
+                    .type(type)
+                    .count(total.getCount() + added.getCount())
+                    .amount(total.getAmount().plus(added.getAmount()))
+                    .build());
+  }
+
+  // Ledger timestamps are local, days and export bounds are UTC like the PostgreSQL engine
+  private LocalDateTime toUtc(LocalDateTime createdAt) {
+    return createdAt
+        .atZone(ZoneId.systemDefault())
+        .withZoneSameInstant(ZoneOffset.UTC)
+        .toLocalDateTime();
+  }
+
+  private ConcurrentNavigableMap<Long, Transaction> historyFor(Long userId) {
+    return historyByUser.computeIfAbsent(userId, id -> new ConcurrentSkipListMap<>());
+  }
+
+  private Money requireBalance(BalanceStripe stripe, Long userId, String role) {
+    Money balance = userId == null ? null : stripe.balances.get(userId);
+    if (balance == null) {
+      throw new DatabaseException("No balance record found for " + role + ": " + userId);
+    }
+    return balance;
+  }
+
+  private boolean isActive(Session session) {
+    return session.getExpiresAt() == null || session.getExpiresAt().isAfter(LocalDateTime.now());
+  }
+
+  private BalanceStripe stripeFor(Long userId) {
+    return stripes[stripeIndex(userId)];
+  }
+
+  private int stripeIndex(Long userId) {
+    long id = userId == null ? 0L : userId;
+    long hash = id * 0x9E3779B97F4A7C15L;
+    return (int) (hash >>> 32) & (STRIPES - 1);
+  }
+
+  @Override
+  public void close() {
+    log.info("Closing in-memory database, {} ledger entries discarded", ledger.size());
+  }
+
+  private static final class BalanceStripe {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LongObjectHashMap<Money> balances = new LongObjectHashMap<>();
+  }
+}
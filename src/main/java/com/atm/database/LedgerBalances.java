@@ -0,0 +1,453 @@
+package com.atm.database;
+
+import com.atm.exception.DatabaseException;
+import com.atm.exception.InsufficientFundsException;
+import com.atm.model.Money;
+import com.atm.model.PayoutItem;
+import com.atm.model.PayoutResult;
+import com.atm.model.TransactionResult;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Event-sourced balances of the {@code ledger} balance store. Every money movement records its
+ * history row and appends one entry per account it touches to {@code ledger_entries}, nothing is
+ * updated in place. An account's balance is its row in {@code balance_snapshots} plus the entries
+ * after it, which {@link LedgerSnapshotter} folds in the background.
+ *
+ * <p>Balances are served from an in-memory projection. An append takes the next sequence number of
+ * every account it touches, so the primary key on (user_id, seq) rejects an append computed from a
+ * projected balance that another process has moved on from. The rejection is replayed by {@link
+ * PostgresTransaction} against reloaded accounts, which keeps the funds check exact across ATM
+ * processes without locking a row. A projected balance can also be behind credits of another
+ * process, so a shortfall is only reported once the primary confirms it. Reads trust a projected
+ * balance for {@code maxStalenessMillis} and reload it from the primary after that, this process's
+ * own appends are projected right away.
+ */
+@Slf4j
+public final class LedgerBalances {
+  private static final String UNIQUE_VIOLATION = "23505";
+
+  // Appends of this process to the same account queue here instead of replaying each other
+  private static final int LOCK_STRIPES = 256;
+
+  // Dropped wholesale beyond this, accounts are reloaded on their next use
+  private static final int MAX_PROJECTED_ACCOUNTS = 1_000_000;
+
+  private final PostgresTransaction transaction;
+  private final long maxStalenessNanos;
+  private final Map<Long, Account> projection = new ConcurrentHashMap<>();
+  private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+  /** Balance of an account after its entry {@code seq}. */
+  private static final class Account {
+    final Money balance;
+    final long seq;
+    final long projectedAtNanos;
+
+    Account(Money balance, long seq) {
+      this.balance = balance;
+      this.seq = seq;
+      this.projectedAtNanos = System.nanoTime();
+    }
+  }
+
+  @FunctionalInterface
+  private interface Append<T> {
+    /** Checks the movement against the accounts and appends it, the new states go to appended. */
+    T apply(Connection connection, Map<Long, Account> accounts, Map<Long, Account> appended)
+        throws SQLException;
+  }
+
+  public LedgerBalances(PostgresTransaction transaction, long maxStalenessMillis) {
+    this.transaction = transaction;
+    this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(maxStalenessMillis);
+    for (int i = 0; i < LOCK_STRIPES; i++) {
+      locks[i] = new ReentrantLock();
+    }
+  }
+
+  public Money getBalance(Long userId) {
+    Account account = projection.get(userId);
+    if (account != null && System.nanoTime() - account.projectedAtNanos < maxStalenessNanos) {
+      return account.balance;
+    }
+
+    Collection<Long> userIds = Collections.singletonList(userId);
+    account =
+        transaction
+            .executeReadOnlyOnPrimary(
+                connection -> {
+                  try {
+                    return read(connection, userIds);
+                  } catch (SQLException e) {
+                    throw new DatabaseException("Failed to get balance", e);
+                  }
+                })
+            .get(userId);
+    if (account == null) {
+      // First use of the account under the ledger store, seeding it needs a writable connection
+      account =
+          transaction
+              .executeInTransaction(connection -> loadSeeding(connection, userIds))
+              .get(userId);
+    }
+    if (account == null) {
+      throw new DatabaseException("No balance record found for user: " + userId);
+    }
+    project(userId, account);
+    return account.balance;
+  }
+
+  public TransactionResult createTransaction(Long userId, Money amount, String type) {
+    Money delta = type.equals("DEPOSIT") ? amount : amount.negate();
+    return append(
+        Collections.singletonList(userId),
+        "Failed to perform transaction operation",
+        (connection, accounts, appended) -> {
+          Account account = accounts.get(userId);
+          if (account == null) {
+            throw new DatabaseException("No balance record found for user: " + userId);
+          }
+          if (account.balance.plus(delta).signum() < 0) {
+            account = reload(connection, accounts).get(userId);
+          }
+          if (account.balance.plus(delta).signum() < 0) {
+            throw new InsufficientFundsException(
+                "Insufficient funds. Available: " + account.balance + ", Required: " + amount);
+          }
+
+          Long transactionId =
+              record(
+                  connection,
+                  userId,
+                  userId,
+                  amount,
+                  type,
+                  accounts,
+                  Collections.singletonMap(userId, delta),
+                  appended);
+          log.info(
+              "Successfully performed transaction of {} for user {}. Transaction ID: {}",
+              amount,
+              userId,
+              transactionId);
+          return TransactionResult.builder()
+              .transactionId(transactionId)
+              .balance(appended.get(userId).balance)
+              .build();
+        });
+  }
+
+  public void performTransfer(Long fromUserId, Long toUserId, Money amount) {
+    append(
+        Arrays.asList(fromUserId, toUserId),
+        "Failed to perform transfer operation",
+        (connection, accounts, appended) -> {
+          Account source = accounts.get(fromUserId);
+          if (source == null) {
+            throw new DatabaseException("No balance record found for source user: " + fromUserId);
+          }
+          if (!accounts.containsKey(toUserId)) {
+            throw new DatabaseException("No balance record found for target user: " + toUserId);
+          }
+          if (source.balance.isLessThan(amount)) {
+            source = reload(connection, accounts).get(fromUserId);
+          }
+          if (source.balance.isLessThan(amount)) {
+            throw new InsufficientFundsException(
+                "Insufficient funds. Available: " + source.balance + ", Required: " + amount);
+          }
+
+          Map<Long, Money> deltas = new TreeMap<>();
+          deltas.merge(fromUserId, amount.negate(), Money::plus);
+          deltas.merge(toUserId, amount, Money::plus);
+          Long transactionId =
+              record(
+                  connection, fromUserId, toUserId, amount, "TRANSFER", accounts, deltas, appended);
+          log.info(
+              "Successfully transferred {} from user {} to user {}. Transaction ID: {}",
+              amount,
+              fromUserId,
+              toUserId,
+              transactionId);
+          return transactionId;
+        });
+  }
+
+  public PayoutResult performBatchTransfer(Long fromUserId, List<PayoutItem> items) {
+    Set<Long> userIds = new LinkedHashSet<>();
+    userIds.add(fromUserId);
+    Money total = Money.ZERO;
+    Long[] recipientIds = new Long[items.size()];
+    Long[] amounts = new Long[items.size()];
+    Map<Long, Money> deltas = new TreeMap<>();
+    for (int i = 0; i < items.size(); i++) {
+      PayoutItem item = items.get(i);
+      userIds.add(item.getUserId());
+      total = total.plus(item.getAmount());
+      recipientIds[i] = item.getUserId();
+      amounts[i] = item.getAmount().getMinorUnits();
+      deltas.merge(item.getUserId(), item.getAmount(), Money::plus);
+    }
+    deltas.merge(fromUserId, total.negate(), Money::plus);
+    Money required = total;
+
+    return append(
+        userIds,
+        "Failed to perform batch transfer",
+        (connection, accounts, appended) -> {
+          Account source = accounts.get(fromUserId);
+          if (source == null) {
+            throw new DatabaseException("No balance record found for source user: " + fromUserId);
+          }
+          for (Long userId : userIds) {
+            if (!accounts.containsKey(userId)) {
+              throw new DatabaseException("No balance record found for target user: " + userId);
+            }
+          }
+          if (source.balance.isLessThan(required)) {
+            source = reload(connection, accounts).get(fromUserId);
+          }
+          if (source.balance.isLessThan(required)) {
+            throw new InsufficientFundsException(
+                "Insufficient funds. Available: " + source.balance + ", Required: " + required);
+          }
+
+          try (PreparedStatement insert =
+              connection.prepareStatement(PostgreSQLQueries.Transactions.CREATE_TRANSFERS)) {
+            insert.setLong(1, fromUserId);
+            insert.setArray(2, connection.createArrayOf("bigint", recipientIds));
+            insert.setArray(3, connection.createArrayOf("bigint", amounts));
+            insert.executeUpdate();
+          }
+          try (PreparedStatement entries =
+              connection.prepareStatement(PostgreSQLQueries.Ledger.APPEND)) {
+            bindEntries(connection, entries, 1, accounts, deltas, appended);
+            entries.executeUpdate();
+          }
+
+          log.info(
+              "Successfully paid {} to {} recipients from user {}",
+              required,
+              items.size(),
+              fromUserId);
+          return PayoutResult.builder()
+              .recipients(items.size())
+              .totalAmount(required)
+              .balance(source.balance.minus(required))
+              .build();
+        });
+  }
+
+  /**
+   * Runs an append holding this process's locks of the accounts, and projects the appended states
+   * once it committed. A failure of unknown outcome, e.g. a lost commit, drops the accounts from
+   * the projection.
+   */
+  private <T> T append(Collection<Long> userIds, String failure, Append<T> operation) {
+    List<ReentrantLock> held = lock(userIds);
+    try {
+      Map<Long, Account> appended = new HashMap<>();
+      T result =
+          transaction.executeInTransaction(
+              connection -> {
+                appended.clear();
+                try {
+                  return operation.apply(connection, current(connection, userIds), appended);
+                } catch (SQLException e) {
+                  if (UNIQUE_VIOLATION.equals(e.getSQLState())) {
+                    // Another process appended first, replayed against the reloaded accounts
+                    userIds.forEach(projection::remove);
+                    throw OptimisticBalances.conflict();
+                  }
+                  log.error(failure, e);
+                  throw new DatabaseException(failure, e);
+                }
+              });
+      appended.forEach(this::project);
+      return result;
+    } catch (DatabaseException e) {
+      userIds.forEach(projection::remove);
+      throw e;
+    } finally {
+      held.forEach(ReentrantLock::unlock);
+    }
+  }
+
+  // Stripes are taken in index order so appends sharing accounts never deadlock
+  private List<ReentrantLock> lock(Collection<Long> userIds) {
+    Set<Integer> stripes = new TreeSet<>();
+    for (Long userId : userIds) {
+      stripes.add((int) (userId & (LOCK_STRIPES - 1)));
+    }
+    List<ReentrantLock> held = new ArrayList<>(stripes.size());
+    for (int stripe : stripes) {
+      locks[stripe].lock();
+      held.add(locks[stripe]);
+    }
+    return held;
+  }
+
+  /** Projected accounts as they are, whether stale or not is settled by the append itself. */
+  private Map<Long, Account> current(Connection connection, Collection<Long> userIds)
+      throws SQLException {
+    Map<Long, Account> accounts = new HashMap<>();
+    List<Long> missing = new ArrayList<>();
+    for (Long userId : userIds) {
+      Account account = projection.get(userId);
+      if (account != null) {
+        accounts.put(userId, account);
+      } else {
+        missing.add(userId);
+      }
+    }
+    if (!missing.isEmpty()) {
+      Map<Long, Account> loaded = seedAndLoad(connection, missing);
+      loaded.forEach(this::project);
+      accounts.putAll(loaded);
+    }
+    return accounts;
+  }
+
+  /**
+   * Replaces the accounts with their states on the primary, read in the append's own transaction.
+   * Any of them the append still numbers wrongly is rejected by the primary key as usual.
+   */
+  private Map<Long, Account> reload(Connection connection, Map<Long, Account> accounts)
+      throws SQLException {
+    Map<Long, Account> reloaded = read(connection, accounts.keySet());
+    reloaded.forEach(this::project);
+    accounts.putAll(reloaded);
+    return accounts;
+  }
+
+  private Map<Long, Account> loadSeeding(Connection connection, Collection<Long> userIds) {
+    try {
+      return seedAndLoad(connection, userIds);
+    } catch (SQLException e) {
+      throw new DatabaseException("Failed to get balance", e);
+    }
+  }
+
+  private static Map<Long, Account> seedAndLoad(Connection connection, Collection<Long> userIds)
+      throws SQLException {
+    Map<Long, Account> accounts = read(connection, userIds);
+    if (accounts.size() == userIds.size()) {
+      return accounts;
+    }
+    List<Long> missing = new ArrayList<>();
+    for (Long userId : userIds) {
+      if (!accounts.containsKey(userId)) {
+        missing.add(userId);
+      }
+    }
+    Array ids = connection.createArrayOf("bigint", missing.toArray());
+    try (PreparedStatement seed = connection.prepareStatement(PostgreSQLQueries.Ledger.SEED)) {
+      seed.setArray(1, ids);
+      seed.executeUpdate();
+    } finally {
+      ids.free();
+    }
+    accounts.putAll(read(connection, missing));
+    return accounts;
+  }
+
+  private static Map<Long, Account> read(Connection connection, Collection<Long> userIds)
+      throws SQLException {
+    Map<Long, Account> accounts = new HashMap<>();
+    Array ids = connection.createArrayOf("bigint", userIds.toArray());
+    try (PreparedStatement read =
+        connection.prepareStatement(PostgreSQLQueries.Ledger.GET_BALANCES)) {
+      read.setArray(1, ids);
+      try (ResultSet rs = read.executeQuery()) {
+        while (rs.next()) {
+          accounts.put(
+              rs.getLong("user_id"),
+              new Account(Money.ofMinorUnits(rs.getLong("balance")), rs.getLong("seq")));
+        }
+      }
+    } finally {
+      ids.free();
+    }
+    return accounts;
+  }
+
+  private static Long record(
+      Connection connection,
+      Long fromUserId,
+      Long toUserId,
+      Money amount,
+      String type,
+      Map<Long, Account> accounts,
+      Map<Long, Money> deltas,
+      Map<Long, Account> appended)
+      throws SQLException {
+    try (PreparedStatement record = connection.prepareStatement(PostgreSQLQueries.Ledger.RECORD)) {
+      record.setLong(1, fromUserId);
+      record.setLong(2, toUserId);
+      record.setLong(3, amount.getMinorUnits());
+      record.setString(4, type);
+      bindEntries(connection, record, 5, accounts, deltas, appended);
+      try (ResultSet rs = record.executeQuery()) {
+        if (!rs.next()) {
+          throw new DatabaseException("Failed to create transaction record");
+        }
+        return rs.getLong(1);
+      }
+    }
+  }
+
+  // Binds one entry per delta, numbered after the account's current entry
+  private static void bindEntries(
+      Connection connection,
+      PreparedStatement statement,
+      int parameterIndex,
+      Map<Long, Account> accounts,
+      Map<Long, Money> deltas,
+      Map<Long, Account> appended)
+      throws SQLException {
+    Long[] userIds = new Long[deltas.size()];
+    Long[] seqs = new Long[deltas.size()];
+    Long[] amounts = new Long[deltas.size()];
+    int i = 0;
+    for (Map.Entry<Long, Money> delta : deltas.entrySet()) {
+      Account account = accounts.get(delta.getKey());
+      Account next = new Account(account.balance.plus(delta.getValue()), account.seq + 1);
+      userIds[i] = delta.getKey();
+      seqs[i] = next.seq;
+      amounts[i] = delta.getValue().getMinorUnits();
+      appended.put(delta.getKey(), next);
+      i++;
+    }
+    statement.setArray(parameterIndex, connection.createArrayOf("bigint", userIds));
+    statement.setArray(parameterIndex + 1, connection.createArrayOf("bigint", seqs));
+    statement.setArray(parameterIndex + 2, connection.createArrayOf("bigint", amounts));
+  }
+
+  // A state never replaces a later one of the same account
+  private void project(Long userId, Account account) {
+    if (projection.size() >= MAX_PROJECTED_ACCOUNTS) {
+      projection.clear();
+    }
+    projection.merge(userId, account, (current, next) -> next.seq >= current.seq ? next : current);
+  }
+}
@@ -0,0 +1,113 @@
+package com.atm.database;
+
+import com.atm.exception.DatabaseException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Folds ledger entries into {@code balance_snapshots} in the background, so loading an account
+ * under the ledger balance store only sums the entries since its last run. Each run walks the
+ * entries appended since the previous one in id ranges of {@code batchSize}, one short transaction
+ * per range, and folds the whole tail of every account it finds there. Snapshotters in several ATM
+ * processes may run at the same time, a snapshot is only moved from the state its tail was summed
+ * against.
+ *
+ * <p>Entry ids are taken before their transaction commits, so an entry can become visible after its
+ * range was walked. That only defers it, its account is folded with its next entry.
+ */
+@Slf4j
+public class LedgerSnapshotter implements AutoCloseable {
+  private final PostgresTransaction transaction;
+  private final int batchSize;
+  private long watermark = -1;
+  private ScheduledExecutorService scheduler;
+
+  public LedgerSnapshotter(PostgresTransaction transaction, int batchSize) {
+    this.transaction = transaction;
+    this.batchSize = batchSize;
+  }
+
+  /** Snapshots every {@code intervalSeconds} on a daemon thread, starting after one interval. */
+  public void start(long intervalSeconds) {
+    scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "ledger-snapshotter");
+              thread.setDaemon(true);
+              return thread;
+            });
+    scheduler.scheduleWithFixedDelay(
+        this::snapshotSafely, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+  }
+
+  /** Folds the entries appended since the last run, returns the number of snapshots moved. */
+  public synchronized long snapshot() {
+    long started = System.nanoTime();
+    if (watermark < 0) {
+      watermark = queryLong(PostgreSQLQueries.Ledger.SNAPSHOT_WATERMARK);
+    }
+    long upTo = queryLong(PostgreSQLQueries.Ledger.MAX_ENTRY_ID);
+    long moved = 0;
+    while (watermark < upTo) {
+      long to = Math.min(upTo, watermark + batchSize);
+      moved += snapshotBatch(watermark, to);
+      watermark = to;
+    }
+
+    if (moved > 0) {
+      log.info(
+          "Moved {} balance snapshots up to ledger entry {} in {} ms",
+          moved,
+          upTo,
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+    return moved;
+  }
+
+  private int snapshotBatch(long after, long upTo) {
+    return transaction.executeInTransaction(
+        connection -> {
+          try (PreparedStatement pstmt =
+              connection.prepareStatement(PostgreSQLQueries.Ledger.SNAPSHOT_BATCH)) {
+            pstmt.setLong(1, after);
+            pstmt.setLong(2, upTo);
+            return pstmt.executeUpdate();
+          } catch (SQLException e) {
+            throw new DatabaseException("Failed to snapshot balances", e);
+          }
+        });
+  }
+
+  private long queryLong(String query) {
+    return transaction.executeReadOnlyOnPrimary(
+        connection -> {
+          try (PreparedStatement pstmt = connection.prepareStatement(query);
+              ResultSet rs = pstmt.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+          } catch (SQLException e) {
+            throw new DatabaseException("Failed to read the ledger position", e);
+          }
+        });
+  }
+
+  private void snapshotSafely() {
+    try {
+      snapshot();
+    } catch (Exception e) {
+      log.error("Balance snapshot failed", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+}
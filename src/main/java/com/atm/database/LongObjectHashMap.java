@@ -0,0 +1,134 @@
+package com.atm.database;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map keyed by primitive {@code long}, avoids boxing the key on every lookup.
+ * Uses linear probing with backward-shift deletion. Not thread-safe, callers guard it externally.
+ */
+class LongObjectHashMap<V> {
+  private static final float LOAD_FACTOR = 0.5f;
+
+  private long[] keys;
+  private Object[] values;
+  private int size;
+  private int mask;
+
+  LongObjectHashMap() {
+    this(16);
+  }
+
+  LongObjectHashMap(int expectedSize) {
+    int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+    this.keys = new long[capacity];
+    this.values = new Object[capacity];
+    this.mask = capacity - 1;
+  }
+
+  @SuppressWarnings("unchecked")
+  V get(long key) {
+    int index = indexOf(key);
+    return index < 0 ? null : (V) values[index];
+  }
+
+  boolean containsKey(long key) {
+    return indexOf(key) >= 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  V put(long key, V value) {
+    if (value == null) {
+      throw new IllegalArgumentException("Null values are not supported");
+    }
+    int slot = slot(key);
+    while (values[slot] != null) {
+      if (keys[slot] == key) {
+        V previous = (V) values[slot];
+        values[slot] = value;
+        return previous;
+      }
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+    values[slot] = value;
+    if (++size > keys.length * LOAD_FACTOR) {
+      resize();
+    }
+    return null;
+  }
+
+  @SuppressWarnings("unchecked")
+  V remove(long key) {
+    int index = indexOf(key);
+    if (index < 0) {
+      return null;
+    }
+    V previous = (V) values[index];
+    values[index] = null;
+    size--;
+
+    // Shift back following entries of the same probe chain so lookups never hit a false gap
+    int gap = index;
+    int next = (gap + 1) & mask;
+    while (values[next] != null) {
+      int home = slot(keys[next]);
+      if (((next - home) & mask) >= ((next - gap) & mask)) {
+        keys[gap] = keys[next];
+        values[gap] = values[next];
+        values[next] = null;
+        gap = next;
+      }
+      next = (next + 1) & mask;
+    }
+    return previous;
+  }
+
+  int size() {
+    return size;
+  }
+
+  void clear() {
+    Arrays.fill(values, null);
+    size = 0;
+  }
+
+  private int indexOf(long key) {
+    int slot = slot(key);
+    while (values[slot] != null) {
+      if (keys[slot] == key) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private int slot(long key) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+
+  private void resize() {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+    keys = new long[oldKeys.length << 1];
+    values = new Object[oldValues.length << 1];
+    mask = keys.length - 1;
+    size = 0;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldValues[i] != null) {
+        reinsert(oldKeys[i], oldValues[i]);
+      }
+    }
+  }
+
+  private void reinsert(long key, Object value) {
+    int slot = slot(key);
+    while (values[slot] != null) {
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+    values[slot] = value;
+    size++;
+  }
+}
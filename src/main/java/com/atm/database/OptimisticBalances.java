@@ -0,0 +1,87 @@
+package com.atm.database;
+
+import com.atm.exception.DatabaseException;
+import com.atm.model.Money;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Lock-free balance reads and version checked writes for the optimistic concurrency mode. A lost
+ * compare-and-set surfaces as a serialization failure, so {@link PostgresTransaction} replays the
+ * whole unit of work against fresh balances.
+ */
+final class OptimisticBalances {
+  private OptimisticBalances() {}
+
+  @RequiredArgsConstructor
+  static final class Snapshot {
+    final Money balance;
+    final long version;
+  }
+
+  /** Reads the balances of the given users without locking. Missing users are absent. */
+  static Map<Long, Snapshot> read(Connection connection, Collection<Long> userIds)
+      throws SQLException {
+    Map<Long, Snapshot> snapshots = new HashMap<>();
+    Array ids = connection.createArrayOf("bigint", userIds.toArray());
+    try (PreparedStatement read =
+        connection.prepareStatement(PostgreSQLQueries.Balances.GET_VERSIONED)) {
+      read.setArray(1, ids);
+      try (ResultSet rs = read.executeQuery()) {
+        while (rs.next()) {
+          snapshots.put(
+              rs.getLong("user_id"),
+              new Snapshot(Money.ofMinorUnits(rs.getLong("balance")), rs.getLong("version")));
+        }
+      }
+    } finally {
+      ids.free();
+    }
+    return snapshots;
+  }
+
+  /**
+   * Applies the deltas to the snapshots and writes the results in one statement, provided none of
+   * the rows changed since they were read.
+   */
+  static void compareAndSet(
+      Connection connection, Map<Long, Snapshot> snapshots, Map<Long, Money> deltas)
+      throws SQLException {
+    Long[] userIds = new Long[deltas.size()];
+    Long[] balances = new Long[deltas.size()];
+    Long[] versions = new Long[deltas.size()];
+    int i = 0;
+    for (Map.Entry<Long, Money> delta : deltas.entrySet()) {
+      Snapshot snapshot = snapshots.get(delta.getKey());
+      userIds[i] = delta.getKey();
+      balances[i] = snapshot.balance.plus(delta.getValue()).getMinorUnits();
+      versions[i] = snapshot.version;
+      i++;
+    }
+
+    try (PreparedStatement update =
+        connection.prepareStatement(PostgreSQLQueries.Balances.COMPARE_AND_SET)) {
+      update.setArray(1, connection.createArrayOf("bigint", userIds));
+      update.setArray(2, connection.createArrayOf("bigint", balances));
+      update.setArray(3, connection.createArrayOf("bigint", versions));
+      if (update.executeUpdate() != deltas.size()) {
+        throw conflict();
+      }
+    }
+  }
+
+  /** Raised when a version check fails, retried by {@link PostgresTransaction}. */
+  static DatabaseException conflict() {
+    return new DatabaseException(
+        "Balance changed concurrently",
+        new SQLException(
+            "Balance version changed concurrently", PostgresTransaction.SERIALIZATION_FAILURE));
+  }
+}
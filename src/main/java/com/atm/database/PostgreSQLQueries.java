@@ -4,6 +4,18 @@ package com.atm.database;
 public final class PostgreSQLQueries {
   private PostgreSQLQueries() {}
 
+  /*
+   * Amounts cross the wire as bigint counts of Money minor units and are converted from and to
+   * NUMERIC(19,4) server side, so the driver binds and reads them without BigDecimal
+   */
+  private static final String AMOUNT = "(?::bigint * 0.0001)";
+
+  private static final String AMOUNTS = "?::bigint[]";
+
+  private static String minorUnits(String amount) {
+    return "((" + amount + ") * 10000)::bigint";
+  }
+
   public static final class Tables {
     /*
      * Users table
@@ -24,41 +36,131 @@ public final class PostgreSQLQueries {
         "CREATE TABLE IF NOT EXISTS balances ("
             + "user_id BIGINT PRIMARY KEY,"
             + "balance NUMERIC(19,4) NOT NULL DEFAULT 0.0000,"
+            + "version BIGINT NOT NULL DEFAULT 0,"
             + "last_updated TIMESTAMPTZ DEFAULT CURRENT_TIMESTAMP,"
             + "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE"
             + ")";
 
+    // Bumped by every balance write, compared by the optimistic concurrency mode
+    static final String ADD_BALANCES_VERSION =
+        "ALTER TABLE balances ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0";
+
+    /*
+     * Number of balance_slots rows of a hot account, 0 for every other account. The balances row
+     * itself acts as slot 0
+     */
+    static final String ADD_BALANCES_SLOTS =
+        "ALTER TABLE balances ADD COLUMN IF NOT EXISTS slots INT NOT NULL DEFAULT 0";
+
+    /*
+     * Extra balance rows of hot accounts. Credits land on a random slot so they do not queue on one
+     * row lock, debits are taken from the balances row, see Functions.CREATE_DEBIT_FUNCTION
+     */
+    static final String CREATE_BALANCE_SLOTS_TABLE =
+        "CREATE TABLE IF NOT EXISTS balance_slots ("
+            + "user_id BIGINT NOT NULL,"
+            + "slot INT NOT NULL,"
+            + "balance NUMERIC(19,4) NOT NULL DEFAULT 0.0000,"
+            + "PRIMARY KEY (user_id, slot),"
+            + "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE"
+            + ")";
+
     /*
-     * Transactions table
+     * Transactions table, range partitioned by month on created_at.
+     * Partitions are managed by TransactionPartitionMaintainer
      */
     static final String CREATE_TRANSACTIONS_TABLE =
         "CREATE TABLE IF NOT EXISTS transactions ("
-            + "id BIGSERIAL PRIMARY KEY,"
+            + "id BIGSERIAL,"
             + "from_user_id BIGINT,"
             + "to_user_id BIGINT,"
             + "amount NUMERIC(19,4) NOT NULL,"
             + "type VARCHAR(50) NOT NULL,"
-            + "created_at TIMESTAMPTZ DEFAULT CURRENT_TIMESTAMP,"
+            + "created_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,"
+            + "PRIMARY KEY (id, created_at),"
             + "FOREIGN KEY (from_user_id) REFERENCES users(id),"
             + "FOREIGN KEY (to_user_id) REFERENCES users(id)"
-            + ")";
+            + ") PARTITION BY RANGE (created_at)";
 
     /*
-     * Sessions table with automatic expiration
+     * Sessions, one row per user that is reused across logins: a login overwrites it with a new
+     * random session id, a logout expires it in place. This keeps login and logout storms from
+     * leaving a dead tuple and three index entries behind per session
      */
     static final String CREATE_SESSIONS_TABLE =
-        "CREATE TABLE IF NOT EXISTS sessions ("
-            + "id BIGSERIAL PRIMARY KEY,"
+        "CREATE TABLE IF NOT EXISTS user_sessions ("
+            + "user_id BIGINT PRIMARY KEY,"
+            + "id BIGINT NOT NULL UNIQUE,"
+            + "created_at TIMESTAMPTZ NOT NULL,"
+            + "last_activity_at TIMESTAMPTZ NOT NULL,"
+            + "expires_at TIMESTAMPTZ NOT NULL,"
+            + "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE"
+            + ")";
+
+    /*
+     * Moves the sessions of the former one-row-per-login layout, the newest live one per user, and
+     * drops the old table. Does nothing once the old table is gone
+     */
+    static final String MIGRATE_SESSIONS_TABLE =
+        "DO $$ BEGIN "
+            + "  IF to_regclass('sessions') IS NOT NULL THEN "
+            + "    INSERT INTO user_sessions (user_id, id, created_at, last_activity_at, expires_at) "
+            + "    SELECT DISTINCT ON (user_id) user_id, id, created_at, last_activity_at, expires_at "
+            + "    FROM sessions WHERE expires_at > CURRENT_TIMESTAMP "
+            + "    ORDER BY user_id, created_at DESC "
+            + "    ON CONFLICT (user_id) DO NOTHING; "
+            + "    DROP TABLE sessions; "
+            + "  END IF; "
+            + "END $$";
+
+    // Unlogged sessions skip the WAL but are emptied after a crash, logging everyone out
+    static final String SET_SESSIONS_UNLOGGED = "ALTER TABLE user_sessions SET UNLOGGED";
+
+    static final String SET_SESSIONS_LOGGED = "ALTER TABLE user_sessions SET LOGGED";
+
+    /*
+     * Ledger balance store: one append-only entry per account and money movement, numbered by a
+     * per-account sequence. The primary key rejects a second entry with the same number, which is
+     * how concurrent appends computed from the same balance are detected
+     */
+    static final String CREATE_LEDGER_ENTRIES_TABLE =
+        "CREATE TABLE IF NOT EXISTS ledger_entries ("
             + "user_id BIGINT NOT NULL,"
-            + "created_at TIMESTAMPTZ DEFAULT CURRENT_TIMESTAMP,"
-            + "last_activity_at TIMESTAMPTZ DEFAULT CURRENT_TIMESTAMP,"
-            + "expires_at TIMESTAMPTZ DEFAULT (CURRENT_TIMESTAMP + INTERVAL '1 minutes'),"
+            + "seq BIGINT NOT NULL,"
+            + "id BIGSERIAL NOT NULL,"
+            + "delta NUMERIC(19,4) NOT NULL,"
+            + "transaction_id BIGINT,"
+            + "created_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,"
+            + "PRIMARY KEY (user_id, seq),"
+            + "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE"
+            + ")";
+
+    /*
+     * Balance of each account up to and including its entry seq. entry_id is the highest entry id
+     * folded in, where the snapshotter resumes after a restart
+     */
+    static final String CREATE_BALANCE_SNAPSHOTS_TABLE =
+        "CREATE TABLE IF NOT EXISTS balance_snapshots ("
+            + "user_id BIGINT PRIMARY KEY,"
+            + "balance NUMERIC(19,4) NOT NULL,"
+            + "seq BIGINT NOT NULL,"
+            + "entry_id BIGINT NOT NULL DEFAULT 0,"
+            + "taken_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP,"
             + "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE"
             + ")";
 
     static String[] getAllCreateTableStatements() {
       return new String[] {
-        CREATE_USERS_TABLE, CREATE_BALANCES_TABLE, CREATE_TRANSACTIONS_TABLE, CREATE_SESSIONS_TABLE
+        CREATE_USERS_TABLE,
+        CREATE_BALANCES_TABLE,
+        ADD_BALANCES_VERSION,
+        ADD_BALANCES_SLOTS,
+        CREATE_BALANCE_SLOTS_TABLE,
+        CREATE_TRANSACTIONS_TABLE,
+        CREATE_SESSIONS_TABLE,
+        MIGRATE_SESSIONS_TABLE,
+        CREATE_LEDGER_ENTRIES_TABLE,
+        CREATE_BALANCE_SNAPSHOTS_TABLE
       };
     }
   }
@@ -67,25 +169,395 @@ public final class PostgreSQLQueries {
     static final String CREATE_USERNAME_IDX =
         "CREATE INDEX IF NOT EXISTS idx_users_username ON users(username)";
 
-    static final String CREATE_SESSION_USER_IDX =
-        "CREATE INDEX IF NOT EXISTS idx_sessions_user_id ON sessions(user_id)";
-
     static final String CREATE_SESSION_EXPIRY_IDX =
-        "CREATE INDEX IF NOT EXISTS idx_sessions_expires_at ON sessions(expires_at)";
+        "CREATE INDEX IF NOT EXISTS idx_user_sessions_expires_at ON user_sessions(expires_at)";
 
-    static final String CREATE_TRANSACTION_USERS_IDX =
-        "CREATE INDEX IF NOT EXISTS idx_transactions_users ON transactions(from_user_id, to_user_id)";
+    /*
+     * One index per side of a ledger row so history can walk both the outgoing and the incoming
+     * entries of a user newest first. Deposits and withdrawals are already reached through the
+     * outgoing side, so the incoming index only holds transfers. They supersede
+     * idx_transactions_users, whose leading from_user_id column could not serve incoming lookups
+     */
+    static final String CREATE_TRANSACTION_OUTGOING_IDX =
+        "CREATE INDEX IF NOT EXISTS idx_transactions_outgoing ON transactions(from_user_id, id DESC)";
+
+    static final String CREATE_TRANSACTION_INCOMING_IDX =
+        "CREATE INDEX IF NOT EXISTS idx_transactions_incoming ON transactions(to_user_id, id DESC) "
+            + "WHERE from_user_id <> to_user_id";
+
+    static final String DROP_TRANSACTION_USERS_IDX = "DROP INDEX IF EXISTS idx_transactions_users";
 
-    static final String CREATE_TRANSACTION_DATE_IDX =
-        "CREATE INDEX IF NOT EXISTS idx_transactions_created_at ON transactions(created_at DESC)";
+    // Lets the slot consolidator find hot accounts without scanning every balance
+    static final String CREATE_HOT_BALANCES_IDX =
+        "CREATE INDEX IF NOT EXISTS idx_balances_hot ON balances(user_id) WHERE slots > 0";
+
+    // Finds the accounts with entries appended since the snapshotter's last run
+    static final String CREATE_LEDGER_ENTRY_ID_IDX =
+        "CREATE INDEX IF NOT EXISTS idx_ledger_entries_id ON ledger_entries(id)";
 
     static String[] getAllCreateIndexStatements() {
       return new String[] {
         CREATE_USERNAME_IDX,
-        CREATE_SESSION_USER_IDX,
         CREATE_SESSION_EXPIRY_IDX,
-        CREATE_TRANSACTION_USERS_IDX,
-        CREATE_TRANSACTION_DATE_IDX
+        CREATE_TRANSACTION_OUTGOING_IDX,
+        CREATE_TRANSACTION_INCOMING_IDX,
+        DROP_TRANSACTION_USERS_IDX,
+        CREATE_LEDGER_ENTRY_ID_IDX,
+        CREATE_HOT_BALANCES_IDX
+      };
+    }
+  }
+
+  public static final class Partitions {
+    static final String IS_PARTITIONED =
+        "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table "
+            + "WHERE partrelid = 'transactions'::regclass)";
+
+    static final String LIST =
+        "SELECT c.relname FROM pg_inherits i "
+            + "JOIN pg_class c ON c.oid = i.inhrelid "
+            + "WHERE i.inhparent = 'transactions'::regclass";
+
+    // Catches rows outside the pre-created months so inserts never fail
+    static final String CREATE_DEFAULT =
+        "CREATE TABLE IF NOT EXISTS transactions_default PARTITION OF transactions DEFAULT";
+
+    // Formatted with partition name, inclusive lower bound and exclusive upper bound
+    static final String CREATE_MONTH =
+        "CREATE TABLE IF NOT EXISTS %s PARTITION OF transactions FOR VALUES FROM ('%s') TO ('%s')";
+
+    /*
+     * Recent partitions get a b-tree on created_at, older ones are switched to a much smaller
+     * BRIN index since rows are appended in created_at order. Formatted with the partition name
+     */
+    static final String CREATE_BTREE_INDEX =
+        "CREATE INDEX IF NOT EXISTS %1$s_created_at_idx ON %1$s (created_at DESC)";
+
+    static final String CREATE_BRIN_INDEX =
+        "CREATE INDEX IF NOT EXISTS %1$s_created_at_brin ON %1$s USING BRIN (created_at)";
+
+    static final String DROP_BTREE_INDEX = "DROP INDEX IF EXISTS %s_created_at_idx";
+
+    // Detached partitions stay in place as standalone archive tables
+    static final String DETACH = "ALTER TABLE transactions DETACH PARTITION %s";
+
+    /*
+     * DETACH takes ACCESS EXCLUSIVE on transactions and ATTACH on transactions_default, and inserts
+     * queue behind them while they wait. Giving up quickly when the lock is busy keeps that stall
+     * short, the step is retried on the next run. DETACH ... CONCURRENTLY would avoid the lock but
+     * needs PostgreSQL 14
+     */
+    static final String LOCK_TIMEOUT = "SET LOCAL lock_timeout = '200ms'";
+
+    /*
+     * Whether the default partition caught rows of a month that has no partition yet, e.g. after
+     * maintenance was down for longer than it pre-creates. Creating that month's partition would
+     * then fail on the default partition's constraint. Formatted with the month's bounds
+     */
+    static final String DEFAULT_HOLDS_MONTH =
+        "SELECT EXISTS (SELECT 1 FROM transactions_default "
+            + "WHERE created_at >= '%s' AND created_at < '%s')";
+
+    /*
+     * Such a month is moved out of the default partition into a standalone table that is then
+     * attached, all in one transaction. Formatted with the partition name and the month's bounds
+     */
+    static final String CREATE_MONTH_TABLE =
+        "CREATE TABLE %s (LIKE transactions INCLUDING DEFAULTS INCLUDING CONSTRAINTS)";
+
+    static final String MOVE_MONTH_FROM_DEFAULT =
+        "WITH moved AS ("
+            + "  DELETE FROM transactions_default "
+            + "  WHERE created_at >= '%2$s' AND created_at < '%3$s' "
+            + "  RETURNING *"
+            + ") "
+            + "INSERT INTO %1$s SELECT * FROM moved";
+
+    static final String ATTACH_MONTH =
+        "ALTER TABLE transactions ATTACH PARTITION %s FOR VALUES FROM ('%s') TO ('%s')";
+  }
+
+  public static final class Replication {
+    /*
+     * Replay lag of a hot standby in milliseconds. A standby that has replayed everything it
+     * received counts as current even when the primary has been idle, a server that is not in
+     * recovery (e.g. a second local instance used for testing) always reports 0
+     */
+    static final String LAG_MILLIS =
+        "SELECT CASE "
+            + "WHEN NOT pg_is_in_recovery() "
+            + "  OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE COALESCE("
+            + "  EXTRACT(EPOCH FROM (now() - pg_last_xact_replay_timestamp())) * 1000, 0) "
+            + "END";
+  }
+
+  public static final class Notifications {
+    static final String BALANCE_CHANNEL = "atm_balances";
+
+    static final String LISTEN_BALANCES = "LISTEN " + BALANCE_CHANNEL;
+
+    // Round trip that reveals a dropped listener connection
+    static final String PING = "SELECT 1";
+
+    /*
+     * Publishes every committed balance change as user_id:version:balance. All balance writes bump
+     * the version, so listeners can order the changes they see. Hot accounts are spread over slot
+     * rows without a common version, their changes are published as the bare user_id and only
+     * invalidate. NOTIFY serializes committing transactions on a global lock, so the triggers only
+     * exist while balance caching is enabled
+     */
+    static final String CREATE_BALANCE_NOTIFY_FUNCTION =
+        "CREATE OR REPLACE FUNCTION atm_notify_balance() RETURNS trigger LANGUAGE plpgsql AS $$ "
+            + "BEGIN "
+            + "  IF TG_TABLE_NAME = 'balances' THEN "
+            + "    IF NEW.slots = 0 THEN "
+            + "      PERFORM pg_notify('"
+            + BALANCE_CHANNEL
+            + "', NEW.user_id || ':' || NEW.version || ':' || NEW.balance); "
+            + "      RETURN NULL; "
+            + "    END IF; "
+            + "  END IF; "
+            + "  PERFORM pg_notify('"
+            + BALANCE_CHANNEL
+            + "', NEW.user_id::text); "
+            + "  RETURN NULL; "
+            + "END $$";
+
+    static final String DROP_BALANCE_NOTIFY_TRIGGER =
+        "DROP TRIGGER IF EXISTS balances_notify ON balances";
+
+    static final String CREATE_BALANCE_NOTIFY_TRIGGER =
+        "CREATE TRIGGER balances_notify AFTER UPDATE OF balance ON balances "
+            + "FOR EACH ROW WHEN (OLD.balance IS DISTINCT FROM NEW.balance) "
+            + "EXECUTE FUNCTION atm_notify_balance()";
+
+    static final String DROP_BALANCE_SLOTS_NOTIFY_TRIGGER =
+        "DROP TRIGGER IF EXISTS balance_slots_notify ON balance_slots";
+
+    static final String CREATE_BALANCE_SLOTS_NOTIFY_TRIGGER =
+        "CREATE TRIGGER balance_slots_notify AFTER UPDATE OF balance ON balance_slots "
+            + "FOR EACH ROW WHEN (OLD.balance IS DISTINCT FROM NEW.balance) "
+            + "EXECUTE FUNCTION atm_notify_balance()";
+  }
+
+  public static final class Functions {
+    // SQLSTATEs raised by the functions below, mapped back to exceptions in PostgresDatabase
+    static final String INSUFFICIENT_FUNDS_STATE = "AT001";
+    static final String BALANCE_NOT_FOUND_STATE = "AT002";
+
+    /*
+     * Credits an account, returns false when it has no balance. A hot account is credited on a
+     * random one of its slots, the balances row included, so concurrent credits rarely queue on
+     * the same row lock. A slot removed in the meantime falls back to the balances row
+     */
+    static final String CREATE_CREDIT_FUNCTION =
+        "CREATE OR REPLACE FUNCTION atm_credit(p_user BIGINT, p_amount NUMERIC) "
+            + "RETURNS BOOLEAN LANGUAGE plpgsql AS $$ "
+            + "DECLARE "
+            + "  v_slots INT; "
+            + "  v_slot INT; "
+            + "BEGIN "
+            + "  SELECT slots INTO v_slots FROM balances WHERE user_id = p_user; "
+            + "  IF NOT FOUND THEN "
+            + "    RETURN FALSE; "
+            + "  END IF; "
+            + "  v_slot := floor(random() * (v_slots + 1))::INT; "
+            + "  IF v_slot > 0 THEN "
+            + "    UPDATE balance_slots SET balance = balance + p_amount "
+            + "    WHERE user_id = p_user AND slot = v_slot; "
+            + "    IF FOUND THEN "
+            + "      RETURN TRUE; "
+            + "    END IF; "
+            + "  END IF; "
+            + "  UPDATE balances SET balance = balance + p_amount, version = version + 1, "
+            + "    last_updated = CURRENT_TIMESTAMP "
+            + "  WHERE user_id = p_user; "
+            + "  RETURN TRUE; "
+            + "END $$";
+
+    /*
+     * Debits an account's balances row, returns its new balance or null when it has no balance.
+     * The common case is a single conditional update. Only when the row alone cannot cover the
+     * amount are the slots of a hot account locked, in slot order after the balances row, and
+     * drawn into it, so the funds check always covers the whole balance
+     */
+    static final String CREATE_DEBIT_FUNCTION =
+        "CREATE OR REPLACE FUNCTION atm_debit(p_user BIGINT, p_amount NUMERIC) "
+            + "RETURNS NUMERIC LANGUAGE plpgsql AS $$ "
+            + "DECLARE "
+            + "  v_balance NUMERIC; "
+            + "  v_slots INT; "
+            + "BEGIN "
+            + "  UPDATE balances SET balance = balance - p_amount, version = version + 1, "
+            + "    last_updated = CURRENT_TIMESTAMP "
+            + "  WHERE user_id = p_user AND balance >= p_amount "
+            + "  RETURNING balance INTO v_balance; "
+            + "  IF FOUND THEN "
+            + "    RETURN v_balance; "
+            + "  END IF; "
+            + "  SELECT balance, slots INTO v_balance, v_slots FROM balances "
+            + "  WHERE user_id = p_user FOR UPDATE; "
+            + "  IF NOT FOUND THEN "
+            + "    RETURN NULL; "
+            + "  END IF; "
+            + "  IF v_balance < p_amount AND v_slots > 0 THEN "
+            + "    PERFORM 1 FROM balance_slots WHERE user_id = p_user ORDER BY slot FOR UPDATE; "
+            + "    v_balance := v_balance + (SELECT COALESCE(SUM(balance), 0) FROM balance_slots "
+            + "      WHERE user_id = p_user); "
+            + "    UPDATE balance_slots SET balance = 0 WHERE user_id = p_user AND balance <> 0; "
+            + "  END IF; "
+            + "  IF v_balance < p_amount THEN "
+            + "    RAISE EXCEPTION 'Insufficient funds. Available: %, Required: %', "
+            + "      v_balance, p_amount USING ERRCODE = '"
+            + INSUFFICIENT_FUNDS_STATE
+            + "'; "
+            + "  END IF; "
+            + "  UPDATE balances SET balance = v_balance - p_amount, version = version + 1, "
+            + "    last_updated = CURRENT_TIMESTAMP "
+            + "  WHERE user_id = p_user; "
+            + "  RETURN v_balance - p_amount; "
+            + "END $$";
+
+    /*
+     * Deposit or withdrawal with its ledger entry in a single call, returns the account's whole
+     * balance afterwards and the transaction id
+     */
+    static final String CREATE_APPLY_FUNCTION =
+        "CREATE OR REPLACE FUNCTION atm_apply("
+            + "p_user BIGINT, p_delta NUMERIC, p_amount NUMERIC, p_type VARCHAR) "
+            + "RETURNS TABLE (o_balance NUMERIC, o_transaction_id BIGINT) "
+            + "LANGUAGE plpgsql AS $$ "
+            + "BEGIN "
+            + "  IF (p_delta >= 0 AND NOT atm_credit(p_user, p_delta)) "
+            + "    OR (p_delta < 0 AND atm_debit(p_user, -p_delta) IS NULL) THEN "
+            + "    RAISE EXCEPTION 'No balance record found for user: %', p_user "
+            + "      USING ERRCODE = '"
+            + BALANCE_NOT_FOUND_STATE
+            + "'; "
+            + "  END IF; "
+            + "  INSERT INTO transactions (from_user_id, to_user_id, amount, type) "
+            + "  VALUES (p_user, p_user, p_amount, p_type) "
+            + "  RETURNING id INTO o_transaction_id; "
+            + "  SELECT b.balance + COALESCE(SUM(s.balance), 0) INTO o_balance "
+            + "  FROM balances b LEFT JOIN balance_slots s ON s.user_id = b.user_id "
+            + "  WHERE b.user_id = p_user GROUP BY b.balance; "
+            + "  RETURN NEXT; "
+            + "END $$";
+
+    static final String APPLY =
+        "SELECT "
+            + minorUnits("o_balance")
+            + " AS balance, o_transaction_id AS transaction_id "
+            + "FROM atm_apply(?, "
+            + AMOUNT
+            + ", "
+            + AMOUNT
+            + ", ?)";
+
+    /*
+     * Transfer executed server side: debits the source and credits the target in user id order to
+     * prevent deadlocks, the funds check happening under the source's lock, and records the ledger
+     * entry in a single call
+     */
+    static final String CREATE_TRANSFER_FUNCTION =
+        "CREATE OR REPLACE FUNCTION atm_transfer(p_from BIGINT, p_to BIGINT, p_amount NUMERIC) "
+            + "RETURNS BIGINT LANGUAGE plpgsql AS $$ "
+            + "DECLARE "
+            + "  v_transaction_id BIGINT; "
+            + "BEGIN "
+            + "  IF p_from < p_to AND atm_debit(p_from, p_amount) IS NULL THEN "
+            + "    RAISE EXCEPTION 'No balance record found for source user: %', p_from "
+            + "      USING ERRCODE = '"
+            + BALANCE_NOT_FOUND_STATE
+            + "'; "
+            + "  END IF; "
+            + "  IF NOT atm_credit(p_to, p_amount) THEN "
+            + "    RAISE EXCEPTION 'No balance record found for target user: %', p_to "
+            + "      USING ERRCODE = '"
+            + BALANCE_NOT_FOUND_STATE
+            + "'; "
+            + "  END IF; "
+            + "  IF p_from >= p_to AND atm_debit(p_from, p_amount) IS NULL THEN "
+            + "    RAISE EXCEPTION 'No balance record found for source user: %', p_from "
+            + "      USING ERRCODE = '"
+            + BALANCE_NOT_FOUND_STATE
+            + "'; "
+            + "  END IF; "
+            + "  INSERT INTO transactions (from_user_id, to_user_id, amount, type) "
+            + "  VALUES (p_from, p_to, p_amount, 'TRANSFER') "
+            + "  RETURNING id INTO v_transaction_id; "
+            + "  RETURN v_transaction_id; "
+            + "END $$";
+
+    static final String TRANSFER = "SELECT atm_transfer(?, ?, " + AMOUNT + ")";
+
+    /*
+     * Draws the slots of a hot account into its balances row, which the caller already locked,
+     * and returns the row's new balance. Used before funds checks that only read the balances row
+     */
+    static final String CREATE_GATHER_FUNCTION =
+        "CREATE OR REPLACE FUNCTION atm_gather_slots(p_user BIGINT) "
+            + "RETURNS NUMERIC LANGUAGE plpgsql AS $$ "
+            + "DECLARE "
+            + "  v_gathered NUMERIC; "
+            + "  v_balance NUMERIC; "
+            + "BEGIN "
+            + "  PERFORM 1 FROM balance_slots WHERE user_id = p_user ORDER BY slot FOR UPDATE; "
+            + "  SELECT COALESCE(SUM(balance), 0) INTO v_gathered FROM balance_slots "
+            + "  WHERE user_id = p_user; "
+            + "  IF v_gathered <> 0 THEN "
+            + "    UPDATE balance_slots SET balance = 0 WHERE user_id = p_user AND balance <> 0; "
+            + "    UPDATE balances SET balance = balance + v_gathered, version = version + 1, "
+            + "      last_updated = CURRENT_TIMESTAMP "
+            + "    WHERE user_id = p_user; "
+            + "  END IF; "
+            + "  SELECT balance INTO v_balance FROM balances WHERE user_id = p_user; "
+            + "  RETURN v_balance; "
+            + "END $$";
+
+    static final String GATHER_SLOTS = "SELECT " + minorUnits("atm_gather_slots(?)");
+
+    /*
+     * Makes an account hot with the given number of extra slots, 0 makes it a plain account again.
+     * Funds of removed slots move to the balances row
+     */
+    static final String CREATE_SET_SLOTS_FUNCTION =
+        "CREATE OR REPLACE FUNCTION atm_set_balance_slots(p_user BIGINT, p_slots INT) "
+            + "RETURNS VOID LANGUAGE plpgsql AS $$ "
+            + "DECLARE "
+            + "  v_removed NUMERIC; "
+            + "BEGIN "
+            + "  UPDATE balances SET slots = p_slots WHERE user_id = p_user; "
+            + "  IF NOT FOUND THEN "
+            + "    RAISE EXCEPTION 'No balance record found for user: %', p_user "
+            + "      USING ERRCODE = '"
+            + BALANCE_NOT_FOUND_STATE
+            + "'; "
+            + "  END IF; "
+            + "  INSERT INTO balance_slots (user_id, slot) "
+            + "  SELECT p_user, generate_series(1, p_slots) ON CONFLICT DO NOTHING; "
+            + "  WITH removed AS ("
+            + "    DELETE FROM balance_slots WHERE user_id = p_user AND slot > p_slots "
+            + "    RETURNING balance"
+            + "  ) SELECT COALESCE(SUM(balance), 0) INTO v_removed FROM removed; "
+            + "  IF v_removed <> 0 THEN "
+            + "    UPDATE balances SET balance = balance + v_removed, version = version + 1, "
+            + "      last_updated = CURRENT_TIMESTAMP "
+            + "    WHERE user_id = p_user; "
+            + "  END IF; "
+            + "END $$";
+
+    static final String SET_SLOTS = "SELECT atm_set_balance_slots(?, ?)";
+
+    static String[] getAllCreateFunctionStatements() {
+      return new String[] {
+        CREATE_CREDIT_FUNCTION,
+        CREATE_DEBIT_FUNCTION,
+        CREATE_APPLY_FUNCTION,
+        CREATE_TRANSFER_FUNCTION,
+        CREATE_GATHER_FUNCTION,
+        CREATE_SET_SLOTS_FUNCTION
       };
     }
   }
@@ -98,6 +570,45 @@ public final class PostgreSQLQueries {
     // Read
     static final String GET_BY_USERNAME = "SELECT * FROM users WHERE username = ?";
 
+    static final String GET_ID_BY_USERNAME = "SELECT id FROM users WHERE username = ?";
+
+    // Planner statistics, avoids counting every row
+    static final String ESTIMATE_COUNT =
+        "SELECT GREATEST(reltuples, 0)::bigint FROM pg_class WHERE oid = 'users'::regclass";
+
+    static final String STREAM_USERNAMES =
+        "SELECT id, username FROM users WHERE id > ? ORDER BY id";
+
+    static final String GET_IDS_BY_USERNAMES =
+        "SELECT id, username FROM users WHERE username = ANY(?)";
+
+    /*
+     * Bulk import: rows are COPY'd into a transaction scoped staging table, then moved into users
+     * and balances in one statement. Usernames that already exist are skipped instead of failing
+     * the COPY and returned to the caller as duplicates
+     */
+    static final String CREATE_IMPORT_STAGING =
+        "CREATE TEMP TABLE users_import ("
+            + "username VARCHAR(50) NOT NULL,"
+            + "password_hash VARCHAR(255) NOT NULL"
+            + ") ON COMMIT DROP";
+
+    static final String COPY_IMPORT_STAGING =
+        "COPY users_import (username, password_hash) FROM STDIN WITH (FORMAT text)";
+
+    static final String INSERT_FROM_IMPORT_STAGING =
+        "WITH inserted AS ("
+            + "  INSERT INTO users (username, password_hash) "
+            + "  SELECT username, password_hash FROM users_import "
+            + "  ON CONFLICT (username) DO NOTHING "
+            + "  RETURNING id, username"
+            + "), balances AS ("
+            + "  INSERT INTO balances (user_id) SELECT id FROM inserted"
+            + ") "
+            + "SELECT s.username FROM users_import s "
+            + "LEFT JOIN inserted i ON i.username = s.username "
+            + "WHERE i.id IS NULL";
+
     // Update
     static final String UPDATE_LAST_LOGIN =
         "UPDATE users SET last_login = CURRENT_TIMESTAMP WHERE id = ?";
@@ -107,58 +618,393 @@ public final class PostgreSQLQueries {
     // Create
     static final String INITIALIZE = "INSERT INTO balances (user_id) VALUES (?)";
 
-    // Read with lock
-    static final String GET = "SELECT balance FROM balances WHERE user_id = ? FOR UPDATE";
+    /*
+     * Read without lock: the value is only displayed or used as a pre-check, every mutation
+     * re-checks funds under its own lock, and row locks cannot be taken on a hot standby
+     */
+    static final String GET =
+        "SELECT "
+            + minorUnits("b.balance + COALESCE(SUM(s.balance), 0)")
+            + " AS balance "
+            + "FROM balances b LEFT JOIN balance_slots s ON s.user_id = b.user_id "
+            + "WHERE b.user_id = ? GROUP BY b.balance";
+
+    // Slots of hot accounts have no version, they are published as invalidations instead
+    static final String GET_SNAPSHOT =
+        "SELECT "
+            + minorUnits("b.balance + COALESCE(SUM(s.balance), 0)")
+            + " AS balance, b.version "
+            + "FROM balances b LEFT JOIN balance_slots s ON s.user_id = b.user_id "
+            + "WHERE b.user_id = ? GROUP BY b.balance, b.version";
+
+    /*
+     * One pass of the slot consolidator over hot accounts above the cursor: draws their slots into
+     * the balances row. Rows locked by a debit or a credit are skipped, so it never waits on the
+     * write path. Returns the last account looked at, null when the pass is done, and how many
+     * were moved. Parameters: cursor, batch size
+     */
+    static final String CONSOLIDATE_SLOTS =
+        "WITH accounts AS ("
+            + "  SELECT user_id FROM balances WHERE slots > 0 AND user_id > ? "
+            + "  ORDER BY user_id LIMIT ? FOR UPDATE SKIP LOCKED"
+            + "), drained AS ("
+            + "  SELECT s.user_id, s.slot, s.balance FROM balance_slots s "
+            + "  WHERE s.user_id IN (SELECT user_id FROM accounts) AND s.balance <> 0 "
+            + "  FOR UPDATE SKIP LOCKED"
+            + "), zeroed AS ("
+            + "  UPDATE balance_slots s SET balance = 0 FROM drained d "
+            + "  WHERE s.user_id = d.user_id AND s.slot = d.slot"
+            + "), moved AS ("
+            + "  UPDATE balances b SET balance = b.balance + t.amount, version = b.version + 1, "
+            + "    last_updated = CURRENT_TIMESTAMP "
+            + "  FROM (SELECT user_id, SUM(balance) AS amount FROM drained GROUP BY user_id) t "
+            + "  WHERE b.user_id = t.user_id "
+            + "  RETURNING b.user_id"
+            + ") "
+            + "SELECT (SELECT MAX(user_id) FROM accounts) AS last_user_id, "
+            + "(SELECT COUNT(*) FROM moved) AS moved";
+
+    // Locks a set of balances in user id order, used by the group commit writer
+    static final String LOCK_MANY =
+        "SELECT user_id, "
+            + minorUnits("balance")
+            + " AS balance FROM balances WHERE user_id = ANY(?) "
+            + "ORDER BY user_id FOR UPDATE";
 
-    static final String LOCK_FOR_UPDATE =
-        "SELECT user_id, balance FROM balances WHERE user_id IN (?, ?) FOR UPDATE";
+    // Reads balances with their versions without locking, for the optimistic concurrency mode
+    static final String GET_VERSIONED =
+        "SELECT user_id, "
+            + minorUnits("balance")
+            + " AS balance, version FROM balances WHERE user_id = ANY(?)";
 
-    // Update with optimistic locking
-    static final String UPDATE_WITH_LOCK =
-        "UPDATE balances SET balance = ?, last_updated = CURRENT_TIMESTAMP " + "WHERE user_id = ?";
+    /*
+     * Compare-and-set of many balances: each row only takes its new value if its version is still
+     * the one that was read, fewer updated rows than inputs means a concurrent write won
+     */
+    static final String COMPARE_AND_SET =
+        "UPDATE balances b SET balance = d.balance * 0.0001, version = b.version + 1, "
+            + "last_updated = CURRENT_TIMESTAMP "
+            + "FROM unnest(?::bigint[], "
+            + AMOUNTS
+            + ", ?::bigint[]) AS d(user_id, balance, version) "
+            + "WHERE b.user_id = d.user_id AND b.version = d.version";
 
-    static final String UPDATE_BALANCE_BATCH =
-        "UPDATE balances SET "
-            + "balance = CASE "
-            + "  WHEN user_id = ? THEN balance - ? "
-            + "  WHEN user_id = ? THEN balance + ? "
-            + "END, "
+    // Applies signed deltas to many balances at once, duplicates are summed per user
+    static final String APPLY_DELTAS =
+        "UPDATE balances b SET balance = b.balance + d.delta, version = b.version + 1, "
             + "last_updated = CURRENT_TIMESTAMP "
-            + "WHERE user_id IN (?, ?)";
+            + "FROM ("
+            + "  SELECT user_id, SUM(delta) * 0.0001 AS delta "
+            + "  FROM unnest(?::bigint[], "
+            + AMOUNTS
+            + ") AS t(user_id, delta) "
+            + "  GROUP BY user_id"
+            + ") d "
+            + "WHERE b.user_id = d.user_id";
+
+    // Update
+    static final String SET =
+        "UPDATE balances SET balance = "
+            + AMOUNT
+            + ", version = version + 1, last_updated = CURRENT_TIMESTAMP "
+            + "WHERE user_id = ?";
   }
 
+  /*
+   * Expiry is always computed and compared with the database clock, the timeout in seconds is a
+   * parameter taken from DatabaseConfig
+   */
   public static final class Sessions {
-    // Create
+    // Create, replacing the user's previous session. Parameters: user id, session id, timeout
     static final String CREATE =
-        "INSERT INTO sessions (user_id, last_activity_at, expires_at) "
-            + "VALUES (?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP + INTERVAL '1 minutes') "
-            + "RETURNING id";
+        "INSERT INTO user_sessions (user_id, id, created_at, last_activity_at, expires_at) "
+            + "VALUES (?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, "
+            + "CURRENT_TIMESTAMP + make_interval(secs => ?)) "
+            + "ON CONFLICT (user_id) DO UPDATE SET id = EXCLUDED.id, "
+            + "created_at = EXCLUDED.created_at, last_activity_at = EXCLUDED.last_activity_at, "
+            + "expires_at = EXCLUDED.expires_at";
 
     // Read
     static final String GET_BY_ID =
-        "SELECT * FROM sessions WHERE id = ? AND expires_at > CURRENT_TIMESTAMP";
+        "SELECT * FROM user_sessions WHERE id = ? AND expires_at > CURRENT_TIMESTAMP";
 
     static final String GET_ACTIVE =
-        "SELECT * FROM sessions "
-            + "WHERE user_id = ? AND expires_at > CURRENT_TIMESTAMP "
-            + "ORDER BY created_at DESC LIMIT 1";
+        "SELECT * FROM user_sessions WHERE user_id = ? AND expires_at > CURRENT_TIMESTAMP";
 
     // Update
-    static final String UPDATE_ACTIVITY =
-        "UPDATE sessions SET last_activity_at = CURRENT_TIMESTAMP, "
-            + "expires_at = CURRENT_TIMESTAMP + INTERVAL '1 minutes' "
-            + "WHERE id = ? AND expires_at > CURRENT_TIMESTAMP";
+    // Validates and extends a session in one statement, no row means missing or expired
+    static final String TOUCH =
+        "UPDATE user_sessions SET last_activity_at = CURRENT_TIMESTAMP, "
+            + "expires_at = CURRENT_TIMESTAMP + make_interval(secs => ?) "
+            + "WHERE id = ? AND expires_at > CURRENT_TIMESTAMP "
+            + "RETURNING *";
 
-    // Delete
-    static final String DELETE = "DELETE FROM sessions WHERE id = ?";
+    // Write-behind activity of many sessions, returns the ones that were still active
+    static final String TOUCH_MANY =
+        "UPDATE user_sessions SET last_activity_at = CURRENT_TIMESTAMP, "
+            + "expires_at = CURRENT_TIMESTAMP + make_interval(secs => ?) "
+            + "WHERE id = ANY(?) AND expires_at > CURRENT_TIMESTAMP "
+            + "RETURNING id";
 
-    static final String CLEANUP_USER_SESSIONS = "DELETE FROM sessions WHERE user_id = ?";
+    // Logout expires the row in place so the next login can reuse it
+    static final String END =
+        "UPDATE user_sessions SET expires_at = LEAST(expires_at, CURRENT_TIMESTAMP) WHERE id = ?";
+
+    /*
+     * One bounded batch of sessions expired for over a day, oldest first through
+     * idx_user_sessions_expires_at. Recently expired rows are kept for the user's next login. Rows
+     * locked by a concurrent sweeper or a login are skipped and left for a later batch
+     */
+    static final String DELETE_EXPIRED_BATCH =
+        "DELETE FROM user_sessions WHERE user_id IN ("
+            + "  SELECT user_id FROM user_sessions "
+            + "  WHERE expires_at <= CURRENT_TIMESTAMP - INTERVAL '1 day' "
+            + "  ORDER BY expires_at LIMIT ? FOR UPDATE SKIP LOCKED"
+            + ")";
   }
 
   public static final class Transactions {
     static final String CREATE =
         "INSERT INTO transactions (from_user_id, to_user_id, amount, type) "
-            + "VALUES (?, ?, ?, ?) "
+            + "VALUES (?, ?, "
+            + AMOUNT
+            + ", ?) "
             + "RETURNING id";
+
+    // One ledger row per recipient of a batch transfer, in input order
+    static final String CREATE_TRANSFERS =
+        "INSERT INTO transactions (from_user_id, to_user_id, amount, type) "
+            + "SELECT ?, t.user_id, t.amount * 0.0001, 'TRANSFER' "
+            + "FROM unnest(?::bigint[], "
+            + AMOUNTS
+            + ") WITH ORDINALITY AS t(user_id, amount, ord) "
+            + "ORDER BY t.ord";
+
+    /*
+     * Optimistic counterpart of Functions.APPLY: sets the balance computed by the caller if its
+     * version is unchanged and records the ledger entry. No row means a concurrent write won.
+     * Parameters: new balance, user id, expected version, amount, type
+     */
+    static final String COMPARE_AND_SET_AND_RECORD =
+        "WITH updated AS ("
+            + "  UPDATE balances SET balance = "
+            + AMOUNT
+            + ", version = version + 1, "
+            + "    last_updated = CURRENT_TIMESTAMP "
+            + "  WHERE user_id = ? AND version = ? "
+            + "  RETURNING user_id, balance"
+            + "), inserted AS ("
+            + "  INSERT INTO transactions (from_user_id, to_user_id, amount, type) "
+            + "  SELECT user_id, user_id, "
+            + AMOUNT
+            + ", ? FROM updated "
+            + "  RETURNING id"
+            + ") "
+            + "SELECT "
+            + minorUnits("u.balance")
+            + " AS balance, i.id AS transaction_id "
+            + "FROM updated u JOIN inserted i ON TRUE";
+
+    /*
+     * Keyset page of a user's ledger, newest first, for ids below the cursor. Each branch is an
+     * ordered, limited scan of idx_transactions_outgoing or idx_transactions_incoming, the incoming
+     * branch repeats the partial index predicate so deposits and withdrawals appear once.
+     * Parameters: user id, cursor, limit, user id, cursor, limit, limit
+     */
+    static final String HISTORY =
+        "SELECT id, from_user_id, to_user_id, "
+            + minorUnits("amount")
+            + " AS amount, type, created_at FROM ("
+            + "  (SELECT id, from_user_id, to_user_id, amount, type, created_at "
+            + "   FROM transactions WHERE from_user_id = ? AND id < ? "
+            + "   ORDER BY id DESC LIMIT ?)"
+            + "  UNION ALL "
+            + "  (SELECT id, from_user_id, to_user_id, amount, type, created_at "
+            + "   FROM transactions WHERE to_user_id = ? AND from_user_id <> to_user_id "
+            + "   AND id < ? ORDER BY id DESC LIMIT ?)"
+            + ") h "
+            + "ORDER BY id DESC LIMIT ?";
+  }
+
+  /*
+   * Per user, UTC day and type rollup of transactions, so limits and reports read a handful of rows
+   * instead of scanning the ledger. A transfer counts as TRANSFER_OUT for its sender and TRANSFER_IN
+   * for its recipient. A statement level trigger on transactions keeps it current in the same
+   * transaction as the ledger rows, whichever path inserted them, with one upsert per statement
+   */
+  public static final class DailyTotals {
+    /*
+     * Adds the rows of a transactions shaped relation to the rollup in key order. Credits of a hot
+     * account land on a random slot of its rollup row like its balance does, so they do not queue
+     * on one row lock there either
+     */
+    private static String rollUp(String source) {
+      return "INSERT INTO daily_account_totals AS d (user_id, day, type, slot, count, amount) "
+          + "SELECT r.user_id, r.day, r.type, "
+          + "  CASE WHEN r.type IN ('DEPOSIT', 'TRANSFER_IN') AND b.slots > 0 "
+          + "    THEN floor(random() * (b.slots + 1))::INT ELSE 0 END, "
+          + "  r.count, r.amount "
+          + "FROM ("
+          + "  SELECT p.user_id, (t.created_at AT TIME ZONE 'UTC')::date AS day, p.type, "
+          + "    COUNT(*) AS count, SUM(t.amount) AS amount "
+          + "  FROM "
+          + source
+          + " t "
+          + "  CROSS JOIN LATERAL (VALUES "
+          + "    (t.from_user_id, "
+          + "      CASE WHEN t.type = 'TRANSFER' THEN 'TRANSFER_OUT' ELSE t.type END), "
+          + "    (CASE WHEN t.type = 'TRANSFER' THEN t.to_user_id END, 'TRANSFER_IN')"
+          + "  ) AS p(user_id, type) "
+          + "  WHERE p.user_id IS NOT NULL "
+          + "  GROUP BY p.user_id, day, p.type"
+          + ") r LEFT JOIN balances b ON b.user_id = r.user_id "
+          + "ORDER BY 1, 2, 3, 4 "
+          + "ON CONFLICT (user_id, day, type, slot) DO UPDATE "
+          + "SET count = d.count + EXCLUDED.count, amount = d.amount + EXCLUDED.amount";
+    }
+
+    static final String CREATE_ROLL_UP_FUNCTION =
+        "CREATE OR REPLACE FUNCTION atm_roll_up_daily_totals() RETURNS trigger "
+            + "LANGUAGE plpgsql AS $$ "
+            + "BEGIN "
+            + "  "
+            + rollUp("inserted")
+            + "; "
+            + "  RETURN NULL; "
+            + "END $$";
+
+    /*
+     * Creates the rollup with its trigger and fills it from the existing ledger, once. Creating
+     * the trigger locks out inserts into transactions until the backfill commits, so no row is
+     * missed or counted twice
+     */
+    static final String CREATE_TABLE =
+        "DO $$ BEGIN "
+            + "  IF to_regclass('daily_account_totals') IS NULL THEN "
+            + "    CREATE TABLE daily_account_totals ("
+            + "      user_id BIGINT NOT NULL,"
+            + "      day DATE NOT NULL,"
+            + "      type VARCHAR(50) NOT NULL,"
+            + "      slot INT NOT NULL DEFAULT 0,"
+            + "      count BIGINT NOT NULL,"
+            + "      amount NUMERIC(19,4) NOT NULL,"
+            + "      PRIMARY KEY (user_id, day, type, slot),"
+            + "      FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE"
+            + "    ); "
+            + "    CREATE TRIGGER transactions_daily_totals AFTER INSERT ON transactions "
+            + "    REFERENCING NEW TABLE AS inserted "
+            + "    FOR EACH STATEMENT EXECUTE FUNCTION atm_roll_up_daily_totals(); "
+            + "    "
+            + rollUp("transactions")
+            + "; "
+            + "  END IF; "
+            + "END $$";
+
+    // Totals of one user per day and type, from inclusive, to exclusive. A range scan of the key
+    static final String GET =
+        "SELECT day, type, SUM(count) AS count, "
+            + minorUnits("SUM(amount)")
+            + " AS amount "
+            + "FROM daily_account_totals WHERE user_id = ? AND day >= ? AND day < ? "
+            + "GROUP BY day, type ORDER BY day, type";
+  }
+
+  /*
+   * Ledger balance store, see LedgerBalances. Entries are bound as three arrays of user ids,
+   * sequence numbers and deltas
+   */
+  public static final class Ledger {
+    // Latest snapshot plus the entries after it, accounts without a snapshot are absent
+    static final String GET_BALANCES =
+        "SELECT s.user_id, "
+            + minorUnits("s.balance + COALESCE(SUM(e.delta), 0)")
+            + " AS balance, "
+            + "COALESCE(MAX(e.seq), s.seq) AS seq "
+            + "FROM balance_snapshots s "
+            + "LEFT JOIN ledger_entries e ON e.user_id = s.user_id AND e.seq > s.seq "
+            + "WHERE s.user_id = ANY(?) "
+            + "GROUP BY s.user_id, s.balance, s.seq";
+
+    // Opens the ledger of accounts that do not have one yet at their balances row
+    static final String SEED =
+        "INSERT INTO balance_snapshots (user_id, balance, seq) "
+            + "SELECT user_id, balance, 0 FROM balances WHERE user_id = ANY(?) "
+            + "ON CONFLICT (user_id) DO NOTHING";
+
+    /*
+     * Records the history row and appends its entries in one statement, returns the history row
+     * id once per entry. Parameters: from user id, to user id, amount, type, entries
+     */
+    static final String RECORD =
+        "WITH recorded AS ("
+            + "  INSERT INTO transactions (from_user_id, to_user_id, amount, type) "
+            + "  VALUES (?, ?, "
+            + AMOUNT
+            + ", ?) "
+            + "  RETURNING id"
+            + ") "
+            + "INSERT INTO ledger_entries (user_id, seq, delta, transaction_id) "
+            + "SELECT e.user_id, e.seq, e.delta * 0.0001, r.id FROM recorded r, "
+            + "unnest(?::bigint[], ?::bigint[], "
+            + AMOUNTS
+            + ") AS e(user_id, seq, delta) "
+            + "RETURNING transaction_id";
+
+    // Entries spanning several history rows, e.g. a payout, carry no transaction id
+    static final String APPEND =
+        "INSERT INTO ledger_entries (user_id, seq, delta) "
+            + "SELECT e.user_id, e.seq, e.delta * 0.0001 "
+            + "FROM unnest(?::bigint[], ?::bigint[], "
+            + AMOUNTS
+            + ") AS e(user_id, seq, delta)";
+
+    static final String MAX_ENTRY_ID = "SELECT COALESCE(MAX(id), 0) FROM ledger_entries";
+
+    static final String SNAPSHOT_WATERMARK =
+        "SELECT COALESCE(MAX(entry_id), 0) FROM balance_snapshots";
+
+    /*
+     * Folds the entries of every account that appended one in an entry id range into its
+     * snapshot. A snapshot moved by a concurrent snapshotter no longer matches from_seq and is
+     * left alone. Parameters: exclusive lower and inclusive upper entry id
+     */
+    static final String SNAPSHOT_BATCH =
+        "WITH accounts AS ("
+            + "  SELECT DISTINCT user_id FROM ledger_entries WHERE id > ? AND id <= ?"
+            + "), tails AS ("
+            + "  SELECT s.user_id, s.seq AS from_seq, SUM(e.delta) AS delta, MAX(e.seq) AS seq, "
+            + "    MAX(e.id) AS entry_id "
+            + "  FROM accounts a "
+            + "  JOIN balance_snapshots s ON s.user_id = a.user_id "
+            + "  JOIN ledger_entries e ON e.user_id = s.user_id AND e.seq > s.seq "
+            + "  GROUP BY s.user_id, s.seq"
+            + ") "
+            + "UPDATE balance_snapshots s SET balance = s.balance + t.delta, seq = t.seq, "
+            + "entry_id = GREATEST(s.entry_id, t.entry_id), taken_at = CURRENT_TIMESTAMP "
+            + "FROM tails t WHERE s.user_id = t.user_id AND s.seq = t.from_seq";
+  }
+
+  /*
+   * COPY does not accept bind parameters, the filters below are formatted with values that were
+   * already typed (dates and ids) so no user input reaches the statement text
+   */
+  public static final class Exports {
+    static final String SELECT_TRANSACTIONS =
+        "SELECT id, from_user_id, to_user_id, amount, type, created_at FROM transactions WHERE TRUE";
+
+    static final String CREATED_FROM = " AND created_at >= '%s 00:00:00+00'";
+
+    static final String CREATED_BEFORE = " AND created_at < '%s 00:00:00+00'";
+
+    // Same two sides as Transactions.HISTORY so each branch can use its own index
+    static final String OUTGOING = " AND from_user_id = %d";
+
+    static final String INCOMING = " AND to_user_id = %d AND from_user_id <> to_user_id";
+
+    static final String UNION_ALL = " UNION ALL ";
+
+    static final String COPY_CSV = "COPY (%s) TO STDOUT WITH (FORMAT csv, HEADER true)";
+
+    static final String COPY_BINARY = "COPY (%s) TO STDOUT WITH (FORMAT binary)";
   }
 }
@@ -3,11 +3,8 @@ package com.atm.database;
 import com.atm.exception.DatabaseException;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
-import java.io.IOException;
-import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.Properties;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -15,24 +12,49 @@ public class PostgresConnection implements AutoCloseable {
   private final HikariDataSource dataSource;
 
   public PostgresConnection() {
+    this(DatabaseConfig.load());
+  }
 
-    Properties props = loadProperties();
-
-    String jdbcUrl = System.getenv().getOrDefault("DB_URL", props.getProperty("db.url"));
-    String username = System.getenv().getOrDefault("DB_USERNAME", props.getProperty("db.username"));
-    String password = System.getenv().getOrDefault("DB_PASSWORD", props.getProperty("db.password"));
+  public PostgresConnection(DatabaseConfig databaseConfig) {
+    this(
+        "atm-primary",
+        databaseConfig.getJdbcUrl(),
+        databaseConfig.getUsername(),
+        databaseConfig.getPassword(),
+        databaseConfig.getTransactionIsolation(),
+        false,
+        false);
+  }
 
+  /**
+   * @param readOnly read-only pools hand out auto-commit connections flagged read-only, so single
+   *     statement reads need no explicit transaction and no commit round trip
+   * @param optional optional pools do not connect at startup and give up on a connection quickly
+   */
+  private PostgresConnection(
+      String poolName,
+      String jdbcUrl,
+      String username,
+      String password,
+      String isolation,
+      boolean readOnly,
+      boolean optional) {
     HikariConfig config = new HikariConfig();
+    config.setPoolName(poolName);
     config.setJdbcUrl(jdbcUrl);
     config.setUsername(username);
     config.setPassword(password);
+    config.setReadOnly(readOnly);
 
     // Connection pool settings
     config.setMaximumPoolSize(10);
     config.setMinimumIdle(5);
     config.setIdleTimeout(300000);
     config.setConnectionTimeout(10000);
-    config.setAutoCommit(false);
+    config.setAutoCommit(readOnly);
+    if (isolation != null) {
+      config.setTransactionIsolation("TRANSACTION_" + isolation.trim().toUpperCase());
+    }
 
     /**
      * Commonly used properties: 1. cachePrepStmts: Enable prepared statement caching 2.
@@ -43,22 +65,47 @@ public class PostgresConnection implements AutoCloseable {
     config.addDataSourceProperty("prepStmtCacheSize", "250");
     config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
 
+    if (optional) {
+      // A replica that is down must not stop startup or stall reads, they fall back to the primary
+      config.setInitializationFailTimeout(-1);
+      config.setConnectionTimeout(1000);
+    }
+
     this.dataSource = new HikariDataSource(config);
-    initialize();
+    if (!optional) {
+      initialize();
+    }
   }
 
-  private Properties loadProperties() {
-    Properties props = new Properties();
-    try (InputStream input =
-        PostgresConnection.class.getClassLoader().getResourceAsStream("database.properties")) {
-      if (input == null) {
-        throw new RuntimeException("Unable to find database.properties");
-      }
-      props.load(input);
-      return props;
-    } catch (IOException e) {
-      throw new RuntimeException("Failed to load database properties", e);
-    }
+  /**
+   * Read-only pool against the configured replica, falling back to the primary credentials. It
+   * keeps the server's default isolation since a hot standby does not support serializable.
+   */
+  public static PostgresConnection replica(DatabaseConfig databaseConfig) {
+    return new PostgresConnection(
+        "atm-replica",
+        databaseConfig.getReplicaJdbcUrl(),
+        databaseConfig.getReplicaUsername() != null
+            ? databaseConfig.getReplicaUsername()
+            : databaseConfig.getUsername(),
+        databaseConfig.getReplicaPassword() != null
+            ? databaseConfig.getReplicaPassword()
+            : databaseConfig.getPassword(),
+        null,
+        true,
+        true);
+  }
+
+  /** Read-only pool against the primary, serves read-only work while no replica is usable. */
+  public static PostgresConnection readOnly(DatabaseConfig databaseConfig) {
+    return new PostgresConnection(
+        "atm-readonly",
+        databaseConfig.getJdbcUrl(),
+        databaseConfig.getUsername(),
+        databaseConfig.getPassword(),
+        null,
+        true,
+        false);
   }
 
   private void initialize() {
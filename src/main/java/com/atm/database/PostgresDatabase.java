@@ -0,0 +1,1343 @@
+package com.atm.database;
+
+import com.atm.exception.DatabaseException;
+import com.atm.exception.InsufficientFundsException;
+import com.atm.model.Balance;
+import com.atm.model.DailyTotal;
+import com.atm.model.ExportResult;
+import com.atm.model.Money;
+import com.atm.model.PayoutItem;
+import com.atm.model.PayoutResult;
+import com.atm.model.Session;
+import com.atm.model.Transaction;
+import com.atm.model.TransactionExport;
+import com.atm.model.TransactionResult;
+import com.atm.model.User;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.util.PSQLException;
+
+/**
+ * PostgreSQL storage engine. Reads that tolerate bounded staleness are served by the read replica
+ * when one is configured. Single-statement lookups run on auto-commit, read-only connections
+ * without an explicit transaction: balances and summaries through {@link
+ * PostgresTransaction#executeReadOnly}, users and sessions through {@link
+ * PostgresTransaction#executeReadOnlyOnPrimary} so a login sees a registration or session made
+ * moments earlier. History and exports run through {@link PostgresTransaction#executeReplicaSafe}.
+ *
+ * <p>Balance writes use one of two concurrency modes. {@link #CONCURRENCY_PESSIMISTIC} row-locks
+ * the balances it changes, {@link #CONCURRENCY_OPTIMISTIC} reads them without locks and writes them
+ * back with a compare-and-set on their version, replaying the transaction when another write got
+ * there first. The optimistic mode suits read-heavy mixes, the pessimistic one hot accounts with
+ * many concurrent writers, where replays would pile up.
+ *
+ * <p>With the {@link #BALANCE_STORE_LEDGER} balance store the balances rows are no longer written.
+ * Money movements append to the ledger instead and balances are derived from it by {@link
+ * LedgerBalances}, which replaces both concurrency modes and group commit.
+ */
+@Slf4j
+public class PostgresDatabase implements Database {
+  public static final String CONCURRENCY_PESSIMISTIC = "pessimistic";
+  public static final String CONCURRENCY_OPTIMISTIC = "optimistic";
+  public static final String BALANCE_STORE_TABLE = "table";
+  public static final String BALANCE_STORE_LEDGER = "ledger";
+
+  // Rows pulled per round trip by the history cursor
+  private static final int HISTORY_FETCH_SIZE = 256;
+
+  // Rows pulled per round trip when streaming all usernames
+  private static final int USERNAME_FETCH_SIZE = 10_000;
+
+  // Write buffer between the COPY stream and the export file
+  private static final int EXPORT_BUFFER_SIZE = 1 << 16;
+
+  // Longest wait for a group commit, far above a linger plus a commit and its replays
+  private static final long GROUP_COMMIT_TIMEOUT_SECONDS = 30;
+
+  // Session ids are bearer tokens, a new unguessable one is issued on every login
+  private static final SecureRandom SESSION_IDS = new SecureRandom();
+
+  private final PostgresConnection connection;
+  private final PostgresConnection readOnlyConnection;
+  private final PostgresConnection replicaConnection;
+  private final PostgresTransaction transaction;
+  private final GroupCommitLedgerWriter ledgerWriter;
+  private final TransactionPartitionMaintainer partitionMaintainer;
+  private final ExpiredSessionSweeper sessionSweeper;
+  private final BalanceChangeNotifier balanceNotifier;
+  private final LedgerBalances ledgerBalances;
+  private final LedgerSnapshotter ledgerSnapshotter;
+  private final BalanceSlotConsolidator slotConsolidator;
+  private final boolean optimistic;
+  private final long sessionTimeoutSeconds;
+
+  public PostgresDatabase() {
+    this(DatabaseConfig.load());
+  }
+
+  public PostgresDatabase(DatabaseConfig config) {
+    this.connection = new PostgresConnection(config);
+    this.readOnlyConnection = PostgresConnection.readOnly(config);
+    this.replicaConnection = config.isReplicaEnabled() ? PostgresConnection.replica(config) : null;
+    this.transaction =
+        new PostgresTransaction(connection, readOnlyConnection, replicaConnection, config);
+    boolean ledgerStore = isLedgerStore(config);
+    this.optimistic = !ledgerStore && isOptimistic(config);
+    this.sessionTimeoutSeconds = config.getSessionTimeoutSeconds();
+    initializeDatabase(config.isSessionsUnlogged(), config.isBalanceCacheEnabled() && !ledgerStore);
+    this.ledgerWriter =
+        config.isGroupCommitEnabled() && !ledgerStore
+            ? new GroupCommitLedgerWriter(
+                transaction,
+                config.getGroupCommitMaxBatchSize(),
+                config.getGroupCommitMaxWaitMillis())
+            : null;
+    this.partitionMaintainer = startPartitionMaintainer(config);
+    this.sessionSweeper = startSessionSweeper(config);
+    this.balanceNotifier =
+        config.isBalanceCacheEnabled() && !ledgerStore ? new BalanceChangeNotifier(config) : null;
+    this.ledgerBalances =
+        ledgerStore ? new LedgerBalances(transaction, config.getLedgerMaxStalenessMillis()) : null;
+    this.ledgerSnapshotter = ledgerStore ? startLedgerSnapshotter(config) : null;
+    this.slotConsolidator = ledgerStore ? null : startSlotConsolidator(config);
+  }
+
+  private static boolean isLedgerStore(DatabaseConfig config) {
+    String store =
+        config.getBalanceStore() == null
+            ? BALANCE_STORE_TABLE
+            : config.getBalanceStore().trim().toLowerCase();
+
+    switch (store) {
+      case BALANCE_STORE_TABLE:
+        return false;
+      case BALANCE_STORE_LEDGER:
+        if (config.isGroupCommitEnabled()
+            || config.isBalanceCacheEnabled()
+            || CONCURRENCY_OPTIMISTIC.equalsIgnoreCase(config.getBalanceConcurrency())) {
+          log.warn(
+              "The ledger balance store appends without locks and projects balances in memory, "
+                  + "group commit, optimistic concurrency and the balance cache are not used");
+        }
+        return true;
+      default:
+        throw new IllegalArgumentException("Unknown balance store: " + store);
+    }
+  }
+
+  private static boolean isOptimistic(DatabaseConfig config) {
+    String mode =
+        config.getBalanceConcurrency() == null
+            ? CONCURRENCY_PESSIMISTIC
+            : config.getBalanceConcurrency().trim().toLowerCase();
+
+    switch (mode) {
+      case CONCURRENCY_PESSIMISTIC:
+        return false;
+      case CONCURRENCY_OPTIMISTIC:
+        if (config.isGroupCommitEnabled()) {
+          log.warn("Group commit locks the balances it batches, only payouts run optimistically");
+        }
+        return true;
+      default:
+        throw new IllegalArgumentException("Unknown balance concurrency mode: " + mode);
+    }
+  }
+
+  private TransactionPartitionMaintainer startPartitionMaintainer(DatabaseConfig config) {
+    TransactionPartitionMaintainer maintainer =
+        new TransactionPartitionMaintainer(
+            transaction, config.getPartitionPremakeMonths(), config.getPartitionRetentionMonths());
+    if (!maintainer.isPartitioned()) {
+      log.warn("transactions table is not partitioned, skipping partition maintenance");
+      return null;
+    }
+    maintainer.start(config.getPartitionMaintenanceIntervalMinutes());
+    return maintainer;
+  }
+
+  private ExpiredSessionSweeper startSessionSweeper(DatabaseConfig config) {
+    if (config.getSessionSweepIntervalSeconds() <= 0) {
+      return null;
+    }
+    ExpiredSessionSweeper sweeper =
+        new ExpiredSessionSweeper(
+            transaction, config.getSessionSweepBatchSize(), config.getSessionSweepPauseMillis());
+    sweeper.start(config.getSessionSweepIntervalSeconds());
+    return sweeper;
+  }
+
+  private LedgerSnapshotter startLedgerSnapshotter(DatabaseConfig config) {
+    if (config.getLedgerSnapshotIntervalSeconds() <= 0) {
+      return null;
+    }
+    LedgerSnapshotter snapshotter =
+        new LedgerSnapshotter(transaction, config.getLedgerSnapshotBatchSize());
+    snapshotter.start(config.getLedgerSnapshotIntervalSeconds());
+    return snapshotter;
+  }
+
+  private BalanceSlotConsolidator startSlotConsolidator(DatabaseConfig config) {
+    if (config.getBalanceSlotConsolidateIntervalSeconds() <= 0) {
+      return null;
+    }
+    BalanceSlotConsolidator consolidator =
+        new BalanceSlotConsolidator(transaction, config.getBalanceSlotConsolidateBatchSize());
+    consolidator.start(config.getBalanceSlotConsolidateIntervalSeconds());
+    return consolidator;
+  }
+
+  private void initializeDatabase(boolean sessionsUnlogged, boolean publishBalanceChanges) {
+    transaction.executeInTransaction(
+        connection -> {
+          try (Statement stmt = connection.createStatement()) {
+            for (String createTable : PostgreSQLQueries.Tables.getAllCreateTableStatements()) {
+              stmt.execute(createTable);
+            }
+            // Inserts fail without a partition to land in, so startup does not leave the first
+            // ones to the maintainer, whose failures are only logged
+            if (isPartitioned(stmt)) {
+              for (String ddl : TransactionPartitionMaintainer.createDefaultStatements()) {
+                stmt.execute(ddl);
+              }
+              for (String ddl :
+                  TransactionPartitionMaintainer.createMonthStatements(
+                      YearMonth.now(ZoneOffset.UTC))) {
+                stmt.execute(ddl);
+              }
+            }
+            // A no-op when the table already has the configured persistence
+            stmt.execute(
+                sessionsUnlogged
+                    ? PostgreSQLQueries.Tables.SET_SESSIONS_UNLOGGED
+                    : PostgreSQLQueries.Tables.SET_SESSIONS_LOGGED);
+            for (String createIndex : PostgreSQLQueries.Indexes.getAllCreateIndexStatements()) {
+              stmt.execute(createIndex);
+            }
+            for (String createFunction :
+                PostgreSQLQueries.Functions.getAllCreateFunctionStatements()) {
+              stmt.execute(createFunction);
+            }
+            stmt.execute(PostgreSQLQueries.DailyTotals.CREATE_ROLL_UP_FUNCTION);
+            stmt.execute(PostgreSQLQueries.DailyTotals.CREATE_TABLE);
+            stmt.execute(PostgreSQLQueries.Notifications.CREATE_BALANCE_NOTIFY_FUNCTION);
+            stmt.execute(PostgreSQLQueries.Notifications.DROP_BALANCE_NOTIFY_TRIGGER);
+            stmt.execute(PostgreSQLQueries.Notifications.DROP_BALANCE_SLOTS_NOTIFY_TRIGGER);
+            if (publishBalanceChanges) {
+              stmt.execute(PostgreSQLQueries.Notifications.CREATE_BALANCE_NOTIFY_TRIGGER);
+              stmt.execute(PostgreSQLQueries.Notifications.CREATE_BALANCE_SLOTS_NOTIFY_TRIGGER);
+            }
+          } catch (SQLException e) {
+            throw new DatabaseException("Failed to initialize database", e);
+          }
+          log.info("Database initialized successfully");
+          return null;
+        });
+  }
+
+  private boolean isPartitioned(Statement stmt) throws SQLException {
+    try (ResultSet rs = stmt.executeQuery(PostgreSQLQueries.Partitions.IS_PARTITIONED)) {
+      return rs.next() && rs.getBoolean(1);
+    }
+  }
+
+  /*
+   * User operations
+   */
+  @Override
+  public Long createUser(String username, String passwordHash) {
+    return transaction.executeInTransaction(
+        connection -> {
+          try (PreparedStatement pstmt =
+              connection.prepareStatement(
+                  PostgreSQLQueries.Users.INSERT, Statement.RETURN_GENERATED_KEYS)) {
+
+            pstmt.setString(1, username);
+            pstmt.setString(2, passwordHash);
+            pstmt.executeUpdate();
+
+            try (ResultSet rs = pstmt.getGeneratedKeys()) {
+              if (rs.next()) {
+                Long userId = rs.getLong(1);
+                initializeBalance(connection, userId);
+                log.info("Successfully created user: {}", username);
+                return userId;
+              }
+            }
+            throw new DatabaseException("Failed to create user: no ID returned");
+          } catch (SQLException e) {
+            throw new DatabaseException("Failed to create user", e);
+          }
+        });
+  }
+
+  /**
+   * Loads the users with {@code COPY FROM STDIN} into a staging table and moves them into users and
+   * balances with a single insert, so a chunk costs a handful of round trips instead of two
+   * statements per user.
+   */
+  @Override
+  public List<String> createUsers(List<User> users) {
+    return transaction.executeInTransaction(
+        connection -> {
+          try (Statement stmt = connection.createStatement()) {
+            stmt.execute(PostgreSQLQueries.Users.CREATE_IMPORT_STAGING);
+
+            // Usernames are alphanumeric and bcrypt hashes use [./$A-Za-z0-9], nothing to escape
+            CopyIn copyIn =
+                connection
+                    .unwrap(PGConnection.class)
+                    .getCopyAPI()
+                    .copyIn(PostgreSQLQueries.Users.COPY_IMPORT_STAGING);
+            try {
+              for (User user : users) {
+                byte[] row =
+                    (user.getUsername() + "\t" + user.getPasswordHash() + "\n")
+                        .getBytes(StandardCharsets.UTF_8);
+                copyIn.writeToCopy(row, 0, row.length);
+              }
+              copyIn.endCopy();
+            } finally {
+              if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+              }
+            }
+
+            List<String> duplicates = new ArrayList<>();
+            try (ResultSet rs =
+                stmt.executeQuery(PostgreSQLQueries.Users.INSERT_FROM_IMPORT_STAGING)) {
+              while (rs.next()) {
+                duplicates.add(rs.getString(1));
+              }
+            }
+            log.info(
+                "Imported {} users, skipped {} existing",
+                users.size() - duplicates.size(),
+                duplicates.size());
+            return duplicates;
+          } catch (SQLException e) {
+            throw new DatabaseException("Failed to import users", e);
+          }
+        });
+  }
+
+  @Override
+  public Optional<User> getUserByUsername(String username) {
+    return transaction.executeReadOnlyOnPrimary(
+        connection -> {
+          try (PreparedStatement pstmt =
+              connection.prepareStatement(PostgreSQLQueries.Users.GET_BY_USERNAME)) {
+            pstmt.setString(1, username);
+            try (ResultSet rs = pstmt.executeQuery()) {
+              if (rs.next()) {
+                return Optional.of(mapResultSetToUser(rs));
+              }
+            }
+            return Optional.empty();
+          } catch (SQLException e) {
+            log.error("Failed to get user by username", e);
+            return Optional.empty();
+          }
+        });
+  }
+
+  @Override
+  public Optional<Long> getUserIdByUsername(String username) {
+    return transaction.executeReadOnlyOnPrimary(
+        connection -> {
+          try (PreparedStatement pstmt =
+              connection.prepareStatement(PostgreSQLQueries.Users.GET_ID_BY_USERNAME)) {
+            pstmt.setString(1, username);
+            try (ResultSet rs = pstmt.executeQuery()) {
+              return rs.next() ? Optional.of(rs.getLong(1)) : Optional.<Long>empty();
+            }
+          } catch (SQLException e) {
+            throw new DatabaseException("Failed to get user id by username", e);
+          }
+        });
+  }
+
+  @Override
+  public long estimateUserCount() {
+    return transaction.executeReadOnly(
+        connection -> {
+          try (Statement stmt = connection.createStatement();
+              ResultSet rs = stmt.executeQuery(PostgreSQLQueries.Users.ESTIMATE_COUNT)) {
+            return rs.next() ? rs.getLong(1) : 0L;
+          } catch (SQLException e) {
+            throw new DatabaseException("Failed to estimate user count", e);
+          }
+        });
+  }
+
+  /**
+   * Reads through a server-side cursor on the primary, a lagging replica could hide users that were
+   * just created.
+   */
+  @Override
+  public void streamUsernames(long afterUserId, BiConsumer<Long, String> consumer) {
+    transaction.executeInTransactionOnce(
+        connection -> {
+          try (PreparedStatement pstmt =
+              connection.prepareStatement(
+                  PostgreSQLQueries.Users.STREAM_USERNAMES,
+                  ResultSet.TYPE_FORWARD_ONLY,
+                  ResultSet.CONCUR_READ_ONLY)) {
+            pstmt.setFetchSize(USERNAME_FETCH_SIZE);
+            pstmt.setLong(1, afterUserId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+              while (rs.next()) {
+                consumer.accept(rs.getLong(1), rs.getString(2));
+              }
+            }
+            return null;
+          } catch (SQLException e) {
+            throw new DatabaseException("Failed to stream usernames", e);
+          }
+        });
+  }
+
+  @Override
+  public Map<String, Long> getUserIdsByUsernames(Collection<String> usernames) {
+    return transaction.executeReadOnlyOnPrimary(
+        connection -> {
+          Map<String, Long> userIds = new HashMap<>();
+          try (PreparedStatement pstmt =
+              connection.prepareStatement(PostgreSQLQueries.Users.GET_IDS_BY_USERNAMES)) {
+            Array names = connection.createArrayOf("varchar", usernames.toArray());
+            try {
+              pstmt.setArray(1, names);
+              try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                  userIds.put(rs.getString("username"), rs.getLong("id"));
+                }
+              }
+            } finally {
+              names.free();
+            }
+            return userIds;
+          } catch (SQLException e) {
+            throw new DatabaseException("Failed to get users by username", e);
+          }
+        });
+  }
+
+  @Override
+  public void updateLastLogin(Long userId) {
+    transaction.executeInTransaction(
+        connection -> {
+          try (PreparedStatement pstmt =
+              connection.prepareStatement(PostgreSQLQueries.Users.UPDATE_LAST_LOGIN)) {
+            pstmt.setLong(1, userId);
+            pstmt.executeUpdate();
+            return null;
+          } catch (SQLException e) {
+            log.error("Failed to update last login", e);
+            return null;
+          }
+        });
+  }
+
+  private void initializeBalance(Connection connection, Long userId) throws SQLException {
+    try (PreparedStatement pstmt =
+        connection.prepareStatement(PostgreSQLQueries.Balances.INITIALIZE)) {
+      pstmt.setLong(1, userId);
+      pstmt.executeUpdate();
+      log.debug("Initialized balance for user: {}", userId);
+    } catch (SQLException e) {
+      log.error("Failed to initialize balance for user: {}", userId, e);
+      throw e;
+    }
+  }
+
+  /*
+   * Session operations
+   */
+  @Override
+  public Long createSession(Long userId) {
+    return transaction.executeInTransaction(
+        connection -> {
+          try (PreparedStatement pstmt =
+              connection.prepareStatement(PostgreSQLQueries.Sessions.CREATE)) {
+            long sessionId = SESSION_IDS.nextLong() & Long.MAX_VALUE;
+            pstmt.setLong(1, userId);
+            pstmt.setLong(2, sessionId);
+            pstmt.setLong(3, sessionTimeoutSeconds);
+            pstmt.executeUpdate();
+            log.info("Created session for user: {}", userId);
+            return sessionId;
+          } catch (SQLException e) {
+            throw new DatabaseException("Failed to create session", e);
+          }
+        });
+  }
+
+  @Override
+  public Optional<Session> getSessionById(Long sessionId) {
+    return transaction.executeReadOnlyOnPrimary(
+        connection -> {
+          try (PreparedStatement pstmt =
+              connection.prepareStatement(PostgreSQLQueries.Sessions.GET_BY_ID)) {
+            pstmt.setLong(1, sessionId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+              if (rs.next()) {
+                return Optional.of(mapResultSetToSession(rs));
+              }
+            }
+            return Optional.empty();
+          } catch (SQLException e) {
+            log.error("Failed to get session by ID", e);
+            return Optional.empty();
+          }
+        });
+  }
+
+  @Override
+  public Optional<Session> touchSession(Long sessionId) {
+    return transaction.executeInTransaction(
+        connection -> {
+          try (PreparedStatement pstmt =
+              connection.prepareStatement(PostgreSQLQueries.Sessions.TOUCH)) {
+            pstmt.setLong(1, sessionTimeoutSeconds);
+            pstmt.setLong(2, sessionId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+              if (rs.next()) {
+                return Optional.of(mapResultSetToSession(rs));
+              }
+            }
+            return Optional.empty();
+          } catch (SQLException e) {
+            throw new DatabaseException("Failed to update session activity", e);
+          }
+        });
+  }
+
+  @Override
+  public Set<Long> touchSessions(Collection<Long> sessionIds) {
+    return transaction.executeInTransaction(
+        connection -> {
+          Set<Long> touched = new HashSet<>();
+          try (PreparedStatement pstmt =
+              connection.prepareStatement(PostgreSQLQueries.Sessions.TOUCH_MANY)) {
+            Array ids = connection.createArrayOf("bigint", sessionIds.toArray());
+            try {
+              pstmt.setLong(1, sessionTimeoutSeconds);
+              pstmt.setArray(2, ids);
+              try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                  touched.add(rs.getLong(1));
+                }
+              }
+            } finally {
+              ids.free();
+            }
+            return touched;
+          } catch (SQLException e) {
+            throw new DatabaseException("Failed to update session activity", e);
+          }
+        });
+  }
+
+  @Override
+  public Optional<Session> getActiveSession(Long userId) {
+    return transaction.executeReadOnlyOnPrimary(
+        connection -> {
+          try (PreparedStatement pstmt =
+              connection.prepareStatement(PostgreSQLQueries.Sessions.GET_ACTIVE)) {
+            pstmt.setLong(1, userId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+              if (rs.next()) {
+                return Optional.of(mapResultSetToSession(rs));
+              }
+            }
+            return Optional.empty();
+          } catch (SQLException e) {
+            log.error("Failed to get active session", e);
+            return Optional.empty();
+          }
+        });
+  }
+
+  @Override
+  public void deleteSession(Long sessionId) {
+    transaction.executeInTransaction(
+        connection -> {
+          try (PreparedStatement pstmt =
+              connection.prepareStatement(PostgreSQLQueries.Sessions.END)) {
+            pstmt.setLong(1, sessionId);
+            int ended = pstmt.executeUpdate();
+            if (ended == 0) {
+              throw new DatabaseException("Session not found: " + sessionId);
+            }
+            return null;
+          } catch (SQLException e) {
+            log.error("Failed to delete session", e);
+            return null;
+          }
+        });
+  }
+
+  /*
+   * Balance operations
+   */
+  @Override
+  public Money getBalance(Long userId) {
+    if (ledgerBalances != null) {
+      return ledgerBalances.getBalance(userId);
+    }
+    return transaction.executeReadOnly(
+        connection -> {
+          try (PreparedStatement pstmt =
+              connection.prepareStatement(PostgreSQLQueries.Balances.GET)) {
+            pstmt.setLong(1, userId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+              if (rs.next()) {
+                return Money.ofMinorUnits(rs.getLong("balance"));
+              }
+              throw new DatabaseException("No balance record found for user: " + userId);
+            }
+          } catch (SQLException e) {
+            throw new DatabaseException("Failed to get balance", e);
+          }
+        });
+  }
+
+  @Override
+  public Balance getBalanceSnapshot(Long userId) {
+    return transaction.executeReadOnlyOnPrimary(
+        connection -> {
+          try (PreparedStatement pstmt =
+              connection.prepareStatement(PostgreSQLQueries.Balances.GET_SNAPSHOT)) {
+            pstmt.setLong(1, userId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+              if (rs.next()) {
+                return Balance.builder()
+                    .userId(userId)
+                    .balance(Money.ofMinorUnits(rs.getLong("balance")))
+                    .version(rs.getLong("version"))
+                    .build();
+              }
+              throw new DatabaseException("No balance record found for user: " + userId);
+            }
+          } catch (SQLException e) {
+            throw new DatabaseException("Failed to get balance", e);
+          }
+        });
+  }
+
+  /** Only while balance caching is enabled, the changes are published by a trigger. */
+  @Override
+  public boolean subscribeBalanceChanges(BalanceChangeListener listener) {
+    if (balanceNotifier == null) {
+      return false;
+    }
+    balanceNotifier.addListener(listener);
+    balanceNotifier.start();
+    return true;
+  }
+
+  /**
+   * Called once a write of this process to the balances ended, committed or not. Its notification
+   * may still be on the way, listeners drop what they hold so the writer reads its own change.
+   */
+  private void balancesWritten(Long... userIds) {
+    if (balanceNotifier != null) {
+      for (Long userId : userIds) {
+        if (userId != null) {
+          balanceNotifier.invalidate(userId);
+        }
+      }
+    }
+  }
+
+  /*
+   * Transaction operations
+   */
+
+  /**
+   * Applies a deposit or withdrawal and writes its ledger entry in a single call to {@code
+   * atm_apply}, the funds check for withdrawals happens atomically in its conditional update.
+   */
+  @Override
+  public TransactionResult createTransaction(Long userId, Money amount, String type) {
+    try {
+      return applyTransaction(userId, amount, type);
+    } finally {
+      balancesWritten(userId);
+    }
+  }
+
+  private TransactionResult applyTransaction(Long userId, Money amount, String type) {
+    if (ledgerBalances != null) {
+      return ledgerBalances.createTransaction(userId, amount, type);
+    }
+    if (ledgerWriter != null) {
+      return awaitGroupCommit(ledgerWriter.submitTransaction(userId, amount, type));
+    }
+
+    Money delta = type.equals("DEPOSIT") ? amount : amount.negate();
+    if (optimistic) {
+      return createTransactionOptimistically(userId, amount, delta, type);
+    }
+
+    return transaction.executeInTransaction(
+        connection -> {
+          try (PreparedStatement pstmt =
+              connection.prepareStatement(PostgreSQLQueries.Functions.APPLY)) {
+            pstmt.setLong(1, userId);
+            pstmt.setLong(2, delta.getMinorUnits());
+            pstmt.setLong(3, amount.getMinorUnits());
+            pstmt.setString(4, type);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+              if (!rs.next()) {
+                throw new DatabaseException("No balance record found for user: " + userId);
+              }
+
+              Money newBalance = Money.ofMinorUnits(rs.getLong("balance"));
+              Long transactionId = rs.getLong("transaction_id");
+              log.info(
+                  "Successfully performed transaction of {} for user {}. Transaction ID: {}",
+                  amount,
+                  userId,
+                  transactionId);
+              return TransactionResult.builder()
+                  .transactionId(transactionId)
+                  .balance(newBalance)
+                  .build();
+            }
+          } catch (SQLException e) {
+            if (PostgreSQLQueries.Functions.INSUFFICIENT_FUNDS_STATE.equals(e.getSQLState())) {
+              throw new InsufficientFundsException(serverMessage(e));
+            }
+            if (PostgreSQLQueries.Functions.BALANCE_NOT_FOUND_STATE.equals(e.getSQLState())) {
+              throw new DatabaseException(serverMessage(e));
+            }
+            log.error("Failed to perform transaction operation", e);
+            throw new DatabaseException("Failed to perform transaction operation", e);
+          }
+        });
+  }
+
+  private TransactionResult createTransactionOptimistically(
+      Long userId, Money amount, Money delta, String type) {
+    return transaction.executeInTransaction(
+        connection -> {
+          try {
+            OptimisticBalances.Snapshot snapshot =
+                OptimisticBalances.read(connection, Collections.singleton(userId)).get(userId);
+            if (snapshot == null) {
+              throw new DatabaseException("No balance record found for user: " + userId);
+            }
+
+            Money newBalance = snapshot.balance.plus(delta);
+            if (newBalance.signum() < 0) {
+              throw new InsufficientFundsException(
+                  "Insufficient funds. Available: " + snapshot.balance + ", Required: " + amount);
+            }
+
+            try (PreparedStatement pstmt =
+                connection.prepareStatement(
+                    PostgreSQLQueries.Transactions.COMPARE_AND_SET_AND_RECORD)) {
+              pstmt.setLong(1, newBalance.getMinorUnits());
+              pstmt.setLong(2, userId);
+              pstmt.setLong(3, snapshot.version);
+              pstmt.setLong(4, amount.getMinorUnits());
+              pstmt.setString(5, type);
+
+              try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                  throw OptimisticBalances.conflict();
+                }
+
+                Long transactionId = rs.getLong("transaction_id");
+                log.info(
+                    "Successfully performed transaction of {} for user {}. Transaction ID: {}",
+                    amount,
+                    userId,
+                    transactionId);
+                return TransactionResult.builder()
+                    .transactionId(transactionId)
+                    .balance(Money.ofMinorUnits(rs.getLong("balance")))
+                    .build();
+              }
+            }
+          } catch (SQLException e) {
+            log.error("Failed to perform transaction operation", e);
+            throw new DatabaseException("Failed to perform transaction operation", e);
+          }
+        });
+  }
+
+  /**
+   * Atomically performs a transfer between two users including balance updates and transaction
+   * record. Locking, the funds check and both updates run server side in {@code atm_transfer} so
+   * the rows stay locked for a single round trip only.
+   */
+  @Override
+  public void performTransfer(Long fromUserId, Long toUserId, Money amount) {
+    try {
+      applyTransfer(fromUserId, toUserId, amount);
+    } finally {
+      balancesWritten(fromUserId, toUserId);
+    }
+  }
+
+  private void applyTransfer(Long fromUserId, Long toUserId, Money amount) {
+    if (ledgerBalances != null) {
+      ledgerBalances.performTransfer(fromUserId, toUserId, amount);
+      return;
+    }
+    if (ledgerWriter != null) {
+      awaitGroupCommit(ledgerWriter.submitTransfer(fromUserId, toUserId, amount));
+      return;
+    }
+    if (optimistic) {
+      performTransferOptimistically(fromUserId, toUserId, amount);
+      return;
+    }
+
+    transaction.executeInTransaction(
+        connection -> {
+          try (PreparedStatement pstmt =
+              connection.prepareStatement(PostgreSQLQueries.Functions.TRANSFER)) {
+            pstmt.setLong(1, fromUserId);
+            pstmt.setLong(2, toUserId);
+            pstmt.setLong(3, amount.getMinorUnits());
+
+            Long transactionId;
+            try (ResultSet rs = pstmt.executeQuery()) {
+              if (!rs.next()) {
+                throw new DatabaseException("Failed to create transaction record");
+              }
+              transactionId = rs.getLong(1);
+            }
+
+            log.info(
+                "Successfully transferred {} from user {} to user {}. Transaction ID: {}",
+                amount,
+                fromUserId,
+                toUserId,
+                transactionId);
+            return transactionId;
+          } catch (SQLException e) {
+            if (PostgreSQLQueries.Functions.INSUFFICIENT_FUNDS_STATE.equals(e.getSQLState())) {
+              throw new InsufficientFundsException(serverMessage(e));
+            }
+            if (PostgreSQLQueries.Functions.BALANCE_NOT_FOUND_STATE.equals(e.getSQLState())) {
+              throw new DatabaseException(serverMessage(e));
+            }
+            log.error("Failed to perform transfer operation", e);
+            throw new DatabaseException("Failed to perform transfer operation", e);
+          }
+        });
+  }
+
+  private void performTransferOptimistically(Long fromUserId, Long toUserId, Money amount) {
+    transaction.executeInTransaction(
+        connection -> {
+          try {
+            Map<Long, OptimisticBalances.Snapshot> balances =
+                OptimisticBalances.read(connection, Arrays.asList(fromUserId, toUserId));
+            OptimisticBalances.Snapshot source = balances.get(fromUserId);
+            if (source == null) {
+              throw new DatabaseException("No balance record found for source user: " + fromUserId);
+            }
+            if (!balances.containsKey(toUserId)) {
+              throw new DatabaseException("No balance record found for target user: " + toUserId);
+            }
+            if (source.balance.isLessThan(amount)) {
+              throw new InsufficientFundsException(
+                  "Insufficient funds. Available: " + source.balance + ", Required: " + amount);
+            }
+
+            Map<Long, Money> deltas = new HashMap<>();
+            deltas.merge(fromUserId, amount.negate(), Money::plus);
+            deltas.merge(toUserId, amount, Money::plus);
+            OptimisticBalances.compareAndSet(connection, balances, deltas);
+
+            Long transactionId;
+            try (PreparedStatement insert =
+                connection.prepareStatement(
+                    PostgreSQLQueries.Transactions.CREATE, Statement.RETURN_GENERATED_KEYS)) {
+              insert.setLong(1, fromUserId);
+              insert.setLong(2, toUserId);
+              insert.setLong(3, amount.getMinorUnits());
+              insert.setString(4, "TRANSFER");
+              insert.executeUpdate();
+              try (ResultSet rs = insert.getGeneratedKeys()) {
+                if (!rs.next()) {
+                  throw new DatabaseException("Failed to create transaction record");
+                }
+                transactionId = rs.getLong(1);
+              }
+            }
+
+            log.info(
+                "Successfully transferred {} from user {} to user {}. Transaction ID: {}",
+                amount,
+                fromUserId,
+                toUserId,
+                transactionId);
+            return transactionId;
+          } catch (SQLException e) {
+            log.error("Failed to perform transfer operation", e);
+            throw new DatabaseException("Failed to perform transfer operation", e);
+          }
+        });
+  }
+
+  @Override
+  public PayoutResult performBatchTransfer(Long fromUserId, List<PayoutItem> items) {
+    try {
+      return applyBatchTransfer(fromUserId, items);
+    } finally {
+      balancesWritten(fromUserId);
+      items.forEach(item -> balancesWritten(item.getUserId()));
+    }
+  }
+
+  private PayoutResult applyBatchTransfer(Long fromUserId, List<PayoutItem> items) {
+    if (ledgerBalances != null) {
+      return ledgerBalances.performBatchTransfer(fromUserId, items);
+    }
+    return transaction.executeInTransaction(
+        connection -> {
+          try {
+            Set<Long> userIds = new HashSet<>();
+            userIds.add(fromUserId);
+            Money total = Money.ZERO;
+            for (PayoutItem item : items) {
+              userIds.add(item.getUserId());
+              total = total.plus(item.getAmount());
+            }
+
+            Map<Long, OptimisticBalances.Snapshot> snapshots = null;
+            Map<Long, Money> balances;
+            if (optimistic) {
+              snapshots = OptimisticBalances.read(connection, userIds);
+              balances = new HashMap<>();
+              for (Map.Entry<Long, OptimisticBalances.Snapshot> entry : snapshots.entrySet()) {
+                balances.put(entry.getKey(), entry.getValue().balance);
+              }
+            } else {
+              balances = lockForPayout(connection, fromUserId, userIds, total);
+            }
+
+            Money sourceBalance = balances.get(fromUserId);
+            if (sourceBalance == null) {
+              throw new DatabaseException("No balance record found for source user: " + fromUserId);
+            }
+            for (Long userId : userIds) {
+              if (!balances.containsKey(userId)) {
+                throw new DatabaseException("No balance record found for target user: " + userId);
+              }
+            }
+            if (sourceBalance.isLessThan(total)) {
+              throw new InsufficientFundsException(
+                  "Insufficient funds. Available: " + sourceBalance + ", Required: " + total);
+            }
+
+            Long[] recipientIds = new Long[items.size()];
+            Long[] amounts = new Long[items.size()];
+            for (int i = 0; i < items.size(); i++) {
+              recipientIds[i] = items.get(i).getUserId();
+              amounts[i] = items.get(i).getAmount().getMinorUnits();
+            }
+
+            // Single debit for the source followed by all credits, in one statement
+            Long[] deltaIds = new Long[items.size() + 1];
+            Long[] deltas = new Long[items.size() + 1];
+            deltaIds[0] = fromUserId;
+            deltas[0] = total.negate().getMinorUnits();
+            System.arraycopy(recipientIds, 0, deltaIds, 1, items.size());
+            System.arraycopy(amounts, 0, deltas, 1, items.size());
+
+            if (optimistic) {
+              Map<Long, Money> summed = new HashMap<>();
+              for (int i = 0; i < deltaIds.length; i++) {
+                summed.merge(deltaIds[i], Money.ofMinorUnits(deltas[i]), Money::plus);
+              }
+              OptimisticBalances.compareAndSet(connection, snapshots, summed);
+            } else {
+              try (PreparedStatement update =
+                  connection.prepareStatement(PostgreSQLQueries.Balances.APPLY_DELTAS)) {
+                update.setArray(1, connection.createArrayOf("bigint", deltaIds));
+                update.setArray(2, connection.createArrayOf("bigint", deltas));
+                int updated = update.executeUpdate();
+                if (updated != userIds.size()) {
+                  throw new DatabaseException("Failed to update all balances");
+                }
+              }
+            }
+
+            try (PreparedStatement insert =
+                connection.prepareStatement(PostgreSQLQueries.Transactions.CREATE_TRANSFERS)) {
+              insert.setLong(1, fromUserId);
+              insert.setArray(2, connection.createArrayOf("bigint", recipientIds));
+              insert.setArray(3, connection.createArrayOf("bigint", amounts));
+              insert.executeUpdate();
+            }
+
+            log.info(
+                "Successfully paid {} to {} recipients from user {}",
+                total,
+                items.size(),
+                fromUserId);
+            return PayoutResult.builder()
+                .recipients(items.size())
+                .totalAmount(total)
+                .balance(sourceBalance.minus(total))
+                .build();
+          } catch (SQLException e) {
+            log.error("Failed to perform batch transfer", e);
+            throw new DatabaseException("Failed to perform batch transfer", e);
+          }
+        });
+  }
+
+  /**
+   * Locks the payout's balances in ascending user id order. A hot source may hold part of its funds
+   * in balance slots, when its balances row alone falls short they are drawn into it before any
+   * account above the source is locked, keeping the order {@code atm_debit} locks in.
+   */
+  private Map<Long, Money> lockForPayout(
+      Connection connection, Long fromUserId, Set<Long> userIds, Money total) throws SQLException {
+    TreeSet<Long> ordered = new TreeSet<>(userIds);
+    Map<Long, Money> balances =
+        BalanceLocks.lockInOrder(connection, ordered.headSet(fromUserId, true));
+    Money sourceBalance = balances.get(fromUserId);
+    if (sourceBalance != null && sourceBalance.isLessThan(total)) {
+      try (PreparedStatement pstmt =
+          connection.prepareStatement(PostgreSQLQueries.Functions.GATHER_SLOTS)) {
+        pstmt.setLong(1, fromUserId);
+        try (ResultSet rs = pstmt.executeQuery()) {
+          rs.next();
+          balances.put(fromUserId, Money.ofMinorUnits(rs.getLong(1)));
+        }
+      }
+    }
+    SortedSet<Long> above = ordered.tailSet(fromUserId, false);
+    if (!above.isEmpty()) {
+      balances.putAll(BalanceLocks.lockInOrder(connection, above));
+    }
+    return balances;
+  }
+
+  /**
+   * Spreads future credits to the account over {@code slots} extra balance rows, 0 makes it a plain
+   * account again. Funds held by removed slots move to its balances row.
+   */
+  @Override
+  public void setBalanceSlots(Long userId, int slots) {
+    if (ledgerBalances != null) {
+      throw new DatabaseException("Hot accounts are not supported by the ledger balance store");
+    }
+    // Their debits only check the balances row, funds left in slots could not be spent. Going back
+    // to 0 slots is still allowed, it folds the slots into the row
+    if (slots > 0 && (optimistic || ledgerWriter != null)) {
+      throw new DatabaseException(
+          "Hot accounts are only supported by the pessimistic concurrency mode without group"
+              + " commit");
+    }
+    try {
+      transaction.executeInTransaction(
+          connection -> {
+            try (PreparedStatement pstmt =
+                connection.prepareStatement(PostgreSQLQueries.Functions.SET_SLOTS)) {
+              pstmt.setLong(1, userId);
+              pstmt.setInt(2, slots);
+              pstmt.execute();
+              log.info("Spread the balance of user {} over {} slots", userId, slots);
+              return null;
+            } catch (SQLException e) {
+              if (PostgreSQLQueries.Functions.BALANCE_NOT_FOUND_STATE.equals(e.getSQLState())) {
+                throw new DatabaseException(serverMessage(e));
+              }
+              throw new DatabaseException("Failed to set balance slots", e);
+            }
+          });
+    } finally {
+      balancesWritten(userId);
+    }
+  }
+
+  /**
+   * Reads one keyset page of the user's history. With auto-commit off and a fetch size set, the
+   * driver reads the result through a server-side cursor, {@link #HISTORY_FETCH_SIZE} rows at a
+   * time, so large pages are never buffered in full. Rows reach the consumer as they are read, so
+   * the read is not replayed on a serialization failure.
+   */
+  @Override
+  public void streamTransactionHistory(
+      Long userId, Long beforeId, int limit, Consumer<Transaction> consumer) {
+    long cursor = beforeId != null ? beforeId : Long.MAX_VALUE;
+
+    transaction.executeReplicaSafeOnce(
+        connection -> {
+          try {
+            // The driver only reads through a cursor inside a transaction
+            connection.setAutoCommit(false);
+          } catch (SQLException e) {
+            throw new DatabaseException("Failed to read transaction history", e);
+          }
+
+          try (PreparedStatement pstmt =
+              connection.prepareStatement(
+                  PostgreSQLQueries.Transactions.HISTORY,
+                  ResultSet.TYPE_FORWARD_ONLY,
+                  ResultSet.CONCUR_READ_ONLY)) {
+            pstmt.setFetchSize(HISTORY_FETCH_SIZE);
+            pstmt.setLong(1, userId);
+            pstmt.setLong(2, cursor);
+            pstmt.setInt(3, limit);
+            pstmt.setLong(4, userId);
+            pstmt.setLong(5, cursor);
+            pstmt.setInt(6, limit);
+            pstmt.setInt(7, limit);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+              while (rs.next()) {
+                consumer.accept(mapResultSetToTransaction(rs));
+              }
+            }
+            return null;
+          } catch (SQLException e) {
+            log.error("Failed to read transaction history", e);
+            throw new DatabaseException("Failed to read transaction history", e);
+          }
+        });
+  }
+
+  /**
+   * Streams the matching rows with {@code COPY ... TO STDOUT} straight into the export file, the
+   * driver hands the server's output to the buffered channel as it arrives so memory use stays
+   * constant however large the range is.
+   */
+  @Override
+  public ExportResult exportTransactions(TransactionExport export) {
+    String sql =
+        String.format(
+            export.getFormat() == TransactionExport.Format.BINARY
+                ? PostgreSQLQueries.Exports.COPY_BINARY
+                : PostgreSQLQueries.Exports.COPY_CSV,
+            exportQuery(export));
+
+    return transaction.executeReplicaSafe(
+        connection -> {
+          long started = System.nanoTime();
+          try (FileChannel channel =
+                  FileChannel.open(
+                      export.getFile(),
+                      StandardOpenOption.CREATE,
+                      StandardOpenOption.WRITE,
+                      StandardOpenOption.TRUNCATE_EXISTING);
+              OutputStream out =
+                  new BufferedOutputStream(Channels.newOutputStream(channel), EXPORT_BUFFER_SIZE)) {
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            long rows = copyManager.copyOut(sql, out);
+            out.flush();
+
+            ExportResult result =
+                ExportResult.builder()
+                    .rows(rows)
+                    .bytes(channel.size())
+                    .elapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started))
+                    .build();
+            log.info(
+                "Exported {} transactions to {} at {} rows/s",
+                rows,
+                export.getFile(),
+                result.getRowsPerSecond());
+            return result;
+          } catch (SQLException | IOException e) {
+            log.error("Failed to export transactions", e);
+            throw new DatabaseException("Failed to export transactions", e);
+          }
+        });
+  }
+
+  private String exportQuery(TransactionExport export) {
+    StringBuilder range = new StringBuilder();
+    if (export.getFrom() != null) {
+      range.append(String.format(PostgreSQLQueries.Exports.CREATED_FROM, export.getFrom()));
+    }
+    if (export.getTo() != null) {
+      range.append(String.format(PostgreSQLQueries.Exports.CREATED_BEFORE, export.getTo()));
+    }
+
+    String select = PostgreSQLQueries.Exports.SELECT_TRANSACTIONS + range;
+    if (export.getUserId() == null) {
+      return select;
+    }
+    long userId = export.getUserId();
+    return select
+        + String.format(PostgreSQLQueries.Exports.OUTGOING, userId)
+        + PostgreSQLQueries.Exports.UNION_ALL
+        + select
+        + String.format(PostgreSQLQueries.Exports.INCOMING, userId);
+  }
+
+  @Override
+  public List<DailyTotal> getDailyTotals(Long userId, LocalDate from, LocalDate to) {
+    return transaction.executeReadOnly(
+        connection -> {
+          try (PreparedStatement pstmt =
+              connection.prepareStatement(PostgreSQLQueries.DailyTotals.GET)) {
+            pstmt.setLong(1, userId);
+            pstmt.setObject(2, from);
+            pstmt.setObject(3, to);
+
+            List<DailyTotal> totals = new ArrayList<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+              while (rs.next()) {
+                totals.add(
+                    DailyTotal.builder()
+                        .day(rs.getObject("day", LocalDate.class))
+                        .type(DailyTotal.Type.valueOf(rs.getString("type")))
+                        .count(rs.getLong("count"))
+                        .amount(Money.ofMinorUnits(rs.getLong("amount")))
+                        .build());
+              }
+            }
+            return totals;
+          } catch (SQLException e) {
+            log.error("Failed to read daily totals for user: {}", userId, e);
+            throw new DatabaseException("Failed to read daily totals", e);
+          }
+        });
+  }
+
+  /*
+   * Utility methods
+   */
+  private <T> T awaitGroupCommit(CompletableFuture<T> future) {
+    try {
+      return future.get(GROUP_COMMIT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new DatabaseException("Group commit failed", e.getCause());
+    } catch (TimeoutException e) {
+      // The operation may still be committed by the writer, its outcome is unknown to the caller
+      throw new DatabaseException("Group commit timed out", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DatabaseException("Interrupted while waiting for group commit", e);
+    }
+  }
+
+  private String serverMessage(SQLException e) {
+    if (e instanceof PSQLException && ((PSQLException) e).getServerErrorMessage() != null) {
+      return ((PSQLException) e).getServerErrorMessage().getMessage();
+    }
+    return e.getMessage();
+  }
+
+  private User mapResultSetToUser(ResultSet rs) throws SQLException {
+    return User.builder()
+        .id(rs.getLong("id"))
+        .username(rs.getString("username"))
+        .passwordHash(rs.getString("password_hash"))
+        .createdAt(getLocalDateTime(rs, "created_at"))
+        .lastLogin(getLocalDateTime(rs, "last_login"))
+        .build();
+  }
+
+  private Session mapResultSetToSession(ResultSet rs) throws SQLException {
+    return Session.builder()
+        .id(rs.getLong("id"))
+        .userId(rs.getLong("user_id"))
+        .createdAt(getLocalDateTime(rs, "created_at"))
+        .lastActivityAt(getLocalDateTime(rs, "last_activity_at"))
+        .expiresAt(getLocalDateTime(rs, "expires_at"))
+        .build();
+  }
+
+  private Transaction mapResultSetToTransaction(ResultSet rs) throws SQLException {
+    return Transaction.builder()
+        .id(rs.getLong("id"))
+        .fromUserId(rs.getLong("from_user_id"))
+        .toUserId(rs.getLong("to_user_id"))
+        .amount(Money.ofMinorUnits(rs.getLong("amount")))
+        .type(Transaction.TransactionType.valueOf(rs.getString("type")))
+        .createdAt(getLocalDateTime(rs, "created_at"))
+        .build();
+  }
+
+  private LocalDateTime getLocalDateTime(ResultSet rs, String columnName) throws SQLException {
+    Timestamp timestamp = rs.getTimestamp(columnName);
+    return timestamp != null ? timestamp.toLocalDateTime() : null;
+  }
+
+  @Override
+  public void close() {
+    if (slotConsolidator != null) {
+      slotConsolidator.close();
+    }
+    if (ledgerSnapshotter != null) {
+      ledgerSnapshotter.close();
+    }
+    if (balanceNotifier != null) {
+      balanceNotifier.close();
+    }
+    if (sessionSweeper != null) {
+      sessionSweeper.close();
+    }
+    if (partitionMaintainer != null) {
+      partitionMaintainer.close();
+    }
+    if (ledgerWriter != null) {
+      ledgerWriter.close();
+    }
+    if (replicaConnection != null) {
+      replicaConnection.close();
+    }
+    readOnlyConnection.close();
+    log.info(
+        "Closing database, {} transactions retried, {} gave up after retrying",
+        transaction.getRetries(),
+        transaction.getRetriesExhausted());
+    connection.close();
+  }
+}
@@ -1,31 +1,253 @@
 package com.atm.database;
 
 import com.atm.exception.DatabaseException;
+import com.atm.exception.InsufficientFundsException;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Runs units of work in a database transaction. Units that fail with a serialization failure
+ * (40001) or a deadlock (40P01) are rolled back and replayed on a fresh connection with bounded
+ * exponential backoff and full jitter, so they must not have effects outside the database. Units
+ * that do use the {@code Once} variants.
+ */
 @Slf4j
 public class PostgresTransaction {
+  static final String SERIALIZATION_FAILURE = "40001";
+  private static final String DEADLOCK_DETECTED = "40P01";
+
+  // How long a replica lag measurement is trusted before it is taken again
+  private static final long REPLICA_CHECK_INTERVAL_MILLIS = 500;
+
+  // How long an unreachable replica is left alone before it is probed again
+  private static final long REPLICA_RETRY_INTERVAL_MILLIS = 5000;
+
   private final PostgresConnection postgresConnection;
+  private final PostgresConnection readOnlyConnection;
+  private final PostgresConnection replicaConnection;
+  private final long replicaMaxLagMillis;
+  private final int retryMaxAttempts;
+  private final long retryBaseBackoffMillis;
+  private final long retryMaxBackoffMillis;
+  private final AtomicBoolean replicaCheckRunning = new AtomicBoolean();
+  private final AtomicLong retries = new AtomicLong();
+  private final AtomicLong retriesExhausted = new AtomicLong();
+  private volatile long replicaNextCheckAt;
+  private volatile boolean replicaUsable;
 
   public PostgresTransaction(PostgresConnection postgresConnection) {
+    this(postgresConnection, null, DatabaseConfig.builder().build());
+  }
+
+  public PostgresTransaction(
+      PostgresConnection postgresConnection,
+      PostgresConnection replicaConnection,
+      DatabaseConfig config) {
+    this(postgresConnection, null, replicaConnection, config);
+  }
+
+  /**
+   * @param readOnlyConnection read-only pool against the primary for {@link #executeReadOnly}, the
+   *     primary pool is used when null
+   * @param replicaConnection read replica for replica-safe reads, disabled when null
+   */
+  public PostgresTransaction(
+      PostgresConnection postgresConnection,
+      PostgresConnection readOnlyConnection,
+      PostgresConnection replicaConnection,
+      DatabaseConfig config) {
     this.postgresConnection = postgresConnection;
+    this.readOnlyConnection = readOnlyConnection;
+    this.replicaConnection = replicaConnection;
+    this.replicaMaxLagMillis = config.getReplicaMaxLagMillis();
+    this.retryMaxAttempts = Math.max(1, config.getRetryMaxAttempts());
+    this.retryBaseBackoffMillis = config.getRetryBaseBackoffMillis();
+    this.retryMaxBackoffMillis = config.getRetryMaxBackoffMillis();
   }
 
+  /** Runs the unit of work on the primary, retrying it on serialization failures and deadlocks. */
   public <T> T executeInTransaction(Function<Connection, T> operation) {
-    try (Connection conn = postgresConnection.getConnection()) {
+    return withRetry(() -> executeInTransactionOnce(operation));
+  }
+
+  /** Runs the unit of work on the primary exactly once, for units with external side effects. */
+  public <T> T executeInTransactionOnce(Function<Connection, T> operation) {
+    Connection conn;
+    try {
+      conn = postgresConnection.getConnection();
+    } catch (SQLException e) {
+      handlePostgresException(e);
+      throw new DatabaseException("Failed to execute transaction", e);
+    }
+    return execute(conn, operation);
+  }
+
+  /**
+   * Runs a read that tolerates data up to the configured lag old. It goes to the replica while the
+   * replica is reachable and within the lag bound, and to the primary otherwise or when no replica
+   * is configured. The operation must not write. A standby cancels reads that conflict with replay
+   * with 40001, those are retried like on the primary.
+   */
+  public <T> T executeReplicaSafe(Function<Connection, T> operation) {
+    return withRetry(() -> executeReplicaSafeOnce(operation));
+  }
+
+  /** Same routing as {@link #executeReplicaSafe}, without retries. */
+  public <T> T executeReplicaSafeOnce(Function<Connection, T> operation) {
+    if (replicaConnection == null || !isReplicaUsable()) {
+      return executeInTransactionOnce(operation);
+    }
+
+    Connection conn;
+    try {
+      conn = replicaConnection.getConnection();
+    } catch (SQLException e) {
+      markReplicaUnusable(e);
+      return executeInTransactionOnce(operation);
+    }
+    return execute(conn, operation);
+  }
+
+  /**
+   * Runs a single-statement, replica-safe read on an auto-commit, read-only connection: no explicit
+   * transaction, so no commit round trip. It is routed like {@link #executeReplicaSafe} but falls
+   * back to the primary's read-only pool. Reads spanning several statements that must see one
+   * snapshot, or that stream through a cursor, use {@link #executeReplicaSafe} instead.
+   */
+  public <T> T executeReadOnly(Function<Connection, T> operation) {
+    return withRetry(
+        () -> {
+          Connection conn;
+          try {
+            conn = getReadOnlyConnection();
+          } catch (SQLException e) {
+            handlePostgresException(e);
+            throw new DatabaseException("Failed to execute read", e);
+          }
+          return execute(conn, operation);
+        });
+  }
+
+  /**
+   * Runs a single-statement read like {@link #executeReadOnly}, but always on the primary, for
+   * reads that must not be older than changes already seen elsewhere.
+   */
+  public <T> T executeReadOnlyOnPrimary(Function<Connection, T> operation) {
+    return withRetry(
+        () -> {
+          Connection conn;
+          try {
+            conn =
+                readOnlyConnection != null
+                    ? readOnlyConnection.getConnection()
+                    : postgresConnection.getConnection();
+          } catch (SQLException e) {
+            handlePostgresException(e);
+            throw new DatabaseException("Failed to execute read", e);
+          }
+          return execute(conn, operation);
+        });
+  }
+
+  private Connection getReadOnlyConnection() throws SQLException {
+    if (replicaConnection != null && isReplicaUsable()) {
+      try {
+        return replicaConnection.getConnection();
+      } catch (SQLException e) {
+        markReplicaUnusable(e);
+      }
+    }
+    return readOnlyConnection != null
+        ? readOnlyConnection.getConnection()
+        : postgresConnection.getConnection();
+  }
+
+  /** Number of replays after a serialization failure or deadlock since startup. */
+  public long getRetries() {
+    return retries.get();
+  }
+
+  /** Number of units of work that still failed after using their whole retry budget. */
+  public long getRetriesExhausted() {
+    return retriesExhausted.get();
+  }
+
+  private <T> T withRetry(Supplier<T> unitOfWork) {
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return unitOfWork.get();
+      } catch (DatabaseException e) {
+        String sqlState = retryableSqlState(e);
+        if (sqlState == null) {
+          throw e;
+        }
+        if (attempt >= retryMaxAttempts) {
+          retriesExhausted.incrementAndGet();
+          log.warn("Giving up after {} attempts on SQLSTATE {}", attempt, sqlState);
+          throw e;
+        }
+
+        retries.incrementAndGet();
+        long backoffMillis = backoffMillis(attempt);
+        log.debug(
+            "Retrying attempt {} after SQLSTATE {} in {} ms", attempt + 1, sqlState, backoffMillis);
+        try {
+          Thread.sleep(backoffMillis);
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          throw e;
+        }
+      }
+    }
+  }
+
+  // Full jitter: uniformly random in [0, min(max, base * 2^(attempt - 1))]
+  private long backoffMillis(int attempt) {
+    long ceiling = retryBaseBackoffMillis << Math.min(attempt - 1, 20);
+    ceiling = Math.min(retryMaxBackoffMillis, ceiling);
+    return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+  }
+
+  private String retryableSqlState(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof SQLException) {
+        String sqlState = ((SQLException) cause).getSQLState();
+        if (SERIALIZATION_FAILURE.equals(sqlState) || DEADLOCK_DETECTED.equals(sqlState)) {
+          return sqlState;
+        }
+      }
+    }
+    return null;
+  }
+
+  private <T> T execute(Connection connection, Function<Connection, T> operation) {
+    try (Connection conn = connection) {
       try {
         T result = operation.apply(conn);
-        conn.commit();
+        // The operation may have opened a transaction on an auto-commit connection
+        if (!conn.getAutoCommit()) {
+          conn.commit();
+        }
         return result;
       } catch (Exception e) {
         try {
-          conn.rollback();
+          if (!conn.getAutoCommit()) {
+            conn.rollback();
+          }
         } catch (SQLException rollbackEx) {
           log.error("Failed to rollback transaction", rollbackEx);
         }
+        if (e instanceof InsufficientFundsException) {
+          throw (InsufficientFundsException) e;
+        }
         if (e instanceof SQLException) {
           handlePostgresException((SQLException) e);
         }
@@ -37,6 +259,43 @@ public class PostgresTransaction {
     }
   }
 
+  private boolean isReplicaUsable() {
+    if (System.currentTimeMillis() < replicaNextCheckAt) {
+      return replicaUsable;
+    }
+
+    // One caller measures, the others keep using the previous verdict instead of waiting
+    if (replicaCheckRunning.compareAndSet(false, true)) {
+      try {
+        long lagMillis = measureReplicaLag();
+        replicaUsable = lagMillis <= replicaMaxLagMillis;
+        if (!replicaUsable) {
+          log.warn("Replica is {} ms behind, routing reads to the primary", lagMillis);
+        }
+        replicaNextCheckAt = System.currentTimeMillis() + REPLICA_CHECK_INTERVAL_MILLIS;
+      } catch (SQLException e) {
+        markReplicaUnusable(e);
+      } finally {
+        replicaCheckRunning.set(false);
+      }
+    }
+    return replicaUsable;
+  }
+
+  private long measureReplicaLag() throws SQLException {
+    try (Connection conn = replicaConnection.getConnection();
+        Statement stmt = conn.createStatement();
+        ResultSet rs = stmt.executeQuery(PostgreSQLQueries.Replication.LAG_MILLIS)) {
+      return rs.next() ? rs.getLong(1) : Long.MAX_VALUE;
+    }
+  }
+
+  private void markReplicaUnusable(SQLException e) {
+    log.warn("Replica unavailable, routing reads to the primary", e);
+    replicaUsable = false;
+    replicaNextCheckAt = System.currentTimeMillis() + REPLICA_RETRY_INTERVAL_MILLIS;
+  }
+
   private void handlePostgresException(SQLException e) {
     String sqlState = e.getSQLState();
     switch (sqlState) {
@@ -44,10 +303,10 @@ public class PostgresTransaction {
         throw new DatabaseException("Duplicate entry: " + e.getMessage());
       case "23503":
         throw new DatabaseException("Referenced record not found: " + e.getMessage());
-      case "40001":
-        throw new DatabaseException("Transaction conflict, please retry: " + e.getMessage());
-      case "40P01":
-        throw new DatabaseException("Deadlock detected, please retry: " + e.getMessage());
+      case SERIALIZATION_FAILURE:
+        throw new DatabaseException("Transaction conflict, please retry: " + e.getMessage(), e);
+      case DEADLOCK_DETECTED:
+        throw new DatabaseException("Deadlock detected, please retry: " + e.getMessage(), e);
       default:
         log.error("PostgreSQL error: {} - {}", sqlState, e.getMessage());
     }
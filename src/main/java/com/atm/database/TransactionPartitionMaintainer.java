@@ -0,0 +1,294 @@
+package com.atm.database;
+
+import com.atm.exception.DatabaseException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the monthly partitions of the transactions table in shape. On every run it:
+ *
+ * <ul>
+ *   <li>pre-creates the partitions for the current month and the next {@code premakeMonths}, moving
+ *       rows the default partition caught for them into the new partition
+ *   <li>switches partitions of past months from a b-tree to a BRIN index on created_at
+ *   <li>detaches partitions older than {@code retentionMonths}, leaving them as archive tables
+ * </ul>
+ *
+ * Months are UTC calendar months. Every step is idempotent so several ATM processes can run it.
+ */
+@Slf4j
+public class TransactionPartitionMaintainer implements AutoCloseable {
+  private static final String PARTITION_PREFIX = "transactions_p";
+  private static final Pattern PARTITION_NAME = Pattern.compile("transactions_p(\\d{6})");
+  private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+  private static final String LOCK_NOT_AVAILABLE = "55P03";
+
+  private final PostgresTransaction transaction;
+  private final int premakeMonths;
+  private final int retentionMonths;
+  private ScheduledExecutorService scheduler;
+
+  public TransactionPartitionMaintainer(
+      PostgresTransaction transaction, int premakeMonths, int retentionMonths) {
+    this.transaction = transaction;
+    this.premakeMonths = premakeMonths;
+    this.retentionMonths = retentionMonths;
+  }
+
+  /**
+   * Runs maintenance now and then every {@code intervalMinutes} on a daemon thread. Failed runs are
+   * logged and retried on the next one, the partitions inserts need right away are created by
+   * database initialization.
+   */
+  public void start(long intervalMinutes) {
+    runMaintenanceSafely();
+    scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "transaction-partition-maintainer");
+              thread.setDaemon(true);
+              return thread;
+            });
+    scheduler.scheduleWithFixedDelay(
+        this::runMaintenanceSafely, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+  }
+
+  /** Returns false for deployments whose transactions table predates partitioning. */
+  public boolean isPartitioned() {
+    return transaction.executeInTransaction(
+        connection -> {
+          try (Statement stmt = connection.createStatement();
+              ResultSet rs = stmt.executeQuery(PostgreSQLQueries.Partitions.IS_PARTITIONED)) {
+            return rs.next() && rs.getBoolean(1);
+          } catch (SQLException e) {
+            throw new DatabaseException("Failed to inspect transactions table", e);
+          }
+        });
+  }
+
+  public void runMaintenance() {
+    YearMonth current = YearMonth.now(ZoneOffset.UTC);
+
+    for (String ddl : createDefaultStatements()) {
+      execute(ddl);
+    }
+    Set<String> existing = new HashSet<>(listPartitions());
+    for (int i = 0; i <= premakeMonths; i++) {
+      YearMonth month = current.plusMonths(i);
+      if (!existing.contains(partitionName(month))
+          && defaultHoldsMonth(month)
+          && !moveFromDefault(month)) {
+        continue;
+      }
+      for (String ddl : createMonthStatements(month)) {
+        execute(ddl);
+      }
+    }
+
+    for (String partition : listPartitions()) {
+      Matcher matcher = PARTITION_NAME.matcher(partition);
+      if (!matcher.matches()) {
+        continue;
+      }
+      YearMonth month = YearMonth.parse(matcher.group(1), SUFFIX);
+
+      if (retentionMonths > 0 && month.isBefore(current.minusMonths(retentionMonths))) {
+        if (detach(partition)) {
+          log.info("Detached transaction partition {} past retention", partition);
+        }
+      } else if (month.isBefore(current)) {
+        execute(String.format(PostgreSQLQueries.Partitions.CREATE_BRIN_INDEX, partition));
+        execute(String.format(PostgreSQLQueries.Partitions.DROP_BTREE_INDEX, partition));
+      }
+    }
+    log.info("Transaction partition maintenance completed");
+  }
+
+  private void runMaintenanceSafely() {
+    try {
+      runMaintenance();
+    } catch (Exception e) {
+      log.error("Transaction partition maintenance failed", e);
+    }
+  }
+
+  private boolean defaultHoldsMonth(YearMonth month) {
+    return transaction.executeInTransaction(
+        connection -> {
+          try (Statement stmt = connection.createStatement();
+              ResultSet rs =
+                  stmt.executeQuery(
+                      String.format(
+                          PostgreSQLQueries.Partitions.DEFAULT_HOLDS_MONTH,
+                          lowerBound(month),
+                          upperBound(month)))) {
+            return rs.next() && rs.getBoolean(1);
+          } catch (SQLException e) {
+            throw new DatabaseException("Failed to inspect the default transaction partition", e);
+          }
+        });
+  }
+
+  /**
+   * Creates the partition of a month the default partition caught rows for and moves them into it.
+   * Returns false when a table lock was busy, nothing is moved and the month is left for the next
+   * run.
+   */
+  private boolean moveFromDefault(YearMonth month) {
+    String partition = partitionName(month);
+    log.warn(
+        "The default transaction partition holds rows of {}, moving them to {}", month, partition);
+    try {
+      long moved =
+          transaction.executeInTransaction(
+              connection -> {
+                try (Statement stmt = connection.createStatement()) {
+                  stmt.execute(PostgreSQLQueries.Partitions.LOCK_TIMEOUT);
+                  stmt.execute(
+                      String.format(PostgreSQLQueries.Partitions.CREATE_MONTH_TABLE, partition));
+                  long rows =
+                      stmt.executeUpdate(
+                          String.format(
+                              PostgreSQLQueries.Partitions.MOVE_MONTH_FROM_DEFAULT,
+                              partition,
+                              lowerBound(month),
+                              upperBound(month)));
+                  stmt.execute(
+                      String.format(
+                          PostgreSQLQueries.Partitions.ATTACH_MONTH,
+                          partition,
+                          lowerBound(month),
+                          upperBound(month)));
+                  return rows;
+                } catch (SQLException e) {
+                  throw new DatabaseException(
+                      "Failed to move " + month + " out of the default transaction partition", e);
+                }
+              });
+      log.info("Moved {} rows of {} to transaction partition {}", moved, month, partition);
+      return true;
+    } catch (DatabaseException e) {
+      if (!isLockNotAvailable(e)) {
+        throw e;
+      }
+      log.warn(
+          "transactions is busy, moving {} out of the default partition on the next run", month);
+      return false;
+    }
+  }
+
+  /** Returns false when the table lock was busy, the partition is left for the next run. */
+  private boolean detach(String partition) {
+    try {
+      transaction.executeInTransaction(
+          connection -> {
+            try (Statement stmt = connection.createStatement()) {
+              stmt.execute(PostgreSQLQueries.Partitions.LOCK_TIMEOUT);
+              stmt.execute(String.format(PostgreSQLQueries.Partitions.DETACH, partition));
+              return null;
+            } catch (SQLException e) {
+              throw new DatabaseException("Failed to detach transaction partition " + partition, e);
+            }
+          });
+      return true;
+    } catch (DatabaseException e) {
+      if (!isLockNotAvailable(e)) {
+        throw e;
+      }
+      log.warn("transactions is busy, detaching partition {} on the next run", partition);
+      return false;
+    }
+  }
+
+  private boolean isLockNotAvailable(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof SQLException
+          && LOCK_NOT_AVAILABLE.equals(((SQLException) cause).getSQLState())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** DDL of the default partition and its index, also run by database initialization. */
+  static String[] createDefaultStatements() {
+    return new String[] {
+      PostgreSQLQueries.Partitions.CREATE_DEFAULT,
+      String.format(PostgreSQLQueries.Partitions.CREATE_BTREE_INDEX, "transactions_default")
+    };
+  }
+
+  /** DDL of the partition of {@code month} and its index, also run by database initialization. */
+  static String[] createMonthStatements(YearMonth month) {
+    String partition = partitionName(month);
+    return new String[] {
+      String.format(
+          PostgreSQLQueries.Partitions.CREATE_MONTH,
+          partition,
+          lowerBound(month),
+          upperBound(month)),
+      String.format(PostgreSQLQueries.Partitions.CREATE_BTREE_INDEX, partition)
+    };
+  }
+
+  private static String partitionName(YearMonth month) {
+    return PARTITION_PREFIX + month.format(SUFFIX);
+  }
+
+  private static String lowerBound(YearMonth month) {
+    return month.atDay(1) + " 00:00:00+00";
+  }
+
+  private static String upperBound(YearMonth month) {
+    return lowerBound(month.plusMonths(1));
+  }
+
+  private List<String> listPartitions() {
+    return transaction.executeInTransaction(
+        connection -> {
+          List<String> partitions = new ArrayList<>();
+          try (Statement stmt = connection.createStatement();
+              ResultSet rs = stmt.executeQuery(PostgreSQLQueries.Partitions.LIST)) {
+            while (rs.next()) {
+              partitions.add(rs.getString(1));
+            }
+            return partitions;
+          } catch (SQLException e) {
+            throw new DatabaseException("Failed to list transaction partitions", e);
+          }
+        });
+  }
+
+  private void execute(String ddl) {
+    transaction.executeInTransaction(
+        connection -> {
+          try (Statement stmt = connection.createStatement()) {
+            stmt.execute(ddl);
+            return null;
+          } catch (SQLException e) {
+            throw new DatabaseException("Failed to execute partition maintenance: " + ddl, e);
+          }
+        });
+  }
+
+  @Override
+  public void close() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+}
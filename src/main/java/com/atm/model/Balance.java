@@ -1,6 +1,5 @@
 package com.atm.model;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import lombok.Builder;
 import lombok.Data;
@@ -9,7 +8,10 @@ import lombok.Data;
 @Builder
 public class Balance {
   private Long userId;
-  private BigDecimal balance;
+  private Money balance;
+
+  // Bumped by every write, orders balance snapshots of the same user
+  private Long version;
 
   @Builder.Default private LocalDateTime lastUpdated = LocalDateTime.now();
 }
@@ -0,0 +1,25 @@
+package com.atm.model;
+
+import java.time.LocalDate;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * How many transactions of one type an account made on one UTC day and their sum. A transfer is a
+ * {@code TRANSFER_OUT} of its sender and a {@code TRANSFER_IN} of its recipient.
+ */
+@Data
+@Builder
+public class DailyTotal {
+  private LocalDate day;
+  private Type type;
+  private long count;
+  private Money amount;
+
+  public enum Type {
+    DEPOSIT,
+    TRANSFER_IN,
+    TRANSFER_OUT,
+    WITHDRAW
+  }
+}
@@ -0,0 +1,17 @@
+package com.atm.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+/** Outcome of a ledger export: how many rows and bytes were written and how long it took. */
+@Data
+@Builder
+public class ExportResult {
+  private long rows;
+  private long bytes;
+  private long elapsedMillis;
+
+  public long getRowsPerSecond() {
+    return elapsedMillis == 0 ? rows * 1000 : rows * 1000 / elapsedMillis;
+  }
+}
@@ -0,0 +1,25 @@
+package com.atm.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Outcome of a bulk user import: how many accounts were created, which usernames already existed
+ * and which lines failed validation.
+ */
+@Data
+@Builder
+public class ImportResult {
+  private int imported;
+  @Builder.Default private List<String> duplicates = new ArrayList<>();
+  @Builder.Default private List<String> rejected = new ArrayList<>();
+
+  /** Accumulates the result of another chunk of the same import into this one. */
+  public void add(ImportResult other) {
+    imported += other.imported;
+    duplicates.addAll(other.duplicates);
+    rejected.addAll(other.rejected);
+  }
+}
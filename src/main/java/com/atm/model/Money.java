@@ -0,0 +1,138 @@
+package com.atm.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * An amount of money held as a {@code long} count of minor units, ten thousandths, the scale of the
+ * {@code NUMERIC(19,4)} columns. Arithmetic fails with {@link ArithmeticException} instead of
+ * wrapping around, and parsing and formatting work on the characters directly, so amounts on the
+ * hot path never go through {@link BigDecimal}. Amounts are exact: more than four decimals are
+ * rejected rather than rounded.
+ */
+public final class Money implements Comparable<Money> {
+  public static final int SCALE = 4;
+  private static final long UNIT = 10_000;
+
+  public static final Money ZERO = new Money(0);
+  public static final Money ONE = new Money(UNIT);
+
+  private final long minorUnits;
+
+  private Money(long minorUnits) {
+    this.minorUnits = minorUnits;
+  }
+
+  public static Money ofMinorUnits(long minorUnits) {
+    return minorUnits == 0 ? ZERO : new Money(minorUnits);
+  }
+
+  /** Converts exactly, fails with ArithmeticException beyond four decimals or out of range. */
+  public static Money of(BigDecimal amount) {
+    return ofMinorUnits(
+        amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact());
+  }
+
+  /**
+   * Parses an optionally signed decimal such as {@code 12}, {@code 12.5} or {@code -0.0001}.
+   *
+   * @throws NumberFormatException for anything else, more than four decimals or out of range
+   */
+  public static Money parse(String text) {
+    int length = text.length();
+    int i = 0;
+    boolean negative = false;
+    if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+      negative = text.charAt(i) == '-';
+      i++;
+    }
+
+    long units = 0;
+    int digits = 0;
+    int decimals = -1;
+    try {
+      for (; i < length; i++) {
+        char c = text.charAt(i);
+        if (c == '.' && decimals < 0) {
+          decimals = 0;
+        } else if (c >= '0' && c <= '9' && decimals < SCALE) {
+          units = Math.addExact(Math.multiplyExact(units, 10), c - '0');
+          digits++;
+          if (decimals >= 0) {
+            decimals++;
+          }
+        } else {
+          throw new NumberFormatException("Invalid amount: " + text);
+        }
+      }
+      for (int scale = Math.max(decimals, 0); scale < SCALE; scale++) {
+        units = Math.multiplyExact(units, 10);
+      }
+    } catch (ArithmeticException e) {
+      throw new NumberFormatException("Amount out of range: " + text);
+    }
+    if (digits == 0) {
+      throw new NumberFormatException("Invalid amount: " + text);
+    }
+    return ofMinorUnits(negative ? -units : units);
+  }
+
+  public long getMinorUnits() {
+    return minorUnits;
+  }
+
+  public BigDecimal toBigDecimal() {
+    return BigDecimal.valueOf(minorUnits, SCALE);
+  }
+
+  public Money plus(Money other) {
+    return ofMinorUnits(Math.addExact(minorUnits, other.minorUnits));
+  }
+
+  public Money minus(Money other) {
+    return ofMinorUnits(Math.subtractExact(minorUnits, other.minorUnits));
+  }
+
+  public Money negate() {
+    return ofMinorUnits(Math.negateExact(minorUnits));
+  }
+
+  public int signum() {
+    return Long.signum(minorUnits);
+  }
+
+  public boolean isLessThan(Money other) {
+    return minorUnits < other.minorUnits;
+  }
+
+  @Override
+  public int compareTo(Money other) {
+    return Long.compare(minorUnits, other.minorUnits);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof Money && ((Money) o).minorUnits == minorUnits;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(minorUnits);
+  }
+
+  /** Always four decimals, the way PostgreSQL prints the amount columns. */
+  @Override
+  public String toString() {
+    long units = minorUnits / UNIT;
+    long fraction = Math.abs(minorUnits % UNIT);
+    StringBuilder text = new StringBuilder(24);
+    if (minorUnits < 0 && units == 0) {
+      text.append('-');
+    }
+    text.append(units).append('.');
+    for (long pad = UNIT / 10; pad > fraction && pad > 1; pad /= 10) {
+      text.append('0');
+    }
+    return text.append(fraction).toString();
+  }
+}
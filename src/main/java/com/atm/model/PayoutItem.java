@@ -0,0 +1,13 @@
+package com.atm.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+/** One recipient line of a batch payout. */
+@Data
+@Builder
+public class PayoutItem {
+  private String username;
+  private Long userId;
+  private Money amount;
+}
@@ -0,0 +1,13 @@
+package com.atm.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+/** Outcome of a batch payout: how much was paid to how many recipients. */
+@Data
+@Builder
+public class PayoutResult {
+  private int recipients;
+  private Money totalAmount;
+  private Money balance;
+}
@@ -11,17 +11,11 @@ public class Session {
   private Long userId;
   private String username;
 
+  // Signed token of a stateless session, null for database sessions
+  private String token;
+
   @Builder.Default private LocalDateTime createdAt = LocalDateTime.now();
   private LocalDateTime lastActivityAt;
 
-  private static final long SESSION_TIMEOUT_MINUTES = 1;
-
   private LocalDateTime expiresAt;
-
-  public boolean isExpired() {
-    if (lastActivityAt == null) {
-      return true;
-    }
-    return LocalDateTime.now().isAfter(lastActivityAt.plusMinutes(SESSION_TIMEOUT_MINUTES));
-  }
 }
@@ -1,6 +1,5 @@
 package com.atm.model;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import lombok.Builder;
 import lombok.Data;
@@ -11,7 +10,7 @@ public class Transaction {
   private Long id;
   private Long fromUserId;
   private Long toUserId;
-  private BigDecimal amount;
+  private Money amount;
   private TransactionType type;
 
   @Builder.Default private LocalDateTime createdAt = LocalDateTime.now();
@@ -0,0 +1,25 @@
+package com.atm.model;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * What to dump from the ledger and where. Dates are UTC days, {@code from} inclusive and {@code to}
+ * exclusive, a missing bound or user leaves that side of the range open.
+ */
+@Data
+@Builder
+public class TransactionExport {
+  private Path file;
+  @Builder.Default private Format format = Format.CSV;
+  private LocalDate from;
+  private LocalDate to;
+  private Long userId;
+
+  public enum Format {
+    CSV,
+    BINARY
+  }
+}
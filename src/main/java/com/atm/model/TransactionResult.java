@@ -0,0 +1,12 @@
+package com.atm.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+/** Outcome of a balance mutation: the ledger entry id and the balance right after it. */
+@Data
+@Builder
+public class TransactionResult {
+  private Long transactionId;
+  private Money balance;
+}
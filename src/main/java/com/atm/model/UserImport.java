@@ -0,0 +1,13 @@
+package com.atm.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+/** One account to onboard in a bulk import, with its line number in the source file. */
+@Data
+@Builder
+public class UserImport {
+  private int line;
+  private String username;
+  private String password;
+}
@@ -0,0 +1,123 @@
+package com.atm.service.balance;
+
+import com.atm.database.BalanceChangeListener;
+import com.atm.database.Database;
+import com.atm.model.Balance;
+import com.atm.model.Money;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Read-through balance cache kept current by the balance changes the database publishes. While
+ * subscribed, cached balances are updated in place by every change and never expire. While not,
+ * they are trusted for the TTL only, and on resubscribing everything is dropped since changes may
+ * have been missed in between.
+ *
+ * <p>A load racing with a change to the same user must not cache the value it read before that
+ * change. Every change bumps a stamp of the user's stripe, and a load only caches its value when
+ * the stamp did not move while it was reading. Writes of this process evict the balance right after
+ * they finish, so a user reads their own change before its notification arrives. Changes of hot
+ * accounts, spread over balance slots, are published without a balance and evict it as well. Loads
+ * read the primary, a replica could return a value older than a change that was already applied.
+ */
+@Slf4j
+final class BalanceCache implements BalanceChangeListener {
+  private static final int STRIPES = 1024;
+
+  // Dropped wholesale beyond this, a terminal only reads the balances of its own users
+  private static final int MAX_ENTRIES = 100_000;
+
+  private final Database database;
+  private final long ttlNanos;
+  private final Map<Long, CachedBalance> balances = new ConcurrentHashMap<>();
+  private final AtomicLongArray stamps = new AtomicLongArray(STRIPES);
+  private volatile boolean subscribed;
+
+  private static final class CachedBalance {
+    final Money balance;
+    final long version;
+    final long cachedAtNanos;
+
+    CachedBalance(Money balance, long version) {
+      this.balance = balance;
+      this.version = version;
+      this.cachedAtNanos = System.nanoTime();
+    }
+  }
+
+  private BalanceCache(Database database, Duration ttl) {
+    this.database = database;
+    this.ttlNanos = ttl.toNanos();
+  }
+
+  /** Returns null when the database does not publish balance changes. */
+  static BalanceCache subscribe(Database database, Duration ttl) {
+    BalanceCache cache = new BalanceCache(database, ttl);
+    if (!database.subscribeBalanceChanges(cache)) {
+      log.info("Balance changes are not published by this database, balances are not cached");
+      return null;
+    }
+    return cache;
+  }
+
+  Money get(Long userId) {
+    CachedBalance cached = balances.get(userId);
+    if (cached != null && (subscribed || System.nanoTime() - cached.cachedAtNanos < ttlNanos)) {
+      return cached.balance;
+    }
+
+    int stripe = stripe(userId);
+    long stamp = stamps.get(stripe);
+    Balance snapshot = database.getBalanceSnapshot(userId);
+    if (stamps.get(stripe) == stamp) {
+      if (balances.size() >= MAX_ENTRIES) {
+        balances.clear();
+      }
+      balances.merge(
+          userId,
+          new CachedBalance(snapshot.getBalance(), snapshot.getVersion()),
+          BalanceCache::newer);
+    }
+    return snapshot.getBalance();
+  }
+
+  @Override
+  public void balanceChanged(long userId, Money balance, long version) {
+    stamps.incrementAndGet(stripe(userId));
+    balances.computeIfPresent(
+        userId, (id, cached) -> newer(cached, new CachedBalance(balance, version)));
+  }
+
+  @Override
+  public void balanceInvalidated(long userId) {
+    stamps.incrementAndGet(stripe(userId));
+    balances.remove(userId);
+  }
+
+  @Override
+  public void subscribed() {
+    for (int i = 0; i < STRIPES; i++) {
+      stamps.incrementAndGet(i);
+    }
+    balances.clear();
+    subscribed = true;
+  }
+
+  @Override
+  public void unsubscribed() {
+    subscribed = false;
+    log.warn(
+        "Not receiving balance changes, cached balances expire after {} ms", ttlNanos / 1_000_000);
+  }
+
+  private static CachedBalance newer(CachedBalance current, CachedBalance candidate) {
+    return candidate.version > current.version ? candidate : current;
+  }
+
+  private static int stripe(long userId) {
+    return (int) (userId & (STRIPES - 1));
+  }
+}
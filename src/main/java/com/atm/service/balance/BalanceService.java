@@ -1,8 +1,8 @@
 package com.atm.service.balance;
 
-import java.math.BigDecimal;
+import com.atm.model.Money;
 
 public interface BalanceService {
 
-  BigDecimal getBalance(Long userId);
+  Money getBalance(Long userId);
 }
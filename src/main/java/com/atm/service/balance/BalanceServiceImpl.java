@@ -1,18 +1,31 @@
 package com.atm.service.balance;
 
 import com.atm.database.Database;
-import java.math.BigDecimal;
-import lombok.RequiredArgsConstructor;
+import com.atm.model.Money;
+import java.time.Duration;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
-@RequiredArgsConstructor
 public class BalanceServiceImpl implements BalanceService {
 
   private final Database database;
+  private final BalanceCache cache;
+
+  public BalanceServiceImpl(Database database) {
+    this(database, null);
+  }
+
+  /**
+   * @param cacheTtl caches balances when the database publishes balance changes, trusting them for
+   *     this long while the changes are not being received. Null disables caching.
+   */
+  public BalanceServiceImpl(Database database, Duration cacheTtl) {
+    this.database = database;
+    this.cache = cacheTtl == null ? null : BalanceCache.subscribe(database, cacheTtl);
+  }
 
   @Override
-  public BigDecimal getBalance(Long userId) {
-    return database.getBalance(userId);
+  public Money getBalance(Long userId) {
+    return cache != null ? cache.get(userId) : database.getBalance(userId);
   }
 }
@@ -0,0 +1,112 @@
+package com.atm.service.session;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Session ids that were logged out before their token expired. Entries are only kept until the
+ * token would have expired anyway, so the set stays as small as the number of recent logouts. It is
+ * persisted as an append-only file of 16-byte (session id, expiry) records, compacted when it is
+ * loaded and once it is mostly stale.
+ */
+@Slf4j
+class RevokedSessions {
+  private static final int COMPACT_THRESHOLD = 1024;
+
+  private final Path file;
+  private final Map<Long, Long> expiresAtBySession = new ConcurrentHashMap<>();
+  private long fileRecords;
+
+  /** @param file where revocations survive restarts, kept in memory only when null */
+  RevokedSessions(Path file) {
+    this.file = file;
+    if (file != null && Files.exists(file)) {
+      load();
+    }
+  }
+
+  boolean isRevoked(long sessionId) {
+    return expiresAtBySession.containsKey(sessionId);
+  }
+
+  synchronized void revoke(long sessionId, long expiresAtMillis) {
+    long now = System.currentTimeMillis();
+    expiresAtBySession.values().removeIf(expiresAt -> expiresAt <= now);
+    if (expiresAtMillis <= now || expiresAtBySession.put(sessionId, expiresAtMillis) != null) {
+      return;
+    }
+    if (file == null) {
+      return;
+    }
+
+    if (fileRecords >= COMPACT_THRESHOLD && fileRecords > 2L * expiresAtBySession.size()) {
+      rewrite();
+      return;
+    }
+    try (DataOutputStream out =
+        new DataOutputStream(
+            Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+      out.writeLong(sessionId);
+      out.writeLong(expiresAtMillis);
+      fileRecords++;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to persist session revocation", e);
+    }
+  }
+
+  int size() {
+    return expiresAtBySession.size();
+  }
+
+  private void load() {
+    long now = System.currentTimeMillis();
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      while (true) {
+        long sessionId = in.readLong();
+        long expiresAt = in.readLong();
+        if (expiresAt > now) {
+          expiresAtBySession.put(sessionId, expiresAt);
+        }
+      }
+    } catch (EOFException e) {
+      // A truncated trailing record is a revocation that was never acknowledged
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to load session revocations from " + file, e);
+    }
+    rewrite();
+    log.info("Loaded {} session revocations", expiresAtBySession.size());
+  }
+
+  // Writes the live entries to a temporary file and swaps it in, so a crash keeps the old file
+  private void rewrite() {
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+      for (Map.Entry<Long, Long> entry : expiresAtBySession.entrySet()) {
+        out.writeLong(entry.getKey());
+        out.writeLong(entry.getValue());
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to compact session revocations", e);
+    }
+    try {
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to compact session revocations", e);
+    }
+    fileRecords = expiresAtBySession.size();
+  }
+}
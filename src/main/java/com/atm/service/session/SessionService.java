@@ -3,7 +3,7 @@ package com.atm.service.session;
 import com.atm.model.Session;
 import java.util.Optional;
 
-public interface SessionService {
+public interface SessionService extends AutoCloseable {
 
   Long createSession(Long userId);
 
@@ -12,4 +12,21 @@ public interface SessionService {
   Optional<Session> validateSession(Long sessionId);
 
   boolean hasActiveSession(Long userId);
+
+  /**
+   * Checks the session a terminal holds before each command and extends it. Database sessions are
+   * looked up by their user, signed sessions are validated from their token.
+   */
+  default boolean isActive(Session session) {
+    return hasActiveSession(session.getUserId());
+  }
+
+  /** The signed token of a stateless session, empty for sessions kept in the database. */
+  default Optional<String> getToken(Long sessionId) {
+    return Optional.empty();
+  }
+
+  /** Writes back any pending session state. */
+  @Override
+  void close();
 }
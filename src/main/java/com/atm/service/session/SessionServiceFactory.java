@@ -0,0 +1,50 @@
+package com.atm.service.session;
+
+import com.atm.database.Database;
+import com.atm.database.DatabaseConfig;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import lombok.extern.slf4j.Slf4j;
+
+/** Selects the {@link SessionService} configured through {@code db.sessions.mode}. */
+@Slf4j
+public final class SessionServiceFactory {
+  public static final String MODE_DATABASE = "database";
+  public static final String MODE_SIGNED = "signed";
+
+  private SessionServiceFactory() {}
+
+  public static SessionService create(DatabaseConfig config, Database database) {
+    String mode = config.getSessionMode() == null ? MODE_DATABASE : config.getSessionMode().trim();
+    Duration sessionTimeout = Duration.ofSeconds(config.getSessionTimeoutSeconds());
+
+    switch (mode.toLowerCase()) {
+      case MODE_DATABASE:
+        return new SessionServiceImpl(database, sessionTimeout);
+      case MODE_SIGNED:
+        String revocationFile = config.getSessionRevocationFile();
+        return new SignedSessionService(
+            new SessionTokens(signingKey(config)),
+            sessionTimeout,
+            Duration.ofSeconds(config.getSessionTokenLifetimeSeconds()),
+            revocationFile == null || revocationFile.trim().isEmpty()
+                ? null
+                : Paths.get(revocationFile));
+      default:
+        throw new IllegalArgumentException("Unknown session mode: " + mode);
+    }
+  }
+
+  private static byte[] signingKey(DatabaseConfig config) {
+    String key = config.getSessionSigningKey();
+    if (key != null && !key.trim().isEmpty()) {
+      return Base64.getDecoder().decode(key.trim());
+    }
+    log.warn("No session signing key configured, sessions will not survive a restart");
+    byte[] generated = new byte[32];
+    new SecureRandom().nextBytes(generated);
+    return generated;
+  }
+}
@@ -2,24 +2,96 @@ package com.atm.service.session;
 
 import com.atm.database.Database;
 import com.atm.model.Session;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import lombok.RequiredArgsConstructor;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Validates sessions against an in-process cache keyed by session and user id, expiry is checked
+ * locally against {@link Session#getExpiresAt()}. A session that is not cached is validated and
+ * extended by the database in one statement. Cached expiries are kept on the JVM clock, counted
+ * from the moment the database confirmed the session, so they never mix the two clocks. Activity
+ * only extends the cached expiry and is written back for all touched sessions in one batched update
+ * every {@link #TOUCH_INTERVAL_MILLIS} or a quarter of the timeout, whichever is shorter. Logins
+ * and logouts through this service update the cache right away. A session ended elsewhere, e.g. by
+ * a login on another terminal, is evicted at the next write-back, which reports it as no longer
+ * active.
+ */
 @Slf4j
-@RequiredArgsConstructor
 public class SessionServiceImpl implements SessionService {
+  static final long TOUCH_INTERVAL_MILLIS = 5000;
+
   private final Database database;
+  private final Duration sessionTimeout;
+  private final Map<Long, Session> sessionsById = new ConcurrentHashMap<>();
+  private final Map<Long, Session> sessionsByUser = new ConcurrentHashMap<>();
+  private final Set<Long> pendingTouches = ConcurrentHashMap.newKeySet();
+  private final ScheduledExecutorService scheduler;
+
+  public SessionServiceImpl(Database database) {
+    this(database, Duration.ofMinutes(1));
+  }
+
+  public SessionServiceImpl(Database database, Duration sessionTimeout) {
+    // Written-back expiries must never fall behind the cached ones
+    this(
+        database,
+        sessionTimeout,
+        Math.max(1, Math.min(TOUCH_INTERVAL_MILLIS, sessionTimeout.toMillis() / 4)));
+  }
+
+  /** A non-positive interval disables the background write-back, see {@link #flushActivity()}. */
+  public SessionServiceImpl(Database database, Duration sessionTimeout, long touchIntervalMillis) {
+    this.database = database;
+    this.sessionTimeout = sessionTimeout;
+    if (touchIntervalMillis <= 0) {
+      this.scheduler = null;
+      return;
+    }
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "session-activity-writer");
+              thread.setDaemon(true);
+              return thread;
+            });
+    scheduler.scheduleWithFixedDelay(
+        this::flushActivitySafely, touchIntervalMillis, touchIntervalMillis, TimeUnit.MILLISECONDS);
+  }
 
   @Override
   public Long createSession(Long userId) {
     log.info("Creating session for user: {}", userId);
-    return database.createSession(userId);
+    Long sessionId = database.createSession(userId);
+
+    // The database ended the user's previous sessions
+    Session previous = sessionsByUser.get(userId);
+    if (previous != null) {
+      evict(previous);
+    }
+
+    LocalDateTime now = LocalDateTime.now();
+    cache(
+        Session.builder().id(sessionId).userId(userId).createdAt(now).lastActivityAt(now).build());
+    return sessionId;
   }
 
   @Override
   public void terminateSession(Long sessionId) {
     log.info("Terminating session: {}", sessionId);
+    Session cached = sessionsById.get(sessionId);
+    if (cached != null) {
+      evict(cached);
+    }
     database.deleteSession(sessionId);
   }
 
@@ -29,25 +101,114 @@ public class SessionServiceImpl implements SessionService {
       return Optional.empty();
     }
 
-    return database
-        .getSessionById(sessionId)
-        .filter(
-            session -> {
-              if (session.isExpired()) {
-                log.debug("Session expired: {}", sessionId);
-                terminateSession(sessionId);
-                return false;
-              }
-              database.updateSessionActivity(sessionId);
-              return true;
-            });
+    Session cached = sessionsById.get(sessionId);
+    if (cached != null) {
+      return touch(cached);
+    }
+    return database.touchSession(sessionId).map(this::cache);
   }
 
   @Override
   public boolean hasActiveSession(Long userId) {
+    Session cached = sessionsByUser.get(userId);
+    if (cached != null) {
+      return touch(cached).isPresent();
+    }
     return database
         .getActiveSession(userId)
-        .map(session -> validateSession(session.getId()).isPresent())
-        .orElse(false);
+        .flatMap(session -> database.touchSession(session.getId()))
+        .map(this::cache)
+        .isPresent();
+  }
+
+  /**
+   * Writes the activity of the sessions touched since the last call back to the database and evicts
+   * the ones the database no longer considers active. Runs periodically and on close.
+   */
+  public void flushActivity() {
+    sessionsById.values().removeIf(this::isExpired);
+    sessionsByUser.values().removeIf(this::isExpired);
+    if (pendingTouches.isEmpty()) {
+      return;
+    }
+
+    List<Long> sessionIds = new ArrayList<>(pendingTouches);
+    pendingTouches.removeAll(sessionIds);
+    Set<Long> active;
+    try {
+      active = database.touchSessions(sessionIds);
+    } catch (RuntimeException e) {
+      pendingTouches.addAll(sessionIds);
+      throw e;
+    }
+
+    for (Long sessionId : sessionIds) {
+      Session cached = sessionsById.get(sessionId);
+      if (!active.contains(sessionId) && cached != null) {
+        log.info("Session {} is no longer active, evicting it", sessionId);
+        evict(cached);
+      }
+    }
+    log.debug("Wrote back activity of {} sessions", sessionIds.size());
+  }
+
+  @Override
+  public void close() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+    flushActivitySafely();
+  }
+
+  private void flushActivitySafely() {
+    try {
+      flushActivity();
+    } catch (RuntimeException e) {
+      log.warn("Failed to write back session activity, retrying on the next run", e);
+    }
+  }
+
+  private Optional<Session> touch(Session session) {
+    if (isExpired(session)) {
+      log.debug("Session expired: {}", session.getId());
+      terminateSession(session.getId());
+      return Optional.empty();
+    }
+
+    LocalDateTime now = LocalDateTime.now();
+    session.setLastActivityAt(now);
+    session.setExpiresAt(now.plus(sessionTimeout));
+    pendingTouches.add(session.getId());
+    return Optional.of(session);
+  }
+
+  private boolean isExpired(Session session) {
+    return !LocalDateTime.now().isBefore(session.getExpiresAt());
+  }
+
+  /**
+   * Caches a private copy, the engine may hand out its own instances. The session was active in the
+   * database just now, so its cached expiry is restarted on the JVM clock.
+   */
+  private Session cache(Session session) {
+    LocalDateTime now = LocalDateTime.now();
+    Session copy =
+        Session.builder()
+            .id(session.getId())
+            .userId(session.getUserId())
+            .username(session.getUsername())
+            .createdAt(session.getCreatedAt())
+            .lastActivityAt(now)
+            .expiresAt(now.plus(sessionTimeout))
+            .build();
+    sessionsById.put(copy.getId(), copy);
+    sessionsByUser.put(copy.getUserId(), copy);
+    return copy;
+  }
+
+  private void evict(Session session) {
+    sessionsById.remove(session.getId(), session);
+    sessionsByUser.remove(session.getUserId(), session);
+    pendingTouches.remove(session.getId());
   }
 }
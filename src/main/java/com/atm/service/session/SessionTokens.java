@@ -0,0 +1,93 @@
+package com.atm.service.session;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Optional;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Issues and verifies HMAC-SHA256 signed session tokens. A token is the base64url encoded claims, a
+ * dot and the base64url encoded signature of the claims. The claims are the session id, user id,
+ * issue time and expiry, 32 bytes in total, so verification needs no lookup.
+ */
+public class SessionTokens {
+  private static final String ALGORITHM = "HmacSHA256";
+  private static final int CLAIMS_LENGTH = 4 * Long.BYTES;
+
+  private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+  private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+  private final SecretKeySpec key;
+
+  @RequiredArgsConstructor
+  public static final class Claims {
+    public final long sessionId;
+    public final long userId;
+    public final long issuedAtMillis;
+    public final long expiresAtMillis;
+  }
+
+  /** @param key the shared secret, at least 32 bytes */
+  public SessionTokens(byte[] key) {
+    if (key.length < 32) {
+      throw new IllegalArgumentException("Session signing key must be at least 32 bytes");
+    }
+    this.key = new SecretKeySpec(key, ALGORITHM);
+  }
+
+  public String issue(Claims claims) {
+    byte[] payload =
+        ByteBuffer.allocate(CLAIMS_LENGTH)
+            .putLong(claims.sessionId)
+            .putLong(claims.userId)
+            .putLong(claims.issuedAtMillis)
+            .putLong(claims.expiresAtMillis)
+            .array();
+    return ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(sign(payload));
+  }
+
+  /**
+   * Returns the claims of a well-formed token with a valid signature. Expiry is left to the caller.
+   */
+  public Optional<Claims> verify(String token) {
+    if (token == null) {
+      return Optional.empty();
+    }
+    int dot = token.indexOf('.');
+    if (dot < 0) {
+      return Optional.empty();
+    }
+
+    byte[] payload;
+    byte[] signature;
+    try {
+      payload = DECODER.decode(token.substring(0, dot).getBytes(StandardCharsets.US_ASCII));
+      signature = DECODER.decode(token.substring(dot + 1).getBytes(StandardCharsets.US_ASCII));
+    } catch (IllegalArgumentException e) {
+      return Optional.empty();
+    }
+    if (payload.length != CLAIMS_LENGTH || !MessageDigest.isEqual(sign(payload), signature)) {
+      return Optional.empty();
+    }
+
+    ByteBuffer claims = ByteBuffer.wrap(payload);
+    return Optional.of(
+        new Claims(claims.getLong(), claims.getLong(), claims.getLong(), claims.getLong()));
+  }
+
+  private byte[] sign(byte[] payload) {
+    try {
+      // Mac instances are not thread-safe and cheap to create next to the hashing itself
+      Mac mac = Mac.getInstance(ALGORITHM);
+      mac.init(key);
+      return mac.doFinal(payload);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("HMAC-SHA256 is not available", e);
+    }
+  }
+}
@@ -0,0 +1,176 @@
+package com.atm.service.session;
+
+import com.atm.model.Session;
+import com.atm.service.session.SessionTokens.Claims;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sessions without database state. A login issues a token signed with {@link SessionTokens} that
+ * expires after the configured lifetime, and validation checks its signature and expiry, the
+ * inactivity timeout on the JVM clock and a small in-memory set of logged out sessions, all without
+ * I/O. Logouts are persisted by {@link RevokedSessions} so they survive a restart.
+ *
+ * <p>Terminals hold the token of their session and every command is validated from it, see {@link
+ * #isActive}. Sessions are only known to the terminal that issued them or resumed their token, so
+ * unlike {@link SessionServiceImpl} a user can be logged in on several terminals at once.
+ */
+@Slf4j
+public class SignedSessionService implements SessionService {
+  private final SessionTokens tokens;
+  private final RevokedSessions revoked;
+  private final Duration sessionTimeout;
+  private final Duration tokenLifetime;
+  private final SecureRandom random = new SecureRandom();
+  private final Map<Long, Session> sessionsById = new ConcurrentHashMap<>();
+  private final Map<Long, Session> sessionsByUser = new ConcurrentHashMap<>();
+
+  /**
+   * @param sessionTimeout inactivity after which a session expires
+   * @param tokenLifetime expiry of a token however active its session is
+   * @param revocationFile where logouts are persisted, kept in memory only when null
+   */
+  public SignedSessionService(
+      SessionTokens tokens, Duration sessionTimeout, Duration tokenLifetime, Path revocationFile) {
+    this.tokens = tokens;
+    this.revoked = new RevokedSessions(revocationFile);
+    this.sessionTimeout = sessionTimeout;
+    this.tokenLifetime = tokenLifetime;
+  }
+
+  @Override
+  public Long createSession(Long userId) {
+    log.info("Creating signed session for user: {}", userId);
+    long sessionId = random.nextLong() & Long.MAX_VALUE;
+    long now = System.currentTimeMillis();
+    String token = tokens.issue(new Claims(sessionId, userId, now, now + tokenLifetime.toMillis()));
+
+    Session previous = sessionsByUser.get(userId);
+    if (previous != null) {
+      terminateSession(previous.getId());
+    }
+
+    LocalDateTime created = LocalDateTime.now();
+    Session session =
+        Session.builder()
+            .id(sessionId)
+            .userId(userId)
+            .token(token)
+            .createdAt(created)
+            .lastActivityAt(created)
+            .expiresAt(created.plus(sessionTimeout))
+            .build();
+    sessionsById.put(sessionId, session);
+    sessionsByUser.put(userId, session);
+    return sessionId;
+  }
+
+  @Override
+  public void terminateSession(Long sessionId) {
+    log.info("Terminating signed session: {}", sessionId);
+    Session session = sessionsById.remove(sessionId);
+    if (session == null) {
+      return;
+    }
+    sessionsByUser.remove(session.getUserId(), session);
+    tokens
+        .verify(session.getToken())
+        .ifPresent(claims -> revoked.revoke(claims.sessionId, claims.expiresAtMillis));
+  }
+
+  @Override
+  public Optional<Session> validateSession(Long sessionId) {
+    if (sessionId == null) {
+      return Optional.empty();
+    }
+    Session session = sessionsById.get(sessionId);
+    return session == null ? Optional.empty() : touch(session);
+  }
+
+  @Override
+  public boolean hasActiveSession(Long userId) {
+    Session session = sessionsByUser.get(userId);
+    return session != null && touch(session).isPresent();
+  }
+
+  /**
+   * Validates a held session from its token: the signature, expiry and revocation are checked, and
+   * a token this terminal did not issue, e.g. one issued before a restart, is {@link #resume
+   * resumed}.
+   */
+  @Override
+  public boolean isActive(Session session) {
+    Optional<Claims> claims = tokens.verify(session.getToken());
+    if (!claims.isPresent()
+        || claims.get().sessionId != session.getId()
+        || claims.get().userId != session.getUserId()) {
+      return false;
+    }
+    Session known = sessionsById.get(claims.get().sessionId);
+    if (known == null) {
+      return resume(session.getToken()).isPresent();
+    }
+    return known.getToken().equals(session.getToken()) && touch(known).isPresent();
+  }
+
+  /**
+   * Adopts a session from its token, e.g. after a restart or on another terminal sharing the key.
+   * Tampered, expired and logged out tokens are refused.
+   */
+  public Optional<Session> resume(String token) {
+    Optional<Claims> verified = tokens.verify(token);
+    if (!verified.isPresent()) {
+      return Optional.empty();
+    }
+    Claims claims = verified.get();
+    if (claims.expiresAtMillis <= System.currentTimeMillis()
+        || revoked.isRevoked(claims.sessionId)) {
+      return Optional.empty();
+    }
+
+    LocalDateTime now = LocalDateTime.now();
+    Session session =
+        Session.builder()
+            .id(claims.sessionId)
+            .userId(claims.userId)
+            .token(token)
+            .lastActivityAt(now)
+            .expiresAt(now.plus(sessionTimeout))
+            .build();
+    sessionsById.put(session.getId(), session);
+    sessionsByUser.put(session.getUserId(), session);
+    return Optional.of(session);
+  }
+
+  @Override
+  public Optional<String> getToken(Long sessionId) {
+    return Optional.ofNullable(sessionsById.get(sessionId)).map(Session::getToken);
+  }
+
+  /** Revocations are persisted as they happen, nothing is pending. */
+  @Override
+  public void close() {}
+
+  private Optional<Session> touch(Session session) {
+    Optional<Claims> claims = tokens.verify(session.getToken());
+    LocalDateTime now = LocalDateTime.now();
+    if (!claims.isPresent()
+        || claims.get().expiresAtMillis <= System.currentTimeMillis()
+        || revoked.isRevoked(claims.get().sessionId)
+        || !now.isBefore(session.getExpiresAt())) {
+      log.debug("Session expired: {}", session.getId());
+      terminateSession(session.getId());
+      return Optional.empty();
+    }
+
+    session.setLastActivityAt(now);
+    session.setExpiresAt(now.plus(sessionTimeout));
+    return Optional.of(session);
+  }
+}
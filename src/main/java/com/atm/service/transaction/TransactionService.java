@@ -1,11 +1,40 @@
 package com.atm.service.transaction;
 
-import java.math.BigDecimal;
+import com.atm.model.DailyTotal;
+import com.atm.model.ExportResult;
+import com.atm.model.Money;
+import com.atm.model.PayoutItem;
+import com.atm.model.PayoutResult;
+import com.atm.model.Transaction;
+import com.atm.model.TransactionExport;
+import com.atm.model.TransactionResult;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Consumer;
 
 public interface TransactionService {
-  void deposit(Long userId, BigDecimal amount);
+  TransactionResult deposit(Long userId, Money amount);
 
-  void withdraw(Long userId, BigDecimal amount);
+  TransactionResult withdraw(Long userId, Money amount);
 
-  void transfer(Long fromUserId, Long toUserId, BigDecimal amount);
+  void transfer(Long fromUserId, Long toUserId, Money amount);
+
+  PayoutResult transferBatch(Long fromUserId, List<PayoutItem> items);
+
+  /**
+   * Streams one page of the user's history, newest first, starting below {@code beforeId}. Returns
+   * the cursor for the next page, or {@code null} when there are no older entries.
+   */
+  Long history(Long userId, Long beforeId, int limit, Consumer<Transaction> consumer);
+
+  ExportResult export(TransactionExport export);
+
+  /**
+   * Returns the user's totals per UTC day and type from {@code from} inclusive to {@code to}
+   * exclusive, oldest day first. Days without transactions are absent.
+   */
+  List<DailyTotal> dailyTotals(Long userId, LocalDate from, LocalDate to);
+
+  /** Spreads the user's credits over {@code slots} balance slots, 0 makes it a plain account. */
+  void setBalanceSlots(Long userId, int slots);
 }
@@ -2,67 +2,80 @@ package com.atm.service.transaction;
 
 import com.atm.database.Database;
 import com.atm.exception.InsufficientFundsException;
-import com.atm.service.balance.BalanceService;
-import java.math.BigDecimal;
+import com.atm.model.DailyTotal;
+import com.atm.model.ExportResult;
+import com.atm.model.Money;
+import com.atm.model.PayoutItem;
+import com.atm.model.PayoutResult;
+import com.atm.model.Transaction;
+import com.atm.model.TransactionExport;
+import com.atm.model.TransactionResult;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 @RequiredArgsConstructor
 public class TransactionServiceImpl implements TransactionService {
+  static final int MAX_HISTORY_LIMIT = 1000;
+  static final int MAX_BALANCE_SLOTS = 64;
+  static final int MAX_SUMMARY_DAYS = 366;
+
   private final Database database;
-  private final BalanceService balanceService;
 
   @Override
-  public void deposit(Long userId, BigDecimal amount) {
+  public TransactionResult deposit(Long userId, Money amount) {
     log.info("Attempting to deposit {} for user {}", amount, userId);
 
-    if (amount.compareTo(BigDecimal.ONE) <= 0) {
+    if (amount.compareTo(Money.ONE) <= 0) {
       throw new IllegalArgumentException("Invalid amount, must be grater than 1");
     }
 
-    BigDecimal currentBalance = balanceService.getBalance(userId);
-    BigDecimal newBalance = currentBalance.add(amount);
-
-    database.createTransaction(userId, amount, "DEPOSIT");
+    TransactionResult result = database.createTransaction(userId, amount, "DEPOSIT");
 
-    log.info("Deposit successful. New balance: {}", newBalance);
+    log.info("Deposit successful. New balance: {}", result.getBalance());
+    return result;
   }
 
   @Override
-  public void withdraw(Long userId, BigDecimal amount) {
+  public TransactionResult withdraw(Long userId, Money amount) {
     log.info("Attempting to withdraw {} for user {}", amount, userId);
 
-    if (amount.compareTo(BigDecimal.ONE) <= 0) {
+    if (amount.compareTo(Money.ONE) <= 0) {
       throw new IllegalArgumentException("Invalid amount, must be grater than 1");
     }
 
-    BigDecimal currentBalance = balanceService.getBalance(userId);
-
-    if (currentBalance.compareTo(amount) < 0) {
-      log.warn(
-          "Insufficient funds for withdrawal. Current balance: {}, Requested: {}",
-          currentBalance,
-          amount);
+    // The funds check is done atomically by the storage layer together with the update
+    TransactionResult result;
+    try {
+      result = database.createTransaction(userId, amount, "WITHDRAW");
+    } catch (InsufficientFundsException e) {
+      log.warn("Insufficient funds for withdrawal. {}", e.getMessage());
       throw new InsufficientFundsException("Insufficient funds for withdrawal");
     }
 
-    BigDecimal newBalance = currentBalance.subtract(amount);
-
-    database.createTransaction(userId, amount, "WITHDRAW");
-
-    log.info("Withdrawal successful. New balance: {}", newBalance);
+    log.info("Withdrawal successful. New balance: {}", result.getBalance());
+    return result;
   }
 
   @Override
-  public void transfer(Long fromUserId, Long toUserId, BigDecimal amount) {
+  public void transfer(Long fromUserId, Long toUserId, Money amount) {
     log.info("Attempting to transfer {} from user {} to user {}", amount, fromUserId, toUserId);
 
-    if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+    if (amount.signum() <= 0) {
       throw new IllegalArgumentException("Transfer amount must be positive");
     }
 
-    if (amount.compareTo(BigDecimal.ONE) <= 0) {
+    if (amount.compareTo(Money.ONE) <= 0) {
       throw new IllegalArgumentException("Invalid amount, must be grater than 1");
     }
 
@@ -70,17 +83,151 @@ public class TransactionServiceImpl implements TransactionService {
       throw new IllegalArgumentException("Cannot transfer to same account");
     }
 
-    BigDecimal fromBalance = balanceService.getBalance(fromUserId);
-    if (fromBalance.compareTo(amount) < 0) {
-      log.warn(
-          "Insufficient funds for transfer. Current balance: {}, Requested: {}",
-          fromBalance,
-          amount);
+    // The funds check is done atomically by the storage layer together with the update
+    try {
+      database.performTransfer(fromUserId, toUserId, amount);
+    } catch (InsufficientFundsException e) {
+      log.warn("Insufficient funds for transfer. {}", e.getMessage());
       throw new InsufficientFundsException("Insufficient funds for transfer");
     }
 
-    database.performTransfer(fromUserId, toUserId, amount);
-
     log.info("Transfer successful");
   }
+
+  @Override
+  public PayoutResult transferBatch(Long fromUserId, List<PayoutItem> items) {
+    log.info("Attempting batch transfer of {} items from user {}", items.size(), fromUserId);
+
+    if (items.isEmpty()) {
+      throw new IllegalArgumentException("Payout must contain at least one recipient");
+    }
+
+    Set<String> usernames = new HashSet<>();
+    for (PayoutItem item : items) {
+      if (item.getAmount().compareTo(Money.ONE) <= 0) {
+        throw new IllegalArgumentException("Invalid amount, must be grater than 1");
+      }
+      usernames.add(item.getUsername());
+    }
+
+    // Resolve all recipients with a single lookup instead of one query per line
+    Map<String, Long> userIds = database.getUserIdsByUsernames(usernames);
+
+    List<PayoutItem> resolved = new ArrayList<>(items.size());
+    for (PayoutItem item : items) {
+      Long toUserId = userIds.get(item.getUsername());
+      if (toUserId == null) {
+        throw new IllegalArgumentException("User not found: " + item.getUsername());
+      }
+      if (toUserId.equals(fromUserId)) {
+        throw new IllegalArgumentException("Cannot transfer to same account");
+      }
+      resolved.add(
+          PayoutItem.builder()
+              .username(item.getUsername())
+              .userId(toUserId)
+              .amount(item.getAmount())
+              .build());
+    }
+
+    PayoutResult result;
+    try {
+      result = database.performBatchTransfer(fromUserId, resolved);
+    } catch (InsufficientFundsException e) {
+      log.warn("Insufficient funds for payout. {}", e.getMessage());
+      throw new InsufficientFundsException("Insufficient funds for payout");
+    }
+
+    log.info(
+        "Payout successful. Paid {} to {} recipients",
+        result.getTotalAmount(),
+        result.getRecipients());
+    return result;
+  }
+
+  @Override
+  public Long history(Long userId, Long beforeId, int limit, Consumer<Transaction> consumer) {
+    log.info("Reading history for user {} before {} limit {}", userId, beforeId, limit);
+
+    if (limit < 1 || limit > MAX_HISTORY_LIMIT) {
+      throw new IllegalArgumentException(
+          "Invalid limit, must be between 1 and " + MAX_HISTORY_LIMIT);
+    }
+
+    if (beforeId != null && beforeId < 1) {
+      throw new IllegalArgumentException("Invalid cursor, must be a transaction id");
+    }
+
+    AtomicInteger count = new AtomicInteger();
+    AtomicLong lastId = new AtomicLong();
+    database.streamTransactionHistory(
+        userId,
+        beforeId,
+        limit,
+        transaction -> {
+          count.incrementAndGet();
+          lastId.set(transaction.getId());
+          consumer.accept(transaction);
+        });
+
+    // A full page may have older entries behind it, its last id is the next keyset cursor
+    return count.get() == limit ? lastId.get() : null;
+  }
+
+  @Override
+  public ExportResult export(TransactionExport export) {
+    log.info(
+        "Exporting transactions from {} to {} for user {} as {}",
+        export.getFrom(),
+        export.getTo(),
+        export.getUserId(),
+        export.getFormat());
+
+    if (export.getFile() == null) {
+      throw new IllegalArgumentException("Export file is required");
+    }
+
+    if (export.getFrom() != null
+        && export.getTo() != null
+        && !export.getFrom().isBefore(export.getTo())) {
+      throw new IllegalArgumentException("Invalid range, --from must be before --to");
+    }
+
+    ExportResult result = database.exportTransactions(export);
+
+    log.info(
+        "Export successful. {} rows, {} bytes in {} ms",
+        result.getRows(),
+        result.getBytes(),
+        result.getElapsedMillis());
+    return result;
+  }
+
+  @Override
+  public List<DailyTotal> dailyTotals(Long userId, LocalDate from, LocalDate to) {
+    log.info("Reading daily totals for user {} from {} to {}", userId, from, to);
+
+    if (!from.isBefore(to)) {
+      throw new IllegalArgumentException("Invalid range, --from must be before --to");
+    }
+
+    if (ChronoUnit.DAYS.between(from, to) > MAX_SUMMARY_DAYS) {
+      throw new IllegalArgumentException(
+          "Invalid range, must span at most " + MAX_SUMMARY_DAYS + " days");
+    }
+
+    return database.getDailyTotals(userId, from, to);
+  }
+
+  @Override
+  public void setBalanceSlots(Long userId, int slots) {
+    log.info("Setting {} balance slots for user {}", slots, userId);
+
+    if (slots < 0 || slots > MAX_BALANCE_SLOTS) {
+      throw new IllegalArgumentException(
+          "Invalid number of slots, must be between 0 and " + MAX_BALANCE_SLOTS);
+    }
+
+    database.setBalanceSlots(userId, slots);
+  }
 }
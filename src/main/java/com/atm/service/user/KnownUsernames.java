@@ -0,0 +1,128 @@
+package com.atm.service.user;
+
+import com.atm.database.Database;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Tells usernames that certainly do not exist apart from ones that might, from a Bloom filter of
+ * every username streamed from the database at startup. Users created through this process are
+ * added right away. Users created by other ATM processes are picked up by catching up on the users
+ * table when a username is not found, at most once per {@link #CATCH_UP_INTERVAL_NANOS}, so a
+ * negative answer is at most that old.
+ *
+ * <p>User ids are taken before their transaction commits, so users can become visible out of id
+ * order. Each catch-up therefore re-reads the ids handed out during the last {@link #SETTLE_NANOS},
+ * not just the ones above the highest id seen.
+ */
+@Slf4j
+public final class KnownUsernames {
+  private static final double FALSE_POSITIVE_RATE = 0.01;
+  private static final long CATCH_UP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final long SETTLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  // Ids below the highest one at startup that may still have been uncommitted, e.g. an import chunk
+  private static final long STARTUP_ID_SLACK = 10_000;
+
+  // Headroom for registrations before the filter has to be rebuilt
+  private static final long MIN_CAPACITY = 100_000;
+
+  private final Database database;
+  private volatile BloomFilter filter;
+  private long entries;
+  private long maxUserId;
+  private long settledUserId;
+  private long settlingUserId;
+  private long settlingSince;
+  private long caughtUpAt;
+
+  private KnownUsernames(Database database) {
+    this.database = database;
+  }
+
+  /** Streams every username into a filter sized for twice the current user count. */
+  public static KnownUsernames load(Database database) {
+    KnownUsernames usernames = new KnownUsernames(database);
+    synchronized (usernames) {
+      usernames.rebuild(database.estimateUserCount());
+      usernames.settledUserId = Math.max(0, usernames.maxUserId - STARTUP_ID_SLACK);
+      usernames.settlingUserId = usernames.maxUserId;
+      usernames.settlingSince = usernames.caughtUpAt = System.nanoTime();
+    }
+    return usernames;
+  }
+
+  /** False when no user has the username, true when one probably does. */
+  public boolean mightExist(String username) {
+    if (filter.mightContain(username)) {
+      return true;
+    }
+    // Without a successful catch-up a negative cannot be trusted, the caller asks the database
+    return !catchUp() || filter.mightContain(username);
+  }
+
+  public synchronized void add(String username) {
+    filter.add(username);
+    entries++;
+  }
+
+  private synchronized boolean catchUp() {
+    long now = System.nanoTime();
+    if (now - caughtUpAt < CATCH_UP_INTERVAL_NANOS) {
+      return true;
+    }
+    try {
+      BloomFilter current = filter;
+      database.streamUsernames(
+          settledUserId, (userId, username) -> addLoaded(current, userId, username));
+    } catch (RuntimeException e) {
+      log.warn("Failed to catch up on new usernames", e);
+      return false;
+    }
+    caughtUpAt = now;
+    if (now - settlingSince >= SETTLE_NANOS) {
+      settledUserId = settlingUserId;
+      settlingUserId = maxUserId;
+      settlingSince = now;
+    }
+    if (entries > filter.capacity()) {
+      try {
+        rebuild(entries);
+      } catch (RuntimeException e) {
+        log.warn("Failed to rebuild the username filter, keeping the current one", e);
+      }
+    }
+    return true;
+  }
+
+  private void addLoaded(BloomFilter target, Long userId, String username) {
+    target.add(username);
+    if (userId > maxUserId) {
+      maxUserId = userId;
+      entries++;
+    }
+  }
+
+  // Readers keep using the old filter until the new one is complete
+  private void rebuild(long expectedUsers) {
+    long started = System.nanoTime();
+    BloomFilter next =
+        new BloomFilter(Math.max(MIN_CAPACITY, 2 * expectedUsers), FALSE_POSITIVE_RATE);
+    long[] loaded = new long[2];
+    database.streamUsernames(
+        0,
+        (userId, username) -> {
+          next.add(username);
+          loaded[0]++;
+          loaded[1] = Math.max(loaded[1], userId);
+        });
+    filter = next;
+    entries = loaded[0];
+    maxUserId = loaded[1];
+    log.info(
+        "Loaded {} usernames into a {} KB filter in {} ms",
+        entries,
+        next.sizeInBytes() / 1024,
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+  }
+}
@@ -0,0 +1,66 @@
+package com.atm.service.user;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Bounded LRU cache of username to user id. Usernames are at most 50 characters, so the entry bound
+ * also bounds memory. Usernames are never renamed or reused, so hits stay valid for a long TTL.
+ * Misses are cached too, for a short TTL, so a mistyped recipient that is retried does not go to
+ * the database every time, while a user registered by another terminal becomes visible soon.
+ */
+final class UserIdCache {
+  private final int maxEntries;
+  private final long ttlNanos;
+  private final long negativeTtlNanos;
+  private final Map<String, CachedId> entries;
+
+  private static final class CachedId {
+    // Null when the username does not exist
+    final Long userId;
+    final long expiresAtNanos;
+
+    CachedId(Long userId, long expiresAtNanos) {
+      this.userId = userId;
+      this.expiresAtNanos = expiresAtNanos;
+    }
+  }
+
+  UserIdCache(int maxEntries, long ttlNanos, long negativeTtlNanos) {
+    this.maxEntries = maxEntries;
+    this.ttlNanos = ttlNanos;
+    this.negativeTtlNanos = negativeTtlNanos;
+    this.entries =
+        new LinkedHashMap<String, CachedId>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, CachedId> eldest) {
+            return size() > UserIdCache.this.maxEntries;
+          }
+        };
+  }
+
+  /** Returns the cached id, loading and caching it on a miss. The loader runs outside the lock. */
+  Optional<Long> get(String username, Function<String, Optional<Long>> loader) {
+    long now = System.nanoTime();
+    synchronized (this) {
+      CachedId cached = entries.get(username);
+      if (cached != null && now - cached.expiresAtNanos < 0) {
+        return Optional.ofNullable(cached.userId);
+      }
+    }
+
+    Optional<Long> userId = loader.apply(username);
+    long expiresAt = System.nanoTime() + (userId.isPresent() ? ttlNanos : negativeTtlNanos);
+    synchronized (this) {
+      entries.put(username, new CachedId(userId.orElse(null), expiresAt));
+    }
+    return userId;
+  }
+
+  /** Drops the entry of a username that was just created, it may be cached as missing. */
+  synchronized void invalidate(String username) {
+    entries.remove(username);
+  }
+}
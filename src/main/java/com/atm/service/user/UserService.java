@@ -1,15 +1,27 @@
 package com.atm.service.user;
 
+import com.atm.model.ImportResult;
 import com.atm.model.Session;
 import com.atm.model.User;
+import com.atm.model.UserImport;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserService {
   User register(String username, String password);
 
+  /**
+   * Registers a chunk of users at once. Invalid lines are rejected and existing usernames reported
+   * as duplicates without failing the rest of the chunk.
+   */
+  ImportResult importUsers(List<UserImport> users);
+
   Optional<Session> login(String username, String password);
 
   void logout(Session session);
 
   Optional<User> getUserByUsername(String username);
+
+  /** Resolves a username to its id through a cache, e.g. for transfer recipients. */
+  Optional<Long> getUserIdByUsername(String username);
 }
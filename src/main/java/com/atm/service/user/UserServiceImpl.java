@@ -2,20 +2,55 @@ package com.atm.service.user;
 
 import com.atm.database.Database;
 import com.atm.exception.ActiveSessionException;
+import com.atm.model.ImportResult;
 import com.atm.model.Session;
 import com.atm.model.User;
+import com.atm.model.UserImport;
 import com.atm.service.session.SessionService;
 import com.atm.validator.RegistrationValidator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import lombok.RequiredArgsConstructor;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.mindrot.jbcrypt.BCrypt;
 
 @Slf4j
-@RequiredArgsConstructor
 public class UserServiceImpl implements UserService {
+  static final int USER_ID_CACHE_SIZE = 10_000;
+
   private final Database database;
   private final SessionService sessionService;
+  private final KnownUsernames knownUsernames;
+
+  private final UserIdCache userIds =
+      new UserIdCache(
+          USER_ID_CACHE_SIZE, TimeUnit.MINUTES.toNanos(10), TimeUnit.SECONDS.toNanos(5));
+
+  // BCrypt dominates a bulk import, spread it over every core
+  private final ForkJoinPool hashingPool =
+      new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+  public UserServiceImpl(Database database, SessionService sessionService) {
+    this(database, sessionService, null);
+  }
+
+  /**
+   * @param knownUsernames answers lookups of usernames that do not exist without the database,
+   *     every lookup goes to the database when null
+   */
+  public UserServiceImpl(
+      Database database, SessionService sessionService, KnownUsernames knownUsernames) {
+    this.database = database;
+    this.sessionService = sessionService;
+    this.knownUsernames = knownUsernames;
+  }
 
   @Override
   public User register(String username, String password) {
@@ -24,22 +59,97 @@ public class UserServiceImpl implements UserService {
     RegistrationValidator.validateUsername(username);
     RegistrationValidator.validatePassword(password);
 
-    String passwordHash = BCrypt.hashpw(password, BCrypt.gensalt());
-
-    User user = database.getUserByUsername(username).orElse(null);
-
-    if (user != null) {
+    // Fail before paying for the hash
+    if (mightExist(username) && database.getUserIdByUsername(username).isPresent()) {
       log.warn("User already exists: {}", username);
       throw new IllegalArgumentException("User already exists");
     }
 
+    String passwordHash = BCrypt.hashpw(password, BCrypt.gensalt());
     Long userId = database.createUser(username, passwordHash);
+    userIds.invalidate(username);
+    if (knownUsernames != null) {
+      knownUsernames.add(username);
+    }
 
     log.info("Successfully registered user: {}", username);
 
     return User.builder().id(userId).username(username).passwordHash(passwordHash).build();
   }
 
+  @Override
+  public ImportResult importUsers(List<UserImport> users) {
+    log.info("Attempting to import {} users", users.size());
+
+    ImportResult result = ImportResult.builder().build();
+    List<UserImport> accepted = new ArrayList<>(users.size());
+    Set<String> usernames = new HashSet<>();
+    for (UserImport user : users) {
+      try {
+        RegistrationValidator.validateUsername(user.getUsername());
+        RegistrationValidator.validatePassword(user.getPassword());
+      } catch (IllegalArgumentException e) {
+        result.getRejected().add("line " + user.getLine() + ": " + e.getMessage());
+        continue;
+      }
+      if (!usernames.add(user.getUsername())) {
+        result.getDuplicates().add(user.getUsername());
+        continue;
+      }
+      accepted.add(user);
+    }
+
+    if (accepted.isEmpty()) {
+      return result;
+    }
+
+    // Skip hashing for accounts that already exist, e.g. when an interrupted import is re-run
+    usernames.removeIf(username -> !mightExist(username));
+    Map<String, Long> existingIds =
+        usernames.isEmpty() ? Collections.emptyMap() : database.getUserIdsByUsernames(usernames);
+    if (!existingIds.isEmpty()) {
+      accepted.removeIf(user -> existingIds.containsKey(user.getUsername()));
+      result.getDuplicates().addAll(existingIds.keySet());
+    }
+
+    if (accepted.isEmpty()) {
+      return result;
+    }
+
+    List<User> hashed =
+        hashingPool
+            .submit(
+                () ->
+                    accepted
+                        .parallelStream()
+                        .map(
+                            user ->
+                                User.builder()
+                                    .username(user.getUsername())
+                                    .passwordHash(
+                                        BCrypt.hashpw(user.getPassword(), BCrypt.gensalt()))
+                                    .build())
+                        .collect(Collectors.toList()))
+            .join();
+
+    List<String> existing = database.createUsers(hashed);
+    for (User user : hashed) {
+      userIds.invalidate(user.getUsername());
+      if (knownUsernames != null) {
+        knownUsernames.add(user.getUsername());
+      }
+    }
+    result.getDuplicates().addAll(existing);
+    result.setImported(hashed.size() - existing.size());
+
+    log.info(
+        "Imported {} users, {} duplicates, {} rejected",
+        result.getImported(),
+        result.getDuplicates().size(),
+        result.getRejected().size());
+    return result;
+  }
+
   @Override
   public Optional<Session> login(String username, String password) {
     log.info("Attempting login for user: {}", username);
@@ -65,6 +175,7 @@ public class UserServiceImpl implements UserService {
                   .id(sessionId)
                   .userId(user.getId())
                   .username(user.getUsername())
+                  .token(sessionService.getToken(sessionId).orElse(null))
                   .build();
             })
         .filter(session -> session != null);
@@ -80,6 +191,18 @@ public class UserServiceImpl implements UserService {
 
   @Override
   public Optional<User> getUserByUsername(String username) {
-    return database.getUserByUsername(username);
+    return mightExist(username) ? database.getUserByUsername(username) : Optional.empty();
+  }
+
+  @Override
+  public Optional<Long> getUserIdByUsername(String username) {
+    if (!mightExist(username)) {
+      return Optional.empty();
+    }
+    return userIds.get(username, database::getUserIdByUsername);
+  }
+
+  private boolean mightExist(String username) {
+    return knownUsernames == null || knownUsernames.mightExist(username);
   }
 }
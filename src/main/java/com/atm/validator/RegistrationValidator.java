@@ -1,6 +1,12 @@
 package com.atm.validator;
 
+import java.util.regex.Pattern;
+
 public class RegistrationValidator {
+  // Compiled once, validation runs per line during bulk imports
+  private static final Pattern USERNAME_PATTERN = Pattern.compile("^[a-zA-Z0-9]+$");
+  private static final Pattern PASSWORD_PATTERN =
+      Pattern.compile("^(?=.*[A-Z])(?=.*[a-z])(?=.*\\d).+$");
 
   public static void validateUsername(String username) {
     if (username == null || username.trim().isEmpty()) {
@@ -9,7 +15,7 @@ public class RegistrationValidator {
     if (username.length() < 3 || username.length() > 30) {
       throw new IllegalArgumentException("Username must be between 3 and 30 characters.");
     }
-    if (!username.matches("^[a-zA-Z0-9]+$")) {
+    if (!USERNAME_PATTERN.matcher(username).matches()) {
       throw new IllegalArgumentException("Username must contain only alphanumeric characters.");
     }
   }
@@ -21,7 +27,7 @@ public class RegistrationValidator {
     if (password.length() < 8) {
       throw new IllegalArgumentException("Password must be at least 8 characters long.");
     }
-    if (!password.matches("^(?=.*[A-Z])(?=.*[a-z])(?=.*\\d).+$")) {
+    if (!PASSWORD_PATTERN.matcher(password).matches()) {
       throw new IllegalArgumentException(
           "Password must contain at least one uppercase letter, one lowercase letter, and one number.");
     }
@@ -2,6 +2,7 @@ package com.atm.unit.command;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -12,10 +13,10 @@ import com.atm.command.BalanceCommand;
 import com.atm.command.Command;
 import com.atm.command.SessionHolder;
 import com.atm.exception.CommandException;
+import com.atm.model.Money;
 import com.atm.model.Session;
 import com.atm.service.balance.BalanceService;
 import com.atm.service.session.SessionService;
-import java.math.BigDecimal;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -57,7 +58,7 @@ class BalanceCommandTest {
     Session session = mock(Session.class);
     when(session.getUserId()).thenReturn(TEST_USER_ID);
     when(sessionHolder.getCurrentSession()).thenReturn(session);
-    when(sessionService.hasActiveSession(TEST_USER_ID)).thenReturn(false);
+    when(sessionService.isActive(any())).thenReturn(false);
 
     CommandException exception =
         assertThrows(CommandException.class, () -> command.execute("balance"));
@@ -71,8 +72,8 @@ class BalanceCommandTest {
     Session session = mock(Session.class);
     when(session.getUserId()).thenReturn(TEST_USER_ID);
     when(sessionHolder.getCurrentSession()).thenReturn(session);
-    when(sessionService.hasActiveSession(TEST_USER_ID)).thenReturn(true);
-    when(balanceService.getBalance(TEST_USER_ID)).thenReturn(new BigDecimal(10L));
+    when(sessionService.isActive(any())).thenReturn(true);
+    when(balanceService.getBalance(TEST_USER_ID)).thenReturn(Money.parse("10"));
 
     command.execute("balance");
 
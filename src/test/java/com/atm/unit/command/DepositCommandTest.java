@@ -2,6 +2,7 @@ package com.atm.unit.command;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -11,11 +12,11 @@ import com.atm.command.Command;
 import com.atm.command.DepositCommand;
 import com.atm.command.SessionHolder;
 import com.atm.exception.CommandException;
+import com.atm.model.Money;
 import com.atm.model.Session;
-import com.atm.service.balance.BalanceService;
+import com.atm.model.TransactionResult;
 import com.atm.service.session.SessionService;
 import com.atm.service.transaction.TransactionService;
-import java.math.BigDecimal;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -28,7 +29,6 @@ import org.mockito.quality.Strictness;
 @MockitoSettings(strictness = Strictness.LENIENT)
 class DepositCommandTest {
   @Mock private TransactionService transactionService;
-  @Mock private BalanceService balanceService;
   @Mock private SessionService sessionService;
   @Mock private SessionHolder sessionHolder;
 
@@ -38,7 +38,7 @@ class DepositCommandTest {
 
   @BeforeEach
   void setUp() {
-    command = new DepositCommand(transactionService, balanceService, sessionHolder, sessionService);
+    command = new DepositCommand(transactionService, sessionHolder, sessionService);
   }
 
   @Test
@@ -57,7 +57,7 @@ class DepositCommandTest {
 
     Session session = mock(Session.class);
     when(sessionHolder.getCurrentSession()).thenReturn(session);
-    when(sessionService.hasActiveSession(TEST_USER_ID)).thenReturn(false);
+    when(sessionService.isActive(any())).thenReturn(false);
 
     CommandException exception =
         assertThrows(CommandException.class, () -> command.execute("1.00"));
@@ -71,7 +71,7 @@ class DepositCommandTest {
     Session session = mock(Session.class);
     when(sessionHolder.getCurrentSession()).thenReturn(session);
     when(session.getUserId()).thenReturn(TEST_USER_ID);
-    when(sessionService.hasActiveSession(TEST_USER_ID)).thenReturn(true);
+    when(sessionService.isActive(any())).thenReturn(true);
 
     CommandException exception =
         assertThrows(CommandException.class, () -> command.execute("-asd"));
@@ -84,13 +84,14 @@ class DepositCommandTest {
     Session session = mock(Session.class);
     when(sessionHolder.getCurrentSession()).thenReturn(session);
     when(session.getUserId()).thenReturn(TEST_USER_ID);
-    when(sessionService.hasActiveSession(TEST_USER_ID)).thenReturn(true);
+    when(sessionService.isActive(any())).thenReturn(true);
 
-    when(balanceService.getBalance(TEST_USER_ID)).thenReturn(BigDecimal.valueOf(1000));
+    when(transactionService.deposit(TEST_USER_ID, Money.parse("100")))
+        .thenReturn(
+            TransactionResult.builder().transactionId(1L).balance(Money.parse("1000")).build());
 
     command.execute("100");
 
-    verify(transactionService).deposit(TEST_USER_ID, BigDecimal.valueOf(100));
-    verify(balanceService).getBalance(TEST_USER_ID);
+    verify(transactionService).deposit(TEST_USER_ID, Money.parse("100"));
   }
 }
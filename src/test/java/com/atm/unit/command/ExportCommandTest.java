@@ -0,0 +1,93 @@
+package com.atm.unit.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.atm.command.Command;
+import com.atm.command.ExportCommand;
+import com.atm.exception.CommandException;
+import com.atm.model.ExportResult;
+import com.atm.model.TransactionExport;
+import com.atm.service.transaction.TransactionService;
+import com.atm.service.user.UserService;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ExportCommandTest {
+
+  @Mock private UserService userService;
+  @Mock private TransactionService transactionService;
+
+  private Command command;
+
+  @BeforeEach
+  void setUp() {
+    command = new ExportCommand(userService, transactionService);
+    when(transactionService.export(any()))
+        .thenReturn(ExportResult.builder().rows(10).bytes(400).elapsedMillis(5).build());
+  }
+
+  @Test
+  void execute_noArguments_ThrowsException() {
+    assertThrows(CommandException.class, () -> command.execute());
+    verifyNoInteractions(transactionService);
+  }
+
+  @Test
+  void execute_invalidDate_ThrowsException() {
+    CommandException exception =
+        assertThrows(
+            CommandException.class, () -> command.execute("ledger.csv", "--from", "2026/01/01"));
+    assertEquals("Invalid date format, expected yyyy-mm-dd", exception.getMessage());
+    verifyNoInteractions(transactionService);
+  }
+
+  @Test
+  void execute_unknownUser_ThrowsException() {
+    when(userService.getUserIdByUsername("ghost")).thenReturn(Optional.empty());
+
+    CommandException exception =
+        assertThrows(
+            CommandException.class, () -> command.execute("ledger.csv", "--user", "ghost"));
+    assertEquals("User not found", exception.getMessage());
+    verifyNoInteractions(transactionService);
+  }
+
+  @Test
+  void execute_allOptions_BuildsExport() {
+    when(userService.getUserIdByUsername("alice")).thenReturn(Optional.of(7L));
+
+    command.execute(
+        "ledger.bin",
+        "--format",
+        "binary",
+        "--from",
+        "2026-01-01",
+        "--to",
+        "2026-02-01",
+        "--user",
+        "alice");
+
+    ArgumentCaptor<TransactionExport> captor = ArgumentCaptor.forClass(TransactionExport.class);
+    verify(transactionService).export(captor.capture());
+    TransactionExport export = captor.getValue();
+    assertEquals(Paths.get("ledger.bin"), export.getFile());
+    assertEquals(TransactionExport.Format.BINARY, export.getFormat());
+    assertEquals(LocalDate.of(2026, 1, 1), export.getFrom());
+    assertEquals(LocalDate.of(2026, 2, 1), export.getTo());
+    assertEquals(7L, export.getUserId());
+  }
+}
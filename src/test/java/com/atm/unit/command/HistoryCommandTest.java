@@ -0,0 +1,129 @@
+package com.atm.unit.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+import com.atm.command.Command;
+import com.atm.command.HistoryCommand;
+import com.atm.command.SessionHolder;
+import com.atm.exception.CommandException;
+import com.atm.model.Money;
+import com.atm.model.Session;
+import com.atm.model.Transaction;
+import com.atm.service.session.SessionService;
+import com.atm.service.transaction.TransactionService;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class HistoryCommandTest {
+
+  @Mock private TransactionService transactionService;
+  @Mock private SessionService sessionService;
+  @Mock private SessionHolder sessionHolder;
+
+  private Command command;
+  private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+  private PrintStream originalOut;
+
+  private static final Long TEST_USER_ID = 1L;
+
+  @BeforeEach
+  void setUp() {
+    command = new HistoryCommand(transactionService, sessionHolder, sessionService);
+    originalOut = System.out;
+    System.setOut(new PrintStream(output));
+  }
+
+  @AfterEach
+  void tearDown() {
+    System.setOut(originalOut);
+  }
+
+  private void givenActiveSession() {
+    Session session = mock(Session.class);
+    when(session.getUserId()).thenReturn(TEST_USER_ID);
+    when(sessionHolder.getCurrentSession()).thenReturn(session);
+    when(sessionService.isActive(any())).thenReturn(true);
+  }
+
+  @Test
+  void execute_unknownOption_ThrowsException() {
+    CommandException exception =
+        assertThrows(CommandException.class, () -> command.execute("--after", "10"));
+    assertEquals("Usage: history [--before <id>] [--limit <n>]", exception.getMessage());
+    verifyNoInteractions(transactionService);
+  }
+
+  @Test
+  void execute_invalidNumber_ThrowsException() {
+    CommandException exception =
+        assertThrows(CommandException.class, () -> command.execute("--limit", "ten"));
+    assertEquals("Invalid number format", exception.getMessage());
+  }
+
+  @Test
+  void execute_hasNoActiveSession_ThrowsException() {
+    when(sessionHolder.getCurrentSession()).thenReturn(null);
+
+    CommandException exception = assertThrows(CommandException.class, () -> command.execute());
+    assertEquals("No active session, Please login first!", exception.getMessage());
+    verifyNoInteractions(transactionService);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void execute_fullPage_PrintsEntriesAndCursor() {
+    givenActiveSession();
+    when(transactionService.history(eq(TEST_USER_ID), eq(50L), eq(1), any(Consumer.class)))
+        .thenAnswer(
+            invocation -> {
+              Consumer<Transaction> consumer = invocation.getArgument(3);
+              consumer.accept(
+                  Transaction.builder()
+                      .id(42L)
+                      .fromUserId(TEST_USER_ID)
+                      .toUserId(7L)
+                      .amount(Money.parse("10.0000"))
+                      .type(Transaction.TransactionType.TRANSFER)
+                      .build());
+              return 42L;
+            });
+
+    command.execute("--before", "50", "--limit", "1");
+
+    String printed = output.toString();
+    assertTrue(printed.contains("#42"));
+    assertTrue(printed.contains("-$10.0000 to user 7"));
+    assertTrue(printed.contains("More: history --before 42"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void execute_noEntries_PrintsEmptyMessage() {
+    givenActiveSession();
+    when(transactionService.history(eq(TEST_USER_ID), isNull(), anyInt(), any(Consumer.class)))
+        .thenReturn(null);
+
+    command.execute();
+
+    assertTrue(output.toString().contains("No transactions found."));
+    verify(transactionService).history(eq(TEST_USER_ID), isNull(), eq(20), any(Consumer.class));
+  }
+}
@@ -0,0 +1,81 @@
+package com.atm.unit.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+import com.atm.command.Command;
+import com.atm.command.HotAccountCommand;
+import com.atm.exception.CommandException;
+import com.atm.service.transaction.TransactionService;
+import com.atm.service.user.UserService;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class HotAccountCommandTest {
+
+  @Mock private UserService userService;
+  @Mock private TransactionService transactionService;
+
+  private Command command;
+
+  @BeforeEach
+  void setUp() {
+    command = new HotAccountCommand(userService, transactionService);
+    when(userService.getUserIdByUsername("merchant")).thenReturn(Optional.of(7L));
+  }
+
+  @Test
+  void execute_missingSlots_ThrowsException() {
+    CommandException exception =
+        assertThrows(CommandException.class, () -> command.execute("merchant"));
+    assertEquals("Usage: hot-account <username> <slots>", exception.getMessage());
+    verifyNoInteractions(transactionService);
+  }
+
+  @Test
+  void execute_invalidSlots_ThrowsException() {
+    CommandException exception =
+        assertThrows(CommandException.class, () -> command.execute("merchant", "many"));
+    assertEquals("Invalid number of slots: many", exception.getMessage());
+    verifyNoInteractions(transactionService);
+  }
+
+  @Test
+  void execute_unknownUser_ThrowsException() {
+    when(userService.getUserIdByUsername("ghost")).thenReturn(Optional.empty());
+
+    CommandException exception =
+        assertThrows(CommandException.class, () -> command.execute("ghost", "8"));
+    assertEquals("User not found", exception.getMessage());
+    verifyNoInteractions(transactionService);
+  }
+
+  @Test
+  void execute_rejectedSlots_ThrowsException() {
+    doThrow(new IllegalArgumentException("Invalid number of slots, must be between 0 and 64"))
+        .when(transactionService)
+        .setBalanceSlots(anyLong(), anyInt());
+
+    CommandException exception =
+        assertThrows(CommandException.class, () -> command.execute("merchant", "100"));
+    assertEquals("Invalid number of slots, must be between 0 and 64", exception.getMessage());
+  }
+
+  @Test
+  void execute_validArguments_SetsSlots() {
+    command.execute("merchant", "8");
+
+    verify(transactionService).setBalanceSlots(7L, 8);
+  }
+}
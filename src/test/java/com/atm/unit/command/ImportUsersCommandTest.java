@@ -0,0 +1,74 @@
+package com.atm.unit.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+import com.atm.command.Command;
+import com.atm.command.ImportUsersCommand;
+import com.atm.exception.CommandException;
+import com.atm.model.ImportResult;
+import com.atm.model.UserImport;
+import com.atm.service.user.UserService;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ImportUsersCommandTest {
+
+  @Mock private UserService userService;
+
+  @TempDir Path tempDir;
+
+  private Command command;
+
+  @BeforeEach
+  void setUp() {
+    command = new ImportUsersCommand(userService);
+    when(userService.importUsers(anyList())).thenReturn(ImportResult.builder().imported(2).build());
+  }
+
+  @Test
+  void execute_noArguments_ThrowsException() {
+    CommandException exception = assertThrows(CommandException.class, () -> command.execute());
+    assertEquals("Usage: import-users <file>", exception.getMessage());
+    verifyNoInteractions(userService);
+  }
+
+  @Test
+  void execute_missingFile_ThrowsException() {
+    assertThrows(
+        CommandException.class, () -> command.execute(tempDir.resolve("missing.txt").toString()));
+    verifyNoInteractions(userService);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void execute_validFile_ImportsParsedLines() throws Exception {
+    Path file =
+        Files.writeString(
+            tempDir.resolve("users.txt"), "# partner bank\nalice1 Password1\n\nbob1,Password2\n");
+
+    command.execute(file.toString());
+
+    ArgumentCaptor<List<UserImport>> captor = ArgumentCaptor.forClass(List.class);
+    verify(userService).importUsers(captor.capture());
+    List<UserImport> users = captor.getValue();
+    assertEquals(2, users.size());
+    assertEquals("bob1", users.get(1).getUsername());
+    assertEquals("Password2", users.get(1).getPassword());
+    assertEquals(4, users.get(1).getLine());
+  }
+}
@@ -41,12 +41,12 @@ class LogoutCommandTest {
         Session.builder().id(TEST_SESSION_ID).userId(TEST_USER_ID).username(TEST_USERNAME).build();
 
     when(sessionHolder.getCurrentSession()).thenReturn(session);
-    when(sessionService.hasActiveSession(TEST_USER_ID)).thenReturn(true);
+    when(sessionService.isActive(any())).thenReturn(true);
 
     logoutCommand.execute();
 
     verify(sessionHolder).getCurrentSession();
-    verify(sessionService).hasActiveSession(TEST_USER_ID);
+    verify(sessionService).isActive(any());
     verify(sessionHolder).terminateSession();
     verify(sessionService).terminateSession(TEST_SESSION_ID);
   }
@@ -71,14 +71,14 @@ class LogoutCommandTest {
         Session.builder().id(TEST_SESSION_ID).userId(TEST_USER_ID).username(TEST_USERNAME).build();
 
     when(sessionHolder.getCurrentSession()).thenReturn(session);
-    when(sessionService.hasActiveSession(TEST_USER_ID)).thenReturn(false);
+    when(sessionService.isActive(any())).thenReturn(false);
 
     CommandException exception =
         assertThrows(CommandException.class, () -> logoutCommand.execute());
     assertEquals("No active session, Please login first!", exception.getMessage());
 
     verify(sessionHolder).getCurrentSession();
-    verify(sessionService).hasActiveSession(TEST_USER_ID);
+    verify(sessionService).isActive(any());
     verify(sessionHolder).terminateSession();
   }
 
@@ -89,7 +89,7 @@ class LogoutCommandTest {
         Session.builder().id(TEST_SESSION_ID).userId(TEST_USER_ID).username(TEST_USERNAME).build();
 
     when(sessionHolder.getCurrentSession()).thenReturn(session);
-    when(sessionService.hasActiveSession(TEST_USER_ID)).thenReturn(true);
+    when(sessionService.isActive(any())).thenReturn(true);
     doThrow(new RuntimeException("Database error"))
         .when(sessionService)
         .terminateSession(TEST_SESSION_ID);
@@ -99,7 +99,7 @@ class LogoutCommandTest {
     assertEquals("Failed to logout", exception.getMessage());
 
     verify(sessionHolder).getCurrentSession();
-    verify(sessionService).hasActiveSession(TEST_USER_ID);
+    verify(sessionService).isActive(any());
     verify(sessionService).terminateSession(TEST_SESSION_ID);
   }
 }
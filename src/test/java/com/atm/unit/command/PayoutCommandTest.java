@@ -0,0 +1,121 @@
+package com.atm.unit.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.atm.command.Command;
+import com.atm.command.PayoutCommand;
+import com.atm.command.SessionHolder;
+import com.atm.exception.CommandException;
+import com.atm.exception.InsufficientFundsException;
+import com.atm.model.Money;
+import com.atm.model.PayoutItem;
+import com.atm.model.PayoutResult;
+import com.atm.model.Session;
+import com.atm.service.session.SessionService;
+import com.atm.service.transaction.TransactionService;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PayoutCommandTest {
+
+  @Mock private TransactionService transactionService;
+  @Mock private SessionService sessionService;
+  @Mock private SessionHolder sessionHolder;
+
+  @TempDir Path tempDir;
+
+  private Command command;
+
+  private static final Long TEST_USER_ID = 1L;
+
+  @BeforeEach
+  void setUp() {
+    command = new PayoutCommand(transactionService, sessionHolder, sessionService);
+  }
+
+  private void givenActiveSession() {
+    Session session = mock(Session.class);
+    when(session.getUserId()).thenReturn(TEST_USER_ID);
+    when(sessionHolder.getCurrentSession()).thenReturn(session);
+    when(sessionService.isActive(any())).thenReturn(true);
+  }
+
+  @Test
+  void execute_noArguments_ThrowsException() {
+    CommandException exception = assertThrows(CommandException.class, () -> command.execute());
+    assertEquals("Usage: payout <file>", exception.getMessage());
+    verifyNoInteractions(transactionService);
+  }
+
+  @Test
+  void execute_hasNoActiveSession_ThrowsException() {
+    when(sessionHolder.getCurrentSession()).thenReturn(null);
+
+    CommandException exception =
+        assertThrows(CommandException.class, () -> command.execute("payout.txt"));
+    assertEquals("No active session, Please login first!", exception.getMessage());
+    verifyNoInteractions(transactionService);
+  }
+
+  @Test
+  void execute_invalidLine_ThrowsException() throws Exception {
+    givenActiveSession();
+    Path file = Files.writeString(tempDir.resolve("payout.txt"), "alice 10\nbob\n");
+
+    CommandException exception =
+        assertThrows(CommandException.class, () -> command.execute(file.toString()));
+    assertEquals("Invalid payout line 2: bob", exception.getMessage());
+    verifyNoInteractions(transactionService);
+  }
+
+  @Test
+  void execute_insufficientFunds_ThrowsException() throws Exception {
+    givenActiveSession();
+    Path file = Files.writeString(tempDir.resolve("payout.txt"), "alice 10\n");
+    when(transactionService.transferBatch(eq(TEST_USER_ID), anyList()))
+        .thenThrow(new InsufficientFundsException("Insufficient funds for payout"));
+
+    CommandException exception =
+        assertThrows(CommandException.class, () -> command.execute(file.toString()));
+    assertEquals("Insufficient funds for payout", exception.getMessage());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void execute_validFile_Success() throws Exception {
+    givenActiveSession();
+    Path file =
+        Files.writeString(tempDir.resolve("payout.txt"), "# payroll\nalice 10\n\nbob,25.50\n");
+    when(transactionService.transferBatch(eq(TEST_USER_ID), anyList()))
+        .thenReturn(
+            PayoutResult.builder()
+                .recipients(2)
+                .totalAmount(Money.parse("35.50"))
+                .balance(Money.parse("64.50"))
+                .build());
+
+    command.execute(file.toString());
+
+    ArgumentCaptor<List<PayoutItem>> captor = ArgumentCaptor.forClass(List.class);
+    verify(transactionService).transferBatch(eq(TEST_USER_ID), captor.capture());
+    assertEquals(2, captor.getValue().size());
+    assertEquals("bob", captor.getValue().get(1).getUsername());
+    assertEquals(Money.parse("25.50"), captor.getValue().get(1).getAmount());
+  }
+}
@@ -0,0 +1,142 @@
+package com.atm.unit.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.atm.command.Command;
+import com.atm.command.SessionHolder;
+import com.atm.command.SummaryCommand;
+import com.atm.exception.CommandException;
+import com.atm.model.DailyTotal;
+import com.atm.model.Money;
+import com.atm.model.Session;
+import com.atm.service.session.SessionService;
+import com.atm.service.transaction.TransactionService;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class SummaryCommandTest {
+
+  @Mock private TransactionService transactionService;
+  @Mock private SessionService sessionService;
+  @Mock private SessionHolder sessionHolder;
+
+  private Command command;
+  private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+  private PrintStream originalOut;
+
+  private static final Long TEST_USER_ID = 1L;
+
+  @BeforeEach
+  void setUp() {
+    command = new SummaryCommand(transactionService, sessionHolder, sessionService);
+    originalOut = System.out;
+    System.setOut(new PrintStream(output));
+  }
+
+  @AfterEach
+  void tearDown() {
+    System.setOut(originalOut);
+  }
+
+  private void givenActiveSession() {
+    Session session = mock(Session.class);
+    when(session.getUserId()).thenReturn(TEST_USER_ID);
+    when(sessionHolder.getCurrentSession()).thenReturn(session);
+    when(sessionService.isActive(any())).thenReturn(true);
+  }
+
+  @Test
+  void execute_unknownOption_ThrowsException() {
+    CommandException exception =
+        assertThrows(CommandException.class, () -> command.execute("--day", "2026-02-01"));
+    assertEquals(
+        "Usage: summary [--from <yyyy-mm-dd>] [--to <yyyy-mm-dd>]", exception.getMessage());
+    verifyNoInteractions(transactionService);
+  }
+
+  @Test
+  void execute_invalidDate_ThrowsException() {
+    CommandException exception =
+        assertThrows(CommandException.class, () -> command.execute("--from", "yesterday"));
+    assertEquals("Invalid date format, expected yyyy-mm-dd", exception.getMessage());
+  }
+
+  @Test
+  void execute_hasNoActiveSession_ThrowsException() {
+    when(sessionHolder.getCurrentSession()).thenReturn(null);
+
+    CommandException exception = assertThrows(CommandException.class, () -> command.execute());
+    assertEquals("No active session, Please login first!", exception.getMessage());
+    verifyNoInteractions(transactionService);
+  }
+
+  @Test
+  void execute_noRange_ReadsToday() {
+    givenActiveSession();
+    LocalDate today = LocalDate.now(ZoneOffset.UTC);
+    when(transactionService.dailyTotals(any(), any(), any())).thenReturn(List.of());
+
+    command.execute();
+
+    verify(transactionService).dailyTotals(TEST_USER_ID, today, today.plusDays(1));
+    assertTrue(output.toString().contains("No transactions found."));
+  }
+
+  @Test
+  void execute_range_PrintsTotalsWithDirection() {
+    givenActiveSession();
+    LocalDate from = LocalDate.of(2026, 2, 1);
+    LocalDate to = LocalDate.of(2026, 3, 1);
+    when(transactionService.dailyTotals(TEST_USER_ID, from, to))
+        .thenReturn(
+            List.of(
+                DailyTotal.builder()
+                    .day(from)
+                    .type(DailyTotal.Type.DEPOSIT)
+                    .count(2)
+                    .amount(Money.parse("150"))
+                    .build(),
+                DailyTotal.builder()
+                    .day(from)
+                    .type(DailyTotal.Type.WITHDRAW)
+                    .count(1)
+                    .amount(Money.parse("20"))
+                    .build()));
+
+    command.execute("--from", "2026-02-01", "--to", "2026-03-01");
+
+    String printed = output.toString();
+    assertTrue(printed.contains("2026-02-01  DEPOSIT  2 transactions  +$150.0000"));
+    assertTrue(printed.contains("2026-02-01  WITHDRAW  1 transaction  -$20.0000"));
+  }
+
+  @Test
+  void execute_invalidRange_ThrowsServiceMessage() {
+    givenActiveSession();
+    when(transactionService.dailyTotals(any(), any(), any()))
+        .thenThrow(new IllegalArgumentException("Invalid range, --from must be before --to"));
+
+    CommandException exception =
+        assertThrows(
+            CommandException.class,
+            () -> command.execute("--from", "2026-03-01", "--to", "2026-02-01"));
+    assertEquals("Invalid range, --from must be before --to", exception.getMessage());
+  }
+}
@@ -8,12 +8,11 @@ import com.atm.command.Command;
 import com.atm.command.SessionHolder;
 import com.atm.command.TransferCommand;
 import com.atm.exception.CommandException;
+import com.atm.model.Money;
 import com.atm.model.Session;
-import com.atm.model.User;
 import com.atm.service.session.SessionService;
 import com.atm.service.transaction.TransactionService;
 import com.atm.service.user.UserService;
-import java.math.BigDecimal;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -59,7 +58,7 @@ class TransferCommandTest {
     Session session = mock(Session.class);
     when(session.getUserId()).thenReturn(TEST_USER_ID);
     when(sessionHolder.getCurrentSession()).thenReturn(session);
-    when(sessionService.hasActiveSession(TEST_USER_ID)).thenReturn(false);
+    when(sessionService.isActive(any())).thenReturn(false);
 
     CommandException exception =
         assertThrows(CommandException.class, () -> command.execute(TARGET_USERNAME, "100.00"));
@@ -74,7 +73,7 @@ class TransferCommandTest {
     Session session = mock(Session.class);
     when(session.getUserId()).thenReturn(TEST_USER_ID);
     when(sessionHolder.getCurrentSession()).thenReturn(session);
-    when(sessionService.hasActiveSession(TEST_USER_ID)).thenReturn(true);
+    when(sessionService.isActive(any())).thenReturn(true);
 
     CommandException exception =
         assertThrows(CommandException.class, () -> command.execute(TARGET_USERNAME, "invalid"));
@@ -88,30 +87,28 @@ class TransferCommandTest {
     Session session = mock(Session.class);
     when(session.getUserId()).thenReturn(TEST_USER_ID);
     when(sessionHolder.getCurrentSession()).thenReturn(session);
-    when(sessionService.hasActiveSession(TEST_USER_ID)).thenReturn(true);
-    when(userService.getUserByUsername(TARGET_USERNAME)).thenReturn(Optional.empty());
+    when(sessionService.isActive(any())).thenReturn(true);
+    when(userService.getUserIdByUsername(TARGET_USERNAME)).thenReturn(Optional.empty());
 
     CommandException exception =
         assertThrows(CommandException.class, () -> command.execute(TARGET_USERNAME, "100.00"));
     assertEquals("User not found", exception.getMessage());
-    verify(userService).getUserByUsername(TARGET_USERNAME);
+    verify(userService).getUserIdByUsername(TARGET_USERNAME);
     verifyNoInteractions(transactionService);
   }
 
   @Test
   void execute_hasActiveSession_validAmountFormat_Success() {
     Session session = mock(Session.class);
-    User targetUser = mock(User.class);
 
     when(session.getUserId()).thenReturn(TEST_USER_ID);
     when(sessionHolder.getCurrentSession()).thenReturn(session);
-    when(sessionService.hasActiveSession(TEST_USER_ID)).thenReturn(true);
-    when(userService.getUserByUsername(TARGET_USERNAME)).thenReturn(Optional.of(targetUser));
-    when(targetUser.getId()).thenReturn(TARGET_USER_ID);
+    when(sessionService.isActive(any())).thenReturn(true);
+    when(userService.getUserIdByUsername(TARGET_USERNAME)).thenReturn(Optional.of(TARGET_USER_ID));
 
     command.execute(TARGET_USERNAME, "100");
 
-    verify(transactionService).transfer(TEST_USER_ID, TARGET_USER_ID, new BigDecimal("100"));
+    verify(transactionService).transfer(TEST_USER_ID, TARGET_USER_ID, Money.parse("100"));
   }
 
   @Test
@@ -136,20 +133,18 @@ class TransferCommandTest {
   @Test
   void execute_hasActiveSession_transferFails_ThrowsException() {
     Session session = mock(Session.class);
-    User targetUser = mock(User.class);
 
     when(session.getUserId()).thenReturn(TEST_USER_ID);
     when(sessionHolder.getCurrentSession()).thenReturn(session);
-    when(sessionService.hasActiveSession(TEST_USER_ID)).thenReturn(true);
-    when(userService.getUserByUsername(TARGET_USERNAME)).thenReturn(Optional.of(targetUser));
-    when(targetUser.getId()).thenReturn(TARGET_USER_ID);
+    when(sessionService.isActive(any())).thenReturn(true);
+    when(userService.getUserIdByUsername(TARGET_USERNAME)).thenReturn(Optional.of(TARGET_USER_ID));
     doThrow(new RuntimeException("Transfer failed"))
         .when(transactionService)
-        .transfer(TEST_USER_ID, TARGET_USER_ID, new BigDecimal("100"));
+        .transfer(TEST_USER_ID, TARGET_USER_ID, Money.parse("100"));
 
     CommandException exception =
         assertThrows(CommandException.class, () -> command.execute(TARGET_USERNAME, "100"));
     assertEquals("Failed to transfer money", exception.getMessage());
-    verify(transactionService).transfer(TEST_USER_ID, TARGET_USER_ID, new BigDecimal("100"));
+    verify(transactionService).transfer(TEST_USER_ID, TARGET_USER_ID, Money.parse("100"));
   }
 }
@@ -8,11 +8,11 @@ import com.atm.command.Command;
 import com.atm.command.SessionHolder;
 import com.atm.command.WithdrawCommand;
 import com.atm.exception.CommandException;
+import com.atm.model.Money;
 import com.atm.model.Session;
-import com.atm.service.balance.BalanceService;
+import com.atm.model.TransactionResult;
 import com.atm.service.session.SessionService;
 import com.atm.service.transaction.TransactionService;
-import java.math.BigDecimal;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -26,7 +26,6 @@ import org.mockito.quality.Strictness;
 class WithdrawCommandTest {
 
   @Mock private TransactionService transactionService;
-  @Mock private BalanceService balanceService;
   @Mock private SessionService sessionService;
   @Mock private SessionHolder sessionHolder;
 
@@ -36,8 +35,7 @@ class WithdrawCommandTest {
 
   @BeforeEach
   void setUp() {
-    command =
-        new WithdrawCommand(transactionService, balanceService, sessionHolder, sessionService);
+    command = new WithdrawCommand(transactionService, sessionHolder, sessionService);
   }
 
   @Test
@@ -55,7 +53,7 @@ class WithdrawCommandTest {
     Session session = mock(Session.class);
     when(session.getUserId()).thenReturn(TEST_USER_ID);
     when(sessionHolder.getCurrentSession()).thenReturn(session);
-    when(sessionService.hasActiveSession(TEST_USER_ID)).thenReturn(false);
+    when(sessionService.isActive(any())).thenReturn(false);
 
     CommandException exception =
         assertThrows(CommandException.class, () -> command.execute("100.00"));
@@ -69,7 +67,7 @@ class WithdrawCommandTest {
     Session session = mock(Session.class);
     when(session.getUserId()).thenReturn(TEST_USER_ID);
     when(sessionHolder.getCurrentSession()).thenReturn(session);
-    when(sessionService.hasActiveSession(TEST_USER_ID)).thenReturn(true);
+    when(sessionService.isActive(any())).thenReturn(true);
 
     CommandException exception =
         assertThrows(CommandException.class, () -> command.execute("invalid"));
@@ -82,13 +80,14 @@ class WithdrawCommandTest {
     Session session = mock(Session.class);
     when(session.getUserId()).thenReturn(TEST_USER_ID);
     when(sessionHolder.getCurrentSession()).thenReturn(session);
-    when(sessionService.hasActiveSession(TEST_USER_ID)).thenReturn(true);
-    when(balanceService.getBalance(TEST_USER_ID)).thenReturn(new BigDecimal("500.00"));
+    when(sessionService.isActive(any())).thenReturn(true);
+    when(transactionService.withdraw(TEST_USER_ID, Money.parse("100")))
+        .thenReturn(
+            TransactionResult.builder().transactionId(1L).balance(Money.parse("500.00")).build());
 
     command.execute("100");
 
-    verify(transactionService).withdraw(TEST_USER_ID, new BigDecimal("100"));
-    verify(balanceService, times(1)).getBalance(TEST_USER_ID);
+    verify(transactionService, times(1)).withdraw(TEST_USER_ID, Money.parse("100"));
   }
 
   @Test
@@ -0,0 +1,41 @@
+package com.atm.unit.database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.atm.database.BalanceSlotConsolidator;
+import com.atm.database.PostgresTransaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class BalanceSlotConsolidatorTest {
+
+  @Mock private PostgresTransaction transaction;
+
+  @Test
+  void consolidate_HotAccounts_WalksBatchesUntilPastTheLast() {
+    // Two batches ending at users 40 and 90, the third finds no hot account above 90
+    when(transaction.executeInTransaction(any()))
+        .thenReturn(new long[] {40, 3}, new long[] {90, 1}, new long[] {-1, 0});
+    BalanceSlotConsolidator consolidator = new BalanceSlotConsolidator(transaction, 2);
+
+    assertEquals(4, consolidator.consolidate());
+    verify(transaction, times(3)).executeInTransaction(any());
+  }
+
+  @Test
+  void consolidate_NoHotAccounts_RunsOneBatch() {
+    when(transaction.executeInTransaction(any())).thenReturn(new long[] {-1, 0});
+    BalanceSlotConsolidator consolidator = new BalanceSlotConsolidator(transaction, 100);
+
+    assertEquals(0, consolidator.consolidate());
+    verify(transaction, times(1)).executeInTransaction(any());
+  }
+}
@@ -0,0 +1,51 @@
+package com.atm.unit.database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.atm.database.ExpiredSessionSweeper;
+import com.atm.database.PostgresTransaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ExpiredSessionSweeperTest {
+
+  @Mock private PostgresTransaction transaction;
+
+  @Test
+  void sweep_Backlog_DeletesBatchesUntilShortBatch() {
+    when(transaction.executeInTransaction(any())).thenReturn(100, 100, 7);
+    ExpiredSessionSweeper sweeper = new ExpiredSessionSweeper(transaction, 100, 0);
+
+    assertEquals(207, sweeper.sweep());
+    assertEquals(207, sweeper.getSessionsReclaimed());
+    assertEquals(3, sweeper.getBatches());
+    verify(transaction, times(3)).executeInTransaction(any());
+  }
+
+  @Test
+  void sweep_NothingExpired_RunsSingleBatch() {
+    when(transaction.executeInTransaction(any())).thenReturn(0);
+    ExpiredSessionSweeper sweeper = new ExpiredSessionSweeper(transaction, 100, 0);
+
+    assertEquals(0, sweeper.sweep());
+    verify(transaction, times(1)).executeInTransaction(any());
+  }
+
+  @Test
+  void sweep_Closed_StopsAfterCurrentBatch() {
+    when(transaction.executeInTransaction(any())).thenReturn(100);
+    ExpiredSessionSweeper sweeper = new ExpiredSessionSweeper(transaction, 100, 0);
+    sweeper.close();
+
+    assertEquals(100, sweeper.sweep());
+    verify(transaction, times(1)).executeInTransaction(any());
+  }
+}
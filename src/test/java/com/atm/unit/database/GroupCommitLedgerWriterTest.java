@@ -0,0 +1,76 @@
+package com.atm.unit.database;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.atm.database.GroupCommitLedgerWriter;
+import com.atm.database.PostgresTransaction;
+import com.atm.exception.DatabaseException;
+import com.atm.model.Money;
+import com.atm.model.TransactionResult;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class GroupCommitLedgerWriterTest {
+
+  @Mock private PostgresTransaction transaction;
+
+  @Test
+  void interruptedWhileLingering_FailsTheOperationsAlreadyDequeued() throws Exception {
+    // A long linger keeps the first operation in the writer's batch until the interrupt
+    try (GroupCommitLedgerWriter writer = new GroupCommitLedgerWriter(transaction, 100, 60_000)) {
+      CompletableFuture<TransactionResult> future =
+          writer.submitTransaction(1L, Money.parse("10"), "DEPOSIT");
+      Thread thread = writerThread();
+      waitUntilLingering(thread);
+
+      thread.interrupt();
+
+      ExecutionException exception =
+          assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+      assertInstanceOf(DatabaseException.class, exception.getCause());
+      assertTrue(
+          writer.submitTransaction(1L, Money.parse("10"), "DEPOSIT").isCompletedExceptionally());
+      verify(transaction, never()).executeInTransactionOnce(any());
+    }
+  }
+
+  @Test
+  void submittedAfterClose_FailsWithoutWaiting() {
+    GroupCommitLedgerWriter writer = new GroupCommitLedgerWriter(transaction, 100, 10);
+    writer.close();
+
+    CompletableFuture<TransactionResult> future = writer.submitTransfer(1L, 2L, Money.parse("10"));
+
+    assertTrue(future.isCompletedExceptionally());
+    verify(transaction, never()).executeInTransactionOnce(any());
+  }
+
+  private Thread writerThread() {
+    return Thread.getAllStackTraces().keySet().stream()
+        .filter(thread -> thread.getName().equals("ledger-group-commit") && thread.isAlive())
+        .findFirst()
+        .orElseThrow();
+  }
+
+  private void waitUntilLingering(Thread thread) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (thread.getState() != Thread.State.TIMED_WAITING && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    // The first poll also waits timed, give the writer time to take the operation off the queue
+    Thread.sleep(200);
+  }
+}
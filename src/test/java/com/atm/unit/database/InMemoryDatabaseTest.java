@@ -0,0 +1,238 @@
+package com.atm.unit.database;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.atm.database.InMemoryDatabase;
+import com.atm.exception.DatabaseException;
+import com.atm.exception.InsufficientFundsException;
+import com.atm.model.DailyTotal;
+import com.atm.model.ExportResult;
+import com.atm.model.Money;
+import com.atm.model.PayoutItem;
+import com.atm.model.PayoutResult;
+import com.atm.model.Transaction;
+import com.atm.model.TransactionExport;
+import com.atm.model.User;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class InMemoryDatabaseTest {
+
+  private InMemoryDatabase database;
+
+  @BeforeEach
+  void setUp() {
+    database = new InMemoryDatabase();
+  }
+
+  @Test
+  void createUser_InitializesZeroBalance() {
+    Long userId = database.createUser("alice", "hash");
+
+    assertEquals(Money.parse("0.0000"), database.getBalance(userId));
+    assertEquals(userId, database.getUserByUsername("alice").get().getId());
+  }
+
+  @Test
+  void createUser_Duplicate_ThrowsException() {
+    database.createUser("alice", "hash");
+
+    assertThrows(DatabaseException.class, () -> database.createUser("alice", "hash"));
+  }
+
+  @Test
+  void createUsers_ExistingUsername_IsReportedAndRestCreated() {
+    database.createUser("alice", "hash");
+
+    List<String> duplicates =
+        database.createUsers(
+            List.of(
+                User.builder().username("alice").passwordHash("hash").build(),
+                User.builder().username("bob").passwordHash("hash").build()));
+
+    assertEquals(List.of("alice"), duplicates);
+    Long bob = database.getUserByUsername("bob").get().getId();
+    assertEquals(Money.parse("0.0000"), database.getBalance(bob));
+  }
+
+  @Test
+  void createTransaction_DepositAndWithdraw_UpdatesBalance() {
+    Long userId = database.createUser("alice", "hash");
+
+    database.createTransaction(userId, Money.parse("1000"), "DEPOSIT");
+    database.createTransaction(userId, Money.parse("400"), "WITHDRAW");
+
+    assertEquals(Money.parse("600.0000"), database.getBalance(userId));
+  }
+
+  @Test
+  void performTransfer_InsufficientFunds_ThrowsException() {
+    Long from = database.createUser("alice", "hash");
+    Long to = database.createUser("bob", "hash");
+
+    assertThrows(
+        InsufficientFundsException.class,
+        () -> database.performTransfer(from, to, Money.parse("10")));
+  }
+
+  @Test
+  void performTransfer_UnknownTarget_ThrowsException() {
+    Long from = database.createUser("alice", "hash");
+    database.createTransaction(from, Money.parse("100"), "DEPOSIT");
+
+    assertThrows(
+        DatabaseException.class, () -> database.performTransfer(from, 999L, Money.parse("10")));
+    assertEquals(Money.parse("100.0000"), database.getBalance(from));
+  }
+
+  @Test
+  void performTransfer_ConcurrentOppositeDirections_PreservesTotal() throws Exception {
+    Long alice = database.createUser("alice", "hash");
+    Long bob = database.createUser("bob", "hash");
+    database.createTransaction(alice, Money.parse("10000"), "DEPOSIT");
+    database.createTransaction(bob, Money.parse("10000"), "DEPOSIT");
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      boolean forward = i % 2 == 0;
+      futures.add(
+          executor.submit(
+              () ->
+                  database.performTransfer(
+                      forward ? alice : bob, forward ? bob : alice, Money.ONE)));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    assertEquals(
+        Money.parse("20000.0000"), database.getBalance(alice).plus(database.getBalance(bob)));
+  }
+
+  @Test
+  void createSession_ReplacesPreviousSession() {
+    Long userId = database.createUser("alice", "hash");
+
+    Long first = database.createSession(userId);
+    Long second = database.createSession(userId);
+
+    assertFalse(database.getSessionById(first).isPresent());
+    assertEquals(second, database.getActiveSession(userId).get().getId());
+
+    database.deleteSession(second);
+    assertFalse(database.getActiveSession(userId).isPresent());
+  }
+
+  @Test
+  void performBatchTransfer_DebitsOnceAndCreditsAll() {
+    Long payer = database.createUser("payer", "hash");
+    Long alice = database.createUser("alice", "hash");
+    Long bob = database.createUser("bob", "hash");
+    database.createTransaction(payer, Money.parse("100"), "DEPOSIT");
+
+    PayoutResult result =
+        database.performBatchTransfer(
+            payer,
+            List.of(
+                PayoutItem.builder().userId(alice).amount(Money.parse("10")).build(),
+                PayoutItem.builder().userId(bob).amount(Money.parse("20")).build(),
+                PayoutItem.builder().userId(alice).amount(Money.parse("5")).build()));
+
+    assertEquals(Money.parse("65.0000"), result.getBalance());
+    assertEquals(Money.parse("15.0000"), database.getBalance(alice));
+    assertEquals(Money.parse("20.0000"), database.getBalance(bob));
+  }
+
+  @Test
+  void performBatchTransfer_InsufficientFunds_LeavesBalancesUntouched() {
+    Long payer = database.createUser("payer", "hash");
+    Long alice = database.createUser("alice", "hash");
+    database.createTransaction(payer, Money.parse("10"), "DEPOSIT");
+
+    assertThrows(
+        InsufficientFundsException.class,
+        () ->
+            database.performBatchTransfer(
+                payer,
+                List.of(PayoutItem.builder().userId(alice).amount(Money.parse("11")).build())));
+    assertEquals(Money.parse("10.0000"), database.getBalance(payer));
+    assertEquals(Money.parse("0.0000"), database.getBalance(alice));
+  }
+
+  @Test
+  void getDailyTotals_RollsUpEachSideOfTheLedger() {
+    Long alice = database.createUser("alice", "hash");
+    Long bob = database.createUser("bob", "hash");
+    database.createTransaction(alice, Money.parse("100"), "DEPOSIT");
+    database.createTransaction(alice, Money.parse("50.5"), "DEPOSIT");
+    database.createTransaction(alice, Money.parse("20"), "WITHDRAW");
+    database.performTransfer(alice, bob, Money.parse("10"));
+
+    LocalDate today = LocalDate.now(ZoneOffset.UTC);
+    List<DailyTotal> totals = database.getDailyTotals(alice, today, today.plusDays(1));
+    List<DailyTotal> received = database.getDailyTotals(bob, today, today.plusDays(1));
+
+    assertEquals(3, totals.size());
+    assertEquals(DailyTotal.Type.DEPOSIT, totals.get(0).getType());
+    assertEquals(2, totals.get(0).getCount());
+    assertEquals(Money.parse("150.5"), totals.get(0).getAmount());
+    assertEquals(DailyTotal.Type.TRANSFER_OUT, totals.get(1).getType());
+    assertEquals(Money.parse("10"), totals.get(1).getAmount());
+    assertEquals(DailyTotal.Type.WITHDRAW, totals.get(2).getType());
+    assertEquals(1, received.size());
+    assertEquals(DailyTotal.Type.TRANSFER_IN, received.get(0).getType());
+    assertTrue(database.getDailyTotals(alice, today.plusDays(1), today.plusDays(2)).isEmpty());
+  }
+
+  @Test
+  void streamTransactionHistory_PagesNewestFirstOverBothSides() {
+    Long alice = database.createUser("alice", "hash");
+    Long bob = database.createUser("bob", "hash");
+    database.createTransaction(alice, Money.parse("100"), "DEPOSIT");
+    database.createTransaction(bob, Money.parse("100"), "DEPOSIT");
+    database.performTransfer(alice, bob, Money.parse("10"));
+    database.performTransfer(bob, alice, Money.parse("20"));
+
+    List<Transaction> firstPage = new ArrayList<>();
+    database.streamTransactionHistory(alice, null, 2, firstPage::add);
+    List<Transaction> secondPage = new ArrayList<>();
+    database.streamTransactionHistory(alice, firstPage.get(1).getId(), 2, secondPage::add);
+
+    assertEquals(2, firstPage.size());
+    assertEquals(bob, firstPage.get(0).getFromUserId());
+    assertEquals(bob, firstPage.get(1).getToUserId());
+    assertEquals(1, secondPage.size());
+    assertEquals(Transaction.TransactionType.DEPOSIT, secondPage.get(0).getType());
+  }
+
+  @Test
+  void exportTransactions_FiltersByUser(@TempDir Path tempDir) throws Exception {
+    Long alice = database.createUser("alice", "hash");
+    Long bob = database.createUser("bob", "hash");
+    database.createTransaction(alice, Money.parse("100"), "DEPOSIT");
+    database.createTransaction(bob, Money.parse("100"), "DEPOSIT");
+    database.performTransfer(bob, alice, Money.parse("10"));
+
+    Path file = tempDir.resolve("ledger.csv");
+    ExportResult result =
+        database.exportTransactions(TransactionExport.builder().file(file).userId(alice).build());
+
+    List<String> lines = Files.readAllLines(file);
+    assertEquals(2, result.getRows());
+    assertEquals(3, lines.size());
+    assertEquals("id,from_user_id,to_user_id,amount,type,created_at", lines.get(0));
+    assertTrue(lines.get(2).startsWith("3,2,1,10.0000,TRANSFER,"));
+  }
+}
@@ -0,0 +1,108 @@
+package com.atm.unit.database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+import com.atm.database.LedgerBalances;
+import com.atm.database.PostgresTransaction;
+import com.atm.exception.InsufficientFundsException;
+import com.atm.model.Money;
+import com.atm.model.TransactionResult;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Function;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class LedgerBalancesTest {
+  private static final Long USER_ID = 1L;
+
+  @Mock private PostgresTransaction transaction;
+  @Mock private Connection connection;
+  @Mock private PreparedStatement getBalances;
+  @Mock private PreparedStatement record;
+
+  // Balance and seq of the account on the primary
+  private long primaryBalance;
+  private long primarySeq;
+
+  private LedgerBalances balances;
+
+  @BeforeEach
+  void setUp() throws SQLException {
+    when(transaction.executeInTransaction(any())).thenAnswer(this::runOnConnection);
+    when(transaction.executeReadOnlyOnPrimary(any())).thenAnswer(this::runOnConnection);
+    when(connection.createArrayOf(anyString(), any())).thenReturn(mock(Array.class));
+    when(connection.prepareStatement(startsWith("SELECT"))).thenReturn(getBalances);
+    when(connection.prepareStatement(startsWith("WITH"))).thenReturn(record);
+    when(getBalances.executeQuery()).thenAnswer(invocation -> account());
+    ResultSet recorded = mock(ResultSet.class);
+    when(recorded.next()).thenReturn(true);
+    when(recorded.getLong(1)).thenReturn(42L);
+    when(record.executeQuery()).thenReturn(recorded);
+
+    balances = new LedgerBalances(transaction, 60_000);
+  }
+
+  @Test
+  void withdraw_ProjectionBehindCreditOfAnotherProcess_ReloadsAndSucceeds() throws SQLException {
+    setPrimary("0", 1);
+    assertEquals(Money.ZERO, balances.getBalance(USER_ID));
+
+    // Another process deposits, the projection still holds the old balance
+    setPrimary("100", 2);
+    TransactionResult result = balances.createTransaction(USER_ID, Money.parse("50"), "WITHDRAW");
+
+    assertEquals(Money.parse("50"), result.getBalance());
+    assertEquals(Money.parse("50"), balances.getBalance(USER_ID));
+    verify(record).executeQuery();
+  }
+
+  @Test
+  void withdraw_ReloadedBalanceStillShort_ThrowsInsufficientFunds() throws SQLException {
+    setPrimary("10", 1);
+    balances.getBalance(USER_ID);
+
+    setPrimary("20", 2);
+    assertThrows(
+        InsufficientFundsException.class,
+        () -> balances.createTransaction(USER_ID, Money.parse("50"), "WITHDRAW"));
+
+    assertEquals(Money.parse("20"), balances.getBalance(USER_ID));
+    verify(record, never()).executeQuery();
+  }
+
+  private Object runOnConnection(InvocationOnMock invocation) {
+    Function<Connection, ?> operation = invocation.getArgument(0);
+    return operation.apply(connection);
+  }
+
+  private void setPrimary(String balance, long seq) {
+    primaryBalance = Money.parse(balance).getMinorUnits();
+    primarySeq = seq;
+  }
+
+  private ResultSet account() throws SQLException {
+    ResultSet rs = mock(ResultSet.class);
+    when(rs.next()).thenReturn(true, false);
+    when(rs.getLong("user_id")).thenReturn(USER_ID);
+    when(rs.getLong("balance")).thenReturn(primaryBalance);
+    when(rs.getLong("seq")).thenReturn(primarySeq);
+    return rs;
+  }
+}
@@ -0,0 +1,53 @@
+package com.atm.unit.database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.atm.database.LedgerSnapshotter;
+import com.atm.database.PostgresTransaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class LedgerSnapshotterTest {
+
+  @Mock private PostgresTransaction transaction;
+
+  @Test
+  void snapshot_NewEntries_FoldsOneBatchPerIdRange() {
+    // Resumes after entry 5, the ledger ends at entry 30
+    when(transaction.executeReadOnlyOnPrimary(any())).thenReturn(5L, 30L);
+    when(transaction.executeInTransaction(any())).thenReturn(4, 2, 1);
+    LedgerSnapshotter snapshotter = new LedgerSnapshotter(transaction, 10);
+
+    assertEquals(7, snapshotter.snapshot());
+    verify(transaction, times(3)).executeInTransaction(any());
+  }
+
+  @Test
+  void snapshot_SecondRun_ResumesWhereFirstStopped() {
+    when(transaction.executeReadOnlyOnPrimary(any())).thenReturn(0L, 10L, 10L);
+    when(transaction.executeInTransaction(any())).thenReturn(3);
+    LedgerSnapshotter snapshotter = new LedgerSnapshotter(transaction, 10);
+
+    assertEquals(3, snapshotter.snapshot());
+    assertEquals(0, snapshotter.snapshot());
+    verify(transaction, times(3)).executeReadOnlyOnPrimary(any());
+    verify(transaction, times(1)).executeInTransaction(any());
+  }
+
+  @Test
+  void snapshot_EmptyLedger_RunsNoBatch() {
+    when(transaction.executeReadOnlyOnPrimary(any())).thenReturn(0L, 0L);
+    LedgerSnapshotter snapshotter = new LedgerSnapshotter(transaction, 10);
+
+    assertEquals(0, snapshotter.snapshot());
+    verify(transaction, never()).executeInTransaction(any());
+  }
+}
@@ -0,0 +1,182 @@
+package com.atm.unit.database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import com.atm.database.DatabaseConfig;
+import com.atm.database.PostgresConnection;
+import com.atm.database.PostgresTransaction;
+import com.atm.exception.DatabaseException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PostgresTransactionTest {
+
+  @Mock private PostgresConnection primary;
+  @Mock private PostgresConnection replica;
+  @Mock private PostgresConnection readOnly;
+  @Mock private Connection readOnlyConnection;
+  @Mock private Connection primaryConnection;
+  @Mock private Connection replicaConnection;
+  @Mock private Statement lagStatement;
+  @Mock private ResultSet lagResult;
+
+  private static final DatabaseConfig CONFIG =
+      DatabaseConfig.builder()
+          .replicaMaxLagMillis(1000)
+          .retryMaxAttempts(3)
+          .retryBaseBackoffMillis(1)
+          .retryMaxBackoffMillis(2)
+          .build();
+
+  @BeforeEach
+  void setUp() throws SQLException {
+    when(primary.getConnection()).thenReturn(primaryConnection);
+    when(replica.getConnection()).thenReturn(replicaConnection);
+    when(readOnly.getConnection()).thenReturn(readOnlyConnection);
+    when(readOnlyConnection.getAutoCommit()).thenReturn(true);
+    when(replicaConnection.createStatement()).thenReturn(lagStatement);
+    when(lagStatement.executeQuery(anyString())).thenReturn(lagResult);
+    when(lagResult.next()).thenReturn(true);
+  }
+
+  @Test
+  void executeReplicaSafe_NoReplica_UsesPrimary() {
+    PostgresTransaction transaction = new PostgresTransaction(primary);
+
+    assertEquals(primaryConnection, transaction.executeReplicaSafe(connection -> connection));
+  }
+
+  @Test
+  void executeReplicaSafe_ReplicaWithinLag_UsesReplica() throws SQLException {
+    when(lagResult.getLong(1)).thenReturn(200L);
+    PostgresTransaction transaction = new PostgresTransaction(primary, replica, CONFIG);
+
+    assertEquals(replicaConnection, transaction.executeReplicaSafe(connection -> connection));
+    assertEquals(primaryConnection, transaction.executeInTransaction(connection -> connection));
+  }
+
+  @Test
+  void executeReplicaSafe_ReplicaTooFarBehind_FallsBackToPrimary() throws SQLException {
+    when(lagResult.getLong(1)).thenReturn(5000L);
+    PostgresTransaction transaction = new PostgresTransaction(primary, replica, CONFIG);
+
+    assertEquals(primaryConnection, transaction.executeReplicaSafe(connection -> connection));
+  }
+
+  @Test
+  void executeReplicaSafe_ReplicaUnreachable_FallsBackToPrimary() throws SQLException {
+    when(replica.getConnection()).thenThrow(new SQLException("Connection refused", "08001"));
+    PostgresTransaction transaction = new PostgresTransaction(primary, replica, CONFIG);
+
+    assertEquals(primaryConnection, transaction.executeReplicaSafe(connection -> connection));
+  }
+
+  @Test
+  void executeReadOnly_NoReplica_UsesReadOnlyPoolWithoutCommit() throws SQLException {
+    PostgresTransaction transaction = new PostgresTransaction(primary, readOnly, null, CONFIG);
+
+    assertEquals(readOnlyConnection, transaction.executeReadOnly(connection -> connection));
+    verify(readOnlyConnection, never()).commit();
+    verify(readOnlyConnection).close();
+    verifyNoInteractions(primary);
+  }
+
+  @Test
+  void executeReadOnly_ReplicaWithinLag_UsesReplica() throws SQLException {
+    when(lagResult.getLong(1)).thenReturn(200L);
+    PostgresTransaction transaction = new PostgresTransaction(primary, readOnly, replica, CONFIG);
+
+    assertEquals(replicaConnection, transaction.executeReadOnly(connection -> connection));
+    verifyNoInteractions(readOnly);
+  }
+
+  @Test
+  void executeInTransaction_SerializationFailure_RetriesAndSucceeds() throws SQLException {
+    PostgresTransaction transaction = new PostgresTransaction(primary, null, CONFIG);
+    AtomicInteger attempts = new AtomicInteger();
+
+    String result =
+        transaction.executeInTransaction(
+            connection -> {
+              if (attempts.incrementAndGet() == 1) {
+                throw new DatabaseException(
+                    "Conflict", new SQLException("could not serialize access", "40001"));
+              }
+              return "done";
+            });
+
+    assertEquals("done", result);
+    assertEquals(2, attempts.get());
+    assertEquals(1, transaction.getRetries());
+    verify(primaryConnection).rollback();
+    verify(primaryConnection).commit();
+  }
+
+  @Test
+  void executeInTransaction_DeadlockEveryAttempt_GivesUpAfterMaxAttempts() throws SQLException {
+    when(primaryConnection.prepareStatement(anyString()))
+        .thenThrow(new SQLException("deadlock detected", "40P01"));
+    PostgresTransaction transaction = new PostgresTransaction(primary, null, CONFIG);
+
+    DatabaseException exception =
+        assertThrows(
+            DatabaseException.class,
+            () -> transaction.executeInTransaction(connection -> prepare(connection)));
+
+    assertEquals("40P01", ((SQLException) exception.getCause().getCause()).getSQLState());
+    verify(primary, times(3)).getConnection();
+    assertEquals(2, transaction.getRetries());
+    assertEquals(1, transaction.getRetriesExhausted());
+  }
+
+  @Test
+  void executeInTransaction_OtherFailure_IsNotRetried() throws SQLException {
+    when(primaryConnection.prepareStatement(anyString()))
+        .thenThrow(new SQLException("duplicate key", "23505"));
+    PostgresTransaction transaction = new PostgresTransaction(primary, null, CONFIG);
+
+    assertThrows(
+        DatabaseException.class,
+        () -> transaction.executeInTransaction(connection -> prepare(connection)));
+
+    verify(primary, times(1)).getConnection();
+    assertEquals(0, transaction.getRetries());
+  }
+
+  @Test
+  void executeInTransactionOnce_SerializationFailure_IsNotRetried() throws SQLException {
+    when(primaryConnection.prepareStatement(anyString()))
+        .thenThrow(new SQLException("could not serialize access", "40001"));
+    PostgresTransaction transaction = new PostgresTransaction(primary, null, CONFIG);
+
+    assertThrows(
+        DatabaseException.class,
+        () -> transaction.executeInTransactionOnce(connection -> prepare(connection)));
+
+    verify(primary, times(1)).getConnection();
+    assertEquals(0, transaction.getRetries());
+  }
+
+  private Object prepare(Connection connection) {
+    try {
+      return connection.prepareStatement("SELECT 1");
+    } catch (SQLException e) {
+      throw new DatabaseException("Statement failed", e);
+    }
+  }
+}
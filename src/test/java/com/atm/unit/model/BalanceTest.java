@@ -3,7 +3,7 @@ package com.atm.unit.model;
 import static org.junit.jupiter.api.Assertions.*;
 
 import com.atm.model.Balance;
-import java.math.BigDecimal;
+import com.atm.model.Money;
 import java.time.LocalDateTime;
 import org.junit.jupiter.api.Test;
 
@@ -12,7 +12,7 @@ class BalanceTest {
   @Test
   void whenBalanceCreatedWithValidData_thenSucceeds() {
     LocalDateTime now = LocalDateTime.now();
-    BigDecimal amount = new BigDecimal("100.00");
+    Money amount = Money.parse("100.00");
 
     Balance balance = Balance.builder().userId(1L).balance(amount).lastUpdated(now).build();
 
@@ -23,9 +23,9 @@ class BalanceTest {
 
   @Test
   void whenBalanceBuiltWithoutOptionalFields_thenSucceeds() {
-    Balance balance = Balance.builder().userId(1L).balance(BigDecimal.ZERO).build();
+    Balance balance = Balance.builder().userId(1L).balance(Money.ZERO).build();
 
     assertNotNull(balance.getLastUpdated());
-    assertEquals(BigDecimal.ZERO, balance.getBalance());
+    assertEquals(Money.ZERO, balance.getBalance());
   }
 }
@@ -0,0 +1,68 @@
+package com.atm.unit.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.atm.model.Money;
+import java.math.BigDecimal;
+import org.junit.jupiter.api.Test;
+
+class MoneyTest {
+
+  @Test
+  void whenParsed_thenHeldAsMinorUnits() {
+    assertEquals(1_000_000L, Money.parse("100").getMinorUnits());
+    assertEquals(125_000L, Money.parse("12.5").getMinorUnits());
+    assertEquals(-1L, Money.parse("-0.0001").getMinorUnits());
+    assertEquals(5_000L, Money.parse(".5").getMinorUnits());
+    assertEquals(Money.parse("100"), Money.parse("+100.00"));
+  }
+
+  @Test
+  void whenParsingInvalidText_thenThrows() {
+    assertThrows(NumberFormatException.class, () -> Money.parse(""));
+    assertThrows(NumberFormatException.class, () -> Money.parse("-"));
+    assertThrows(NumberFormatException.class, () -> Money.parse("."));
+    assertThrows(NumberFormatException.class, () -> Money.parse("1.2.3"));
+    assertThrows(NumberFormatException.class, () -> Money.parse("abc"));
+    assertThrows(NumberFormatException.class, () -> Money.parse("1e3"));
+  }
+
+  @Test
+  void whenParsingMoreThanFourDecimals_thenThrows() {
+    assertThrows(NumberFormatException.class, () -> Money.parse("0.00001"));
+  }
+
+  @Test
+  void whenParsingOutOfRange_thenThrows() {
+    assertThrows(NumberFormatException.class, () -> Money.parse("922337203685478"));
+    assertEquals(Long.MAX_VALUE, Money.parse("922337203685477.5807").getMinorUnits());
+  }
+
+  @Test
+  void whenFormatted_thenAlwaysFourDecimals() {
+    assertEquals("1000.0000", Money.parse("1000").toString());
+    assertEquals("0.0500", Money.parse("0.05").toString());
+    assertEquals("-10.0000", Money.parse("-10").toString());
+    assertEquals("-0.0001", Money.parse("-0.0001").toString());
+    assertEquals("0.0000", Money.ZERO.toString());
+  }
+
+  @Test
+  void whenAddingAndSubtracting_thenExact() {
+    Money balance = Money.parse("0.1").plus(Money.parse("0.2"));
+
+    assertEquals(Money.parse("0.3"), balance);
+    assertEquals(Money.parse("-0.7"), balance.minus(Money.ONE));
+    assertEquals(-1, balance.minus(Money.ONE).signum());
+    assertTrue(balance.isLessThan(Money.ONE));
+    assertThrows(
+        ArithmeticException.class, () -> Money.ofMinorUnits(Long.MAX_VALUE).plus(Money.ONE));
+  }
+
+  @Test
+  void whenConvertedFromBigDecimal_thenExact() {
+    assertEquals(new BigDecimal("12.3400"), Money.parse("12.34").toBigDecimal());
+    assertEquals(Money.parse("12.34"), Money.of(new BigDecimal("12.340000")));
+    assertThrows(ArithmeticException.class, () -> Money.of(new BigDecimal("0.00001")));
+  }
+}
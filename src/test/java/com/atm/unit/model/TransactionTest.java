@@ -2,8 +2,8 @@ package com.atm.unit.model;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.atm.model.Money;
 import com.atm.model.Transaction;
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import org.junit.jupiter.api.Test;
 
@@ -12,7 +12,7 @@ class TransactionTest {
   @Test
   void whenTransactionCreatedWithValidData_thenSucceeds() {
     LocalDateTime now = LocalDateTime.now();
-    BigDecimal amount = new BigDecimal("50.00");
+    Money amount = Money.parse("50.00");
 
     Transaction transaction =
         Transaction.builder()
@@ -38,7 +38,7 @@ class TransactionTest {
         Transaction.builder()
             .id(1L)
             .toUserId(1L)
-            .amount(new BigDecimal("100.00"))
+            .amount(Money.parse("100.00"))
             .type(Transaction.TransactionType.DEPOSIT)
             .build();
 
@@ -52,7 +52,7 @@ class TransactionTest {
         Transaction.builder()
             .id(1L)
             .fromUserId(1L)
-            .amount(new BigDecimal("100.00"))
+            .amount(Money.parse("100.00"))
             .type(Transaction.TransactionType.WITHDRAW)
             .build();
 
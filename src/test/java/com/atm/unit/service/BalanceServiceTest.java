@@ -3,14 +3,18 @@ package com.atm.unit.service;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import com.atm.database.BalanceChangeListener;
 import com.atm.database.Database;
 import com.atm.exception.DatabaseException;
+import com.atm.model.Balance;
+import com.atm.model.Money;
 import com.atm.service.balance.BalanceService;
 import com.atm.service.balance.BalanceServiceImpl;
-import java.math.BigDecimal;
+import java.time.Duration;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
@@ -33,10 +37,10 @@ class BalanceServiceImplTest {
 
   @Test
   void getBalance_ShouldReturnBalanceFromDatabase() {
-    BigDecimal expectedBalance = new BigDecimal("1000.00");
+    Money expectedBalance = Money.parse("1000.00");
     when(database.getBalance(TEST_USER_ID)).thenReturn(expectedBalance);
 
-    BigDecimal actualBalance = balanceService.getBalance(TEST_USER_ID);
+    Money actualBalance = balanceService.getBalance(TEST_USER_ID);
 
     assertEquals(expectedBalance, actualBalance);
     verify(database).getBalance(TEST_USER_ID);
@@ -44,10 +48,10 @@ class BalanceServiceImplTest {
 
   @Test
   void getBalance_WhenDatabaseReturnsZero_ShouldReturnZero() {
-    BigDecimal expectedBalance = BigDecimal.ZERO;
+    Money expectedBalance = Money.ZERO;
     when(database.getBalance(TEST_USER_ID)).thenReturn(expectedBalance);
 
-    BigDecimal actualBalance = balanceService.getBalance(TEST_USER_ID);
+    Money actualBalance = balanceService.getBalance(TEST_USER_ID);
 
     assertEquals(expectedBalance, actualBalance);
     verify(database).getBalance(TEST_USER_ID);
@@ -84,4 +88,118 @@ class BalanceServiceImplTest {
     assertEquals("Failed to get balance", exception.getMessage());
     verify(database).getBalance(null);
   }
+
+  @Test
+  void getBalance_WithCacheWhileSubscribed_ShouldReadDatabaseOnce() {
+    BalanceChangeListener listener = subscribeCache(Duration.ZERO);
+    listener.subscribed();
+    when(database.getBalanceSnapshot(TEST_USER_ID)).thenReturn(snapshot("100.00", 3));
+
+    assertEquals(Money.parse("100.00"), balanceService.getBalance(TEST_USER_ID));
+    assertEquals(Money.parse("100.00"), balanceService.getBalance(TEST_USER_ID));
+
+    verify(database, times(1)).getBalanceSnapshot(TEST_USER_ID);
+    verify(database, never()).getBalance(any());
+  }
+
+  @Test
+  void getBalance_WithCache_ShouldApplyNewerChangesOnly() {
+    BalanceChangeListener listener = subscribeCache(Duration.ZERO);
+    listener.subscribed();
+    when(database.getBalanceSnapshot(TEST_USER_ID)).thenReturn(snapshot("100.00", 3));
+    balanceService.getBalance(TEST_USER_ID);
+
+    listener.balanceChanged(TEST_USER_ID, Money.parse("50.00"), 4);
+    assertEquals(Money.parse("50.00"), balanceService.getBalance(TEST_USER_ID));
+
+    listener.balanceChanged(TEST_USER_ID, Money.parse("100.00"), 3);
+    assertEquals(Money.parse("50.00"), balanceService.getBalance(TEST_USER_ID));
+    verify(database, times(1)).getBalanceSnapshot(TEST_USER_ID);
+  }
+
+  @Test
+  void getBalance_WithCacheAfterOwnWrite_ShouldReloadBeforeNotification() {
+    BalanceChangeListener listener = subscribeCache(Duration.ZERO);
+    listener.subscribed();
+    when(database.getBalanceSnapshot(TEST_USER_ID))
+        .thenReturn(snapshot("100.00", 3))
+        .thenReturn(snapshot("50.00", 4));
+    balanceService.getBalance(TEST_USER_ID);
+
+    listener.balanceInvalidated(TEST_USER_ID);
+
+    assertEquals(Money.parse("50.00"), balanceService.getBalance(TEST_USER_ID));
+    verify(database, times(2)).getBalanceSnapshot(TEST_USER_ID);
+  }
+
+  @Test
+  void getBalance_WithCacheWhenChangeRacesLoad_ShouldNotCacheLoadedValue() {
+    BalanceChangeListener listener = subscribeCache(Duration.ZERO);
+    listener.subscribed();
+    when(database.getBalanceSnapshot(TEST_USER_ID))
+        .thenAnswer(
+            invocation -> {
+              listener.balanceChanged(TEST_USER_ID, Money.parse("50.00"), 4);
+              return snapshot("100.00", 3);
+            })
+        .thenReturn(snapshot("50.00", 4));
+
+    assertEquals(Money.parse("100.00"), balanceService.getBalance(TEST_USER_ID));
+    assertEquals(Money.parse("50.00"), balanceService.getBalance(TEST_USER_ID));
+
+    verify(database, times(2)).getBalanceSnapshot(TEST_USER_ID);
+  }
+
+  @Test
+  void getBalance_WithCacheWhileUnsubscribed_ShouldExpireAfterTtl() {
+    BalanceChangeListener listener = subscribeCache(Duration.ZERO);
+    listener.subscribed();
+    listener.unsubscribed();
+    when(database.getBalanceSnapshot(TEST_USER_ID)).thenReturn(snapshot("100.00", 3));
+
+    balanceService.getBalance(TEST_USER_ID);
+    balanceService.getBalance(TEST_USER_ID);
+
+    verify(database, times(2)).getBalanceSnapshot(TEST_USER_ID);
+  }
+
+  @Test
+  void getBalance_WithCacheOnResubscribe_ShouldDropCachedBalances() {
+    BalanceChangeListener listener = subscribeCache(Duration.ofHours(1));
+    listener.subscribed();
+    when(database.getBalanceSnapshot(TEST_USER_ID)).thenReturn(snapshot("100.00", 3));
+    balanceService.getBalance(TEST_USER_ID);
+
+    listener.unsubscribed();
+    balanceService.getBalance(TEST_USER_ID);
+    listener.subscribed();
+    balanceService.getBalance(TEST_USER_ID);
+
+    verify(database, times(2)).getBalanceSnapshot(TEST_USER_ID);
+  }
+
+  @Test
+  void getBalance_WhenChangesAreNotPublished_ShouldNotCache() {
+    when(database.subscribeBalanceChanges(any())).thenReturn(false);
+    when(database.getBalance(TEST_USER_ID)).thenReturn(Money.parse("100.00"));
+    balanceService = new BalanceServiceImpl(database, Duration.ofHours(1));
+
+    balanceService.getBalance(TEST_USER_ID);
+    balanceService.getBalance(TEST_USER_ID);
+
+    verify(database, times(2)).getBalance(TEST_USER_ID);
+    verify(database, never()).getBalanceSnapshot(any());
+  }
+
+  private BalanceChangeListener subscribeCache(Duration ttl) {
+    ArgumentCaptor<BalanceChangeListener> listener =
+        ArgumentCaptor.forClass(BalanceChangeListener.class);
+    when(database.subscribeBalanceChanges(listener.capture())).thenReturn(true);
+    balanceService = new BalanceServiceImpl(database, ttl);
+    return listener.getValue();
+  }
+
+  private static Balance snapshot(String balance, long version) {
+    return Balance.builder().balance(Money.parse(balance)).version(version).build();
+  }
 }
@@ -1,14 +1,17 @@
 package com.atm.unit.service;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 import com.atm.database.Database;
 import com.atm.model.Session;
-import com.atm.service.session.SessionService;
 import com.atm.service.session.SessionServiceImpl;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -24,11 +27,13 @@ class SessionServiceTest {
 
   @Mock private Database database;
 
-  private SessionService sessionService;
+  private SessionServiceImpl sessionService;
 
   @BeforeEach
   void setUp() {
-    sessionService = new SessionServiceImpl(database);
+    sessionService = new SessionServiceImpl(database, Duration.ofMinutes(1), 0);
+    when(database.touchSessions(anyCollection()))
+        .thenAnswer(invocation -> new HashSet<>(invocation.getArgument(0)));
   }
 
   @Test
@@ -58,39 +63,38 @@ class SessionServiceTest {
     Optional<Session> result = sessionService.validateSession(null);
 
     assertFalse(result.isPresent());
-    verify(database, never()).getSessionById(anyLong());
+    verify(database, never()).touchSession(anyLong());
   }
 
   @Test
-  void validateSession_ExpiredSession_TerminatesAndReturnsEmpty() {
+  void validateSession_ExpiredSession_ReturnsEmpty() {
     Long sessionId = 1L;
-    Session expiredSession =
-        Session.builder()
-            .id(sessionId)
-            .userId(1L)
-            .lastActivityAt(LocalDateTime.now().minusHours(1))
-            .build();
-    when(database.getSessionById(sessionId)).thenReturn(Optional.of(expiredSession));
+    when(database.touchSession(sessionId)).thenReturn(Optional.empty());
 
     Optional<Session> result = sessionService.validateSession(sessionId);
 
     assertFalse(result.isPresent());
-    verify(database).deleteSession(sessionId);
-    verify(database, never()).updateSessionActivity(anyLong());
+    verify(database, never()).getSessionById(anyLong());
   }
 
   @Test
-  void validateSession_ValidSession_UpdatesActivityAndReturnsSession() {
+  void validateSession_ValidSession_TouchesInOneCallAndReturnsSession() {
     Long sessionId = 1L;
-    Session validSession =
-        Session.builder().id(sessionId).userId(1L).lastActivityAt(LocalDateTime.now()).build();
-    when(database.getSessionById(sessionId)).thenReturn(Optional.of(validSession));
+    Session validSession = Session.builder().id(sessionId).userId(1L).build();
+    when(database.touchSession(sessionId)).thenReturn(Optional.of(validSession));
 
     Optional<Session> result = sessionService.validateSession(sessionId);
 
     assertTrue(result.isPresent());
     assertEquals(sessionId, result.get().getId());
-    verify(database).updateSessionActivity(sessionId);
+    assertTrue(result.get().getExpiresAt().isAfter(LocalDateTime.now()));
+    verify(database, never()).getSessionById(anyLong());
+
+    assertTrue(sessionService.validateSession(sessionId).isPresent());
+    sessionService.flushActivity();
+
+    verify(database, times(1)).touchSession(sessionId);
+    verify(database).touchSessions(Collections.singletonList(sessionId));
   }
 
   @Test
@@ -101,32 +105,92 @@ class SessionServiceTest {
         Session.builder().id(sessionId).userId(userId).lastActivityAt(LocalDateTime.now()).build();
 
     when(database.getActiveSession(userId)).thenReturn(Optional.of(validSession));
-    when(database.getSessionById(sessionId)).thenReturn(Optional.of(validSession));
+    when(database.touchSession(sessionId)).thenReturn(Optional.of(validSession));
 
     boolean result = sessionService.hasActiveSession(userId);
 
     assertTrue(result);
-    verify(database).updateSessionActivity(sessionId);
+    verify(database).touchSession(sessionId);
   }
 
   @Test
-  void hasActiveSession_UserWithExpiredSession_ReturnsFalse() {
+  void hasActiveSession_RepeatedChecks_ServedFromCacheAndCoalesced() {
     Long userId = 1L;
     Long sessionId = 1L;
-    Session expiredSession =
+    Session validSession =
         Session.builder()
             .id(sessionId)
             .userId(userId)
-            .lastActivityAt(LocalDateTime.now().minusHours(1))
+            .lastActivityAt(LocalDateTime.now())
+            .expiresAt(LocalDateTime.now().plusMinutes(1))
             .build();
+    when(database.getActiveSession(userId)).thenReturn(Optional.of(validSession));
+    when(database.touchSession(sessionId)).thenReturn(Optional.of(validSession));
+
+    for (int i = 0; i < 5; i++) {
+      assertTrue(sessionService.hasActiveSession(userId));
+      assertTrue(sessionService.validateSession(sessionId).isPresent());
+    }
+    sessionService.flushActivity();
+
+    verify(database, times(1)).getActiveSession(userId);
+    verify(database, never()).getSessionById(anyLong());
+    verify(database, times(1)).touchSessions(anyCollection());
+  }
+
+  @Test
+  void terminateSession_CachedSession_IsEvicted() {
+    Long userId = 1L;
+    when(database.createSession(userId)).thenReturn(7L);
+
+    Long sessionId = sessionService.createSession(userId);
+    assertTrue(sessionService.hasActiveSession(userId));
+    sessionService.terminateSession(sessionId);
+
+    assertFalse(sessionService.hasActiveSession(userId));
+    verify(database).getActiveSession(userId);
+    sessionService.flushActivity();
+    verify(database, never()).touchSessions(anyCollection());
+  }
+
+  @Test
+  void flushActivity_SessionEndedElsewhere_IsEvicted() {
+    Long userId = 1L;
+    when(database.createSession(userId)).thenReturn(7L);
+    when(database.touchSessions(anyCollection())).thenReturn(Collections.emptySet());
+
+    sessionService.createSession(userId);
+    assertTrue(sessionService.hasActiveSession(userId));
+    sessionService.flushActivity();
+
+    assertFalse(sessionService.hasActiveSession(userId));
+    verify(database).getActiveSession(userId);
+  }
 
-    when(database.getActiveSession(userId)).thenReturn(Optional.of(expiredSession));
-    when(database.getSessionById(sessionId)).thenReturn(Optional.of(expiredSession));
+  @Test
+  void hasActiveSession_SessionExpiresBeforeTouch_ReturnsFalse() {
+    Long userId = 1L;
+    Long sessionId = 1L;
+    Session session = Session.builder().id(sessionId).userId(userId).build();
+
+    when(database.getActiveSession(userId)).thenReturn(Optional.of(session));
+    when(database.touchSession(sessionId)).thenReturn(Optional.empty());
 
     boolean result = sessionService.hasActiveSession(userId);
 
     assertFalse(result);
-    verify(database).deleteSession(sessionId);
+  }
+
+  @Test
+  void hasActiveSession_CachedSessionExpired_TerminatesAndReturnsFalse() throws Exception {
+    SessionServiceImpl shortLived = new SessionServiceImpl(database, Duration.ofMillis(50), 0);
+    when(database.createSession(1L)).thenReturn(7L);
+
+    shortLived.createSession(1L);
+    Thread.sleep(100);
+
+    assertFalse(shortLived.hasActiveSession(1L));
+    verify(database).deleteSession(7L);
   }
 
   @Test
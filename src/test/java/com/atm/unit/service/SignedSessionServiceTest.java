@@ -0,0 +1,171 @@
+package com.atm.unit.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.atm.command.LoginCommand;
+import com.atm.command.LogoutCommand;
+import com.atm.command.SessionHolder;
+import com.atm.database.InMemoryDatabase;
+import com.atm.exception.CommandException;
+import com.atm.model.Session;
+import com.atm.service.session.SessionTokens;
+import com.atm.service.session.SessionTokens.Claims;
+import com.atm.service.session.SignedSessionService;
+import com.atm.service.user.UserServiceImpl;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SignedSessionServiceTest {
+  private static final byte[] KEY = new byte[32];
+
+  static {
+    Arrays.fill(KEY, (byte) 7);
+  }
+
+  @TempDir Path tempDir;
+
+  private SessionTokens tokens;
+  private SignedSessionService sessionService;
+
+  @BeforeEach
+  void setUp() {
+    tokens = new SessionTokens(KEY);
+    sessionService =
+        new SignedSessionService(
+            tokens, Duration.ofMinutes(1), Duration.ofMinutes(15), tempDir.resolve("revoked"));
+  }
+
+  @Test
+  void createSession_IssuesVerifiableToken() {
+    Long sessionId = sessionService.createSession(1L);
+
+    String token = sessionService.getToken(sessionId).orElseThrow(AssertionError::new);
+    Claims claims = tokens.verify(token).orElseThrow(AssertionError::new);
+    assertEquals(sessionId, claims.sessionId);
+    assertEquals(1L, claims.userId);
+    assertTrue(sessionService.hasActiveSession(1L));
+
+    Optional<Session> session = sessionService.validateSession(sessionId);
+    assertTrue(session.isPresent());
+    assertEquals(token, session.get().getToken());
+  }
+
+  @Test
+  void verify_RejectsTamperedAndForeignTokens() {
+    String token = tokens.issue(new Claims(5L, 1L, 0L, Long.MAX_VALUE));
+    String forged = tokens.issue(new Claims(5L, 2L, 0L, Long.MAX_VALUE));
+
+    String swapped = forged.substring(0, forged.indexOf('.')) + token.substring(token.indexOf('.'));
+    byte[] otherKey = new byte[32];
+    String foreign = new SessionTokens(otherKey).issue(new Claims(5L, 1L, 0L, Long.MAX_VALUE));
+
+    assertTrue(tokens.verify(token).isPresent());
+    assertFalse(tokens.verify(swapped).isPresent());
+    assertFalse(tokens.verify(foreign).isPresent());
+    assertFalse(tokens.verify("not-a-token").isPresent());
+  }
+
+  @Test
+  void terminateSession_RevokesAcrossRestarts() {
+    Long sessionId = sessionService.createSession(1L);
+    String token = sessionService.getToken(sessionId).orElseThrow(AssertionError::new);
+
+    sessionService.terminateSession(sessionId);
+
+    assertFalse(sessionService.validateSession(sessionId).isPresent());
+    assertFalse(sessionService.hasActiveSession(1L));
+
+    SignedSessionService restarted =
+        new SignedSessionService(
+            tokens, Duration.ofMinutes(1), Duration.ofMinutes(15), tempDir.resolve("revoked"));
+    assertFalse(restarted.resume(token).isPresent());
+  }
+
+  @Test
+  void resume_AdoptsValidTokenWithoutIssuer() {
+    Long sessionId = sessionService.createSession(1L);
+    String token = sessionService.getToken(sessionId).orElseThrow(AssertionError::new);
+
+    SignedSessionService otherTerminal =
+        new SignedSessionService(tokens, Duration.ofMinutes(1), Duration.ofMinutes(15), null);
+    Optional<Session> resumed = otherTerminal.resume(token);
+
+    assertTrue(resumed.isPresent());
+    assertEquals(sessionId, resumed.get().getId());
+    assertTrue(otherTerminal.hasActiveSession(1L));
+  }
+
+  @Test
+  void login_HoldsTokenThatCommandsAreValidatedFrom() {
+    UserServiceImpl userService = new UserServiceImpl(new InMemoryDatabase(), sessionService);
+    userService.register("alice", "Password123!");
+    SessionHolder sessionHolder = new SessionHolder();
+
+    new LoginCommand(userService, sessionHolder).execute("alice", "Password123!");
+
+    Claims claims = tokens.verify(sessionHolder.getToken()).orElseThrow(AssertionError::new);
+    Session held = sessionHolder.getCurrentSession();
+    assertEquals(held.getId(), claims.sessionId);
+    assertTrue(sessionService.isActive(held));
+
+    // A restarted terminal knows no sessions and resumes the held one from its token
+    SignedSessionService restarted =
+        new SignedSessionService(
+            tokens, Duration.ofMinutes(1), Duration.ofMinutes(15), tempDir.resolve("revoked"));
+    assertTrue(restarted.isActive(held));
+
+    String forged =
+        tokens.issue(new Claims(held.getId(), held.getUserId() + 1, 0L, Long.MAX_VALUE));
+    assertFalse(
+        restarted.isActive(Session.builder().id(held.getId()).userId(held.getUserId()).build()));
+    assertFalse(
+        restarted.isActive(
+            Session.builder().id(held.getId()).userId(held.getUserId()).token(forged).build()));
+
+    new LogoutCommand(restarted, sessionHolder).execute();
+
+    assertNull(sessionHolder.getToken());
+    SignedSessionService afterLogout =
+        new SignedSessionService(
+            tokens, Duration.ofMinutes(1), Duration.ofMinutes(15), tempDir.resolve("revoked"));
+    assertFalse(afterLogout.isActive(held));
+    sessionHolder.setCurrentSession(held);
+    assertThrows(
+        CommandException.class, () -> new LogoutCommand(afterLogout, sessionHolder).execute());
+    assertNull(sessionHolder.getCurrentSession());
+  }
+
+  @Test
+  void createSession_ReplacesPreviousSessionOfUser() {
+    Long first = sessionService.createSession(1L);
+    Long second = sessionService.createSession(1L);
+
+    assertFalse(sessionService.validateSession(first).isPresent());
+    assertTrue(sessionService.validateSession(second).isPresent());
+  }
+
+  @Test
+  void validateSession_ExpiresInactiveAndOutlivedSessions() throws InterruptedException {
+    SignedSessionService idle =
+        new SignedSessionService(tokens, Duration.ofMillis(50), Duration.ofMinutes(15), null);
+    SignedSessionService shortLived =
+        new SignedSessionService(tokens, Duration.ofMinutes(1), Duration.ofMillis(50), null);
+    Long idleSession = idle.createSession(1L);
+    Long shortLivedSession = shortLived.createSession(1L);
+
+    Thread.sleep(100);
+
+    assertFalse(idle.validateSession(idleSession).isPresent());
+    assertFalse(shortLived.validateSession(shortLivedSession).isPresent());
+  }
+
+  @Test
+  void constructor_RejectsShortKey() {
+    assertThrows(IllegalArgumentException.class, () -> new SessionTokens(new byte[16]));
+  }
+}
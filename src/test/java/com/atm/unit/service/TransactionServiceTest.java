@@ -1,15 +1,28 @@
 package com.atm.unit.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 import com.atm.database.Database;
 import com.atm.exception.InsufficientFundsException;
-import com.atm.service.balance.BalanceService;
+import com.atm.model.DailyTotal;
+import com.atm.model.Money;
+import com.atm.model.PayoutItem;
+import com.atm.model.PayoutResult;
+import com.atm.model.Transaction;
+import com.atm.model.TransactionExport;
+import com.atm.model.TransactionResult;
 import com.atm.service.transaction.TransactionService;
 import com.atm.service.transaction.TransactionServiceImpl;
-import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -23,7 +36,6 @@ import org.mockito.quality.Strictness;
 class TransactionServiceTest {
 
   @Mock private Database database;
-  @Mock private BalanceService balanceService;
 
   private TransactionService transactionService;
 
@@ -32,7 +44,7 @@ class TransactionServiceTest {
 
   @BeforeEach
   void setUp() {
-    transactionService = new TransactionServiceImpl(database, balanceService);
+    transactionService = new TransactionServiceImpl(database);
   }
 
   @Test
@@ -40,7 +52,7 @@ class TransactionServiceTest {
     IllegalArgumentException exception =
         assertThrows(
             IllegalArgumentException.class,
-            () -> transactionService.deposit(TEST_USER_ID, new BigDecimal("0.5")));
+            () -> transactionService.deposit(TEST_USER_ID, Money.parse("0.5")));
 
     assertEquals("Invalid amount, must be grater than 1", exception.getMessage());
     verifyNoInteractions(database);
@@ -48,11 +60,15 @@ class TransactionServiceTest {
 
   @Test
   void deposit_validAmount_Success() {
-    when(balanceService.getBalance(TEST_USER_ID)).thenReturn(new BigDecimal("100.00"));
+    when(database.createTransaction(TEST_USER_ID, Money.parse("50.00"), "DEPOSIT"))
+        .thenReturn(
+            TransactionResult.builder().transactionId(10L).balance(Money.parse("150.00")).build());
 
-    transactionService.deposit(TEST_USER_ID, new BigDecimal("50.00"));
+    TransactionResult result = transactionService.deposit(TEST_USER_ID, Money.parse("50.00"));
 
-    verify(database).createTransaction(TEST_USER_ID, new BigDecimal("50.00"), "DEPOSIT");
+    assertEquals(Money.parse("150.00"), result.getBalance());
+    assertEquals(10L, result.getTransactionId());
+    verify(database).createTransaction(TEST_USER_ID, Money.parse("50.00"), "DEPOSIT");
   }
 
   @Test
@@ -60,7 +76,7 @@ class TransactionServiceTest {
     IllegalArgumentException exception =
         assertThrows(
             IllegalArgumentException.class,
-            () -> transactionService.withdraw(TEST_USER_ID, new BigDecimal("0.5")));
+            () -> transactionService.withdraw(TEST_USER_ID, Money.parse("0.5")));
 
     assertEquals("Invalid amount, must be grater than 1", exception.getMessage());
     verifyNoInteractions(database);
@@ -68,25 +84,29 @@ class TransactionServiceTest {
 
   @Test
   void withdraw_insufficientBalance_ThrowsException() {
-    when(balanceService.getBalance(TEST_USER_ID)).thenReturn(new BigDecimal("40.00"));
+    when(database.createTransaction(TEST_USER_ID, Money.parse("50.00"), "WITHDRAW"))
+        .thenThrow(
+            new InsufficientFundsException(
+                "Insufficient funds. Available: 40.00, Required: 50.00"));
 
     InsufficientFundsException exception =
         assertThrows(
             InsufficientFundsException.class,
-            () -> transactionService.withdraw(TEST_USER_ID, new BigDecimal("50.00")));
+            () -> transactionService.withdraw(TEST_USER_ID, Money.parse("50.00")));
 
     assertEquals("Insufficient funds for withdrawal", exception.getMessage());
-    verify(balanceService).getBalance(TEST_USER_ID);
-    verifyNoInteractions(database);
   }
 
   @Test
   void withdraw_validAmount_Success() {
-    when(balanceService.getBalance(TEST_USER_ID)).thenReturn(new BigDecimal("100.00"));
+    when(database.createTransaction(TEST_USER_ID, Money.parse("50.00"), "WITHDRAW"))
+        .thenReturn(
+            TransactionResult.builder().transactionId(11L).balance(Money.parse("50.00")).build());
 
-    transactionService.withdraw(TEST_USER_ID, new BigDecimal("50.00"));
+    TransactionResult result = transactionService.withdraw(TEST_USER_ID, Money.parse("50.00"));
 
-    verify(database).createTransaction(TEST_USER_ID, new BigDecimal("50.00"), "WITHDRAW");
+    assertEquals(Money.parse("50.00"), result.getBalance());
+    verify(database).createTransaction(TEST_USER_ID, Money.parse("50.00"), "WITHDRAW");
   }
 
   @Test
@@ -94,7 +114,7 @@ class TransactionServiceTest {
     IllegalArgumentException exception =
         assertThrows(
             IllegalArgumentException.class,
-            () -> transactionService.transfer(TEST_USER_ID, TARGET_USER_ID, new BigDecimal("0.5")));
+            () -> transactionService.transfer(TEST_USER_ID, TARGET_USER_ID, Money.parse("0.5")));
 
     assertEquals("Invalid amount, must be grater than 1", exception.getMessage());
     verifyNoInteractions(database);
@@ -105,9 +125,7 @@ class TransactionServiceTest {
     IllegalArgumentException exception =
         assertThrows(
             IllegalArgumentException.class,
-            () ->
-                transactionService.transfer(
-                    TEST_USER_ID, TARGET_USER_ID, new BigDecimal("-50.00")));
+            () -> transactionService.transfer(TEST_USER_ID, TARGET_USER_ID, Money.parse("-50.00")));
 
     assertEquals("Transfer amount must be positive", exception.getMessage());
     verifyNoInteractions(database);
@@ -118,7 +136,7 @@ class TransactionServiceTest {
     IllegalArgumentException exception =
         assertThrows(
             IllegalArgumentException.class,
-            () -> transactionService.transfer(TEST_USER_ID, TEST_USER_ID, new BigDecimal("50.00")));
+            () -> transactionService.transfer(TEST_USER_ID, TEST_USER_ID, Money.parse("50.00")));
 
     assertEquals("Cannot transfer to same account", exception.getMessage());
     verifyNoInteractions(database);
@@ -126,25 +144,225 @@ class TransactionServiceTest {
 
   @Test
   void transfer_insufficientBalance_ThrowsException() {
-    when(balanceService.getBalance(TEST_USER_ID)).thenReturn(new BigDecimal("40.00"));
+    doThrow(new InsufficientFundsException("Insufficient funds. Available: 40.0000"))
+        .when(database)
+        .performTransfer(TEST_USER_ID, TARGET_USER_ID, Money.parse("50.00"));
 
     InsufficientFundsException exception =
         assertThrows(
             InsufficientFundsException.class,
-            () ->
-                transactionService.transfer(TEST_USER_ID, TARGET_USER_ID, new BigDecimal("50.00")));
+            () -> transactionService.transfer(TEST_USER_ID, TARGET_USER_ID, Money.parse("50.00")));
 
     assertEquals("Insufficient funds for transfer", exception.getMessage());
-    verify(balanceService).getBalance(TEST_USER_ID);
-    verifyNoInteractions(database);
   }
 
   @Test
   void transfer_validAmount_Success() {
-    when(balanceService.getBalance(TEST_USER_ID)).thenReturn(new BigDecimal("100.00"));
+    transactionService.transfer(TEST_USER_ID, TARGET_USER_ID, Money.parse("50.00"));
+
+    verify(database).performTransfer(TEST_USER_ID, TARGET_USER_ID, Money.parse("50.00"));
+  }
+
+  @Test
+  void transferBatch_unknownRecipient_ThrowsException() {
+    when(database.getUserIdsByUsernames(anyCollection())).thenReturn(Map.of("alice", 2L));
+
+    IllegalArgumentException exception =
+        assertThrows(
+            IllegalArgumentException.class,
+            () ->
+                transactionService.transferBatch(
+                    TEST_USER_ID,
+                    List.of(payoutItem("alice", "10.00"), payoutItem("ghost", "10.00"))));
+
+    assertEquals("User not found: ghost", exception.getMessage());
+    verify(database, never()).performBatchTransfer(anyLong(), anyList());
+  }
+
+  @Test
+  void transferBatch_toSelf_ThrowsException() {
+    when(database.getUserIdsByUsernames(anyCollection())).thenReturn(Map.of("me", TEST_USER_ID));
+
+    IllegalArgumentException exception =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> transactionService.transferBatch(TEST_USER_ID, List.of(payoutItem("me", "10"))));
+
+    assertEquals("Cannot transfer to same account", exception.getMessage());
+  }
+
+  @Test
+  void transferBatch_amountLessThanOne_ThrowsException() {
+    IllegalArgumentException exception =
+        assertThrows(
+            IllegalArgumentException.class,
+            () ->
+                transactionService.transferBatch(
+                    TEST_USER_ID, List.of(payoutItem("alice", "0.5"))));
+
+    assertEquals("Invalid amount, must be grater than 1", exception.getMessage());
+    verifyNoInteractions(database);
+  }
+
+  @Test
+  void transferBatch_validItems_ResolvesRecipientsOnce() {
+    when(database.getUserIdsByUsernames(anyCollection()))
+        .thenReturn(Map.of("alice", 2L, "bob", 3L));
+    when(database.performBatchTransfer(eq(TEST_USER_ID), anyList()))
+        .thenReturn(
+            PayoutResult.builder()
+                .recipients(3)
+                .totalAmount(Money.parse("30"))
+                .balance(Money.parse("70"))
+                .build());
+
+    PayoutResult result =
+        transactionService.transferBatch(
+            TEST_USER_ID,
+            List.of(payoutItem("alice", "10"), payoutItem("bob", "10"), payoutItem("alice", "10")));
+
+    assertEquals(3, result.getRecipients());
+    verify(database, times(1)).getUserIdsByUsernames(anyCollection());
+    verify(database)
+        .performBatchTransfer(
+            eq(TEST_USER_ID),
+            argThat(
+                items ->
+                    items.size() == 3
+                        && items.get(0).getUserId() == 2L
+                        && items.get(1).getUserId() == 3L));
+  }
+
+  @Test
+  void history_limitOutOfRange_ThrowsException() {
+    IllegalArgumentException exception =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> transactionService.history(TEST_USER_ID, null, 1001, transaction -> {}));
+
+    assertEquals("Invalid limit, must be between 1 and 1000", exception.getMessage());
+    verifyNoInteractions(database);
+  }
+
+  @Test
+  void history_fullPage_ReturnsLastIdAsCursor() {
+    givenHistory(30L, 20L);
+
+    List<Transaction> received = new ArrayList<>();
+    Long cursor = transactionService.history(TEST_USER_ID, 31L, 2, received::add);
 
-    transactionService.transfer(TEST_USER_ID, TARGET_USER_ID, new BigDecimal("50.00"));
+    assertEquals(2, received.size());
+    assertEquals(20L, cursor);
+    verify(database).streamTransactionHistory(eq(TEST_USER_ID), eq(31L), eq(2), any());
+  }
+
+  @Test
+  void history_partialPage_ReturnsNoCursor() {
+    givenHistory(5L);
+
+    Long cursor = transactionService.history(TEST_USER_ID, null, 20, transaction -> {});
+
+    assertNull(cursor);
+  }
+
+  @Test
+  void export_emptyRange_ThrowsException() {
+    TransactionExport export =
+        TransactionExport.builder()
+            .file(Paths.get("ledger.csv"))
+            .from(LocalDate.of(2026, 2, 1))
+            .to(LocalDate.of(2026, 2, 1))
+            .build();
+
+    IllegalArgumentException exception =
+        assertThrows(IllegalArgumentException.class, () -> transactionService.export(export));
+
+    assertEquals("Invalid range, --from must be before --to", exception.getMessage());
+    verifyNoInteractions(database);
+  }
+
+  @Test
+  void dailyTotals_emptyRange_ThrowsException() {
+    LocalDate day = LocalDate.of(2026, 2, 1);
+
+    IllegalArgumentException exception =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> transactionService.dailyTotals(TEST_USER_ID, day, day));
+
+    assertEquals("Invalid range, --from must be before --to", exception.getMessage());
+    verifyNoInteractions(database);
+  }
+
+  @Test
+  void dailyTotals_rangeTooLong_ThrowsException() {
+    LocalDate from = LocalDate.of(2025, 1, 1);
+
+    IllegalArgumentException exception =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> transactionService.dailyTotals(TEST_USER_ID, from, from.plusDays(367)));
+
+    assertEquals("Invalid range, must span at most 366 days", exception.getMessage());
+    verifyNoInteractions(database);
+  }
+
+  @Test
+  void dailyTotals_validRange_DelegatesToDatabase() {
+    LocalDate from = LocalDate.of(2026, 2, 1);
+    List<DailyTotal> totals =
+        List.of(
+            DailyTotal.builder()
+                .day(from)
+                .type(DailyTotal.Type.DEPOSIT)
+                .count(2)
+                .amount(Money.parse("30"))
+                .build());
+    when(database.getDailyTotals(TEST_USER_ID, from, from.plusDays(1))).thenReturn(totals);
+
+    assertEquals(totals, transactionService.dailyTotals(TEST_USER_ID, from, from.plusDays(1)));
+  }
+
+  @Test
+  void setBalanceSlots_tooMany_ThrowsException() {
+    IllegalArgumentException exception =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> transactionService.setBalanceSlots(TEST_USER_ID, 65));
+
+    assertEquals("Invalid number of slots, must be between 0 and 64", exception.getMessage());
+    verifyNoInteractions(database);
+  }
+
+  @Test
+  void setBalanceSlots_valid_DelegatesToDatabase() {
+    transactionService.setBalanceSlots(TEST_USER_ID, 8);
+
+    verify(database).setBalanceSlots(TEST_USER_ID, 8);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void givenHistory(Long... ids) {
+    doAnswer(
+            invocation -> {
+              Consumer<Transaction> consumer = invocation.getArgument(3);
+              for (Long id : ids) {
+                consumer.accept(
+                    Transaction.builder()
+                        .id(id)
+                        .fromUserId(TEST_USER_ID)
+                        .toUserId(TEST_USER_ID)
+                        .amount(Money.parse("10"))
+                        .type(Transaction.TransactionType.DEPOSIT)
+                        .build());
+              }
+              return null;
+            })
+        .when(database)
+        .streamTransactionHistory(anyLong(), any(), anyInt(), any(Consumer.class));
+  }
 
-    verify(database).performTransfer(TEST_USER_ID, TARGET_USER_ID, new BigDecimal("50.00"));
+  private PayoutItem payoutItem(String username, String amount) {
+    return PayoutItem.builder().username(username).amount(Money.parse(amount)).build();
   }
 }
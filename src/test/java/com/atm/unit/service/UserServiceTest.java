@@ -2,18 +2,27 @@ package com.atm.unit.service;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 import com.atm.database.Database;
 import com.atm.exception.ActiveSessionException;
+import com.atm.model.ImportResult;
 import com.atm.model.Session;
 import com.atm.model.User;
+import com.atm.model.UserImport;
 import com.atm.service.session.SessionService;
+import com.atm.service.user.KnownUsernames;
 import com.atm.service.user.UserServiceImpl;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiConsumer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -56,6 +65,74 @@ public class UserServiceTest {
     verify(database).createUser(eq(USERNAME), any());
   }
 
+  @Test
+  void register_ExistingUsername_ThrowsException() {
+    when(database.getUserIdByUsername(USERNAME)).thenReturn(Optional.of(USER_ID));
+
+    assertThrows(IllegalArgumentException.class, () -> userService.register(USERNAME, PASSWORD));
+    verify(database, never()).createUser(anyString(), anyString());
+  }
+
+  @Test
+  void getUserIdByUsername_CachesHitsAndMisses() {
+    when(database.getUserIdByUsername(USERNAME)).thenReturn(Optional.of(USER_ID));
+    when(database.getUserIdByUsername("ghost")).thenReturn(Optional.empty());
+
+    assertEquals(Optional.of(USER_ID), userService.getUserIdByUsername(USERNAME));
+    assertEquals(Optional.of(USER_ID), userService.getUserIdByUsername(USERNAME));
+    assertEquals(Optional.empty(), userService.getUserIdByUsername("ghost"));
+    assertEquals(Optional.empty(), userService.getUserIdByUsername("ghost"));
+
+    verify(database).getUserIdByUsername(USERNAME);
+    verify(database).getUserIdByUsername("ghost");
+    verify(database, never()).getUserByUsername(anyString());
+  }
+
+  @Test
+  void getUserIdByUsername_RegisterInvalidatesCachedMiss() {
+    assertEquals(Optional.empty(), userService.getUserIdByUsername(USERNAME));
+
+    when(database.createUser(anyString(), anyString())).thenReturn(USER_ID);
+    userService.register(USERNAME, PASSWORD);
+    when(database.getUserIdByUsername(USERNAME)).thenReturn(Optional.of(USER_ID));
+
+    assertEquals(Optional.of(USER_ID), userService.getUserIdByUsername(USERNAME));
+  }
+
+  @Test
+  void knownUsernames_UnknownUsernameSkipsDatabase() {
+    doAnswer(
+            invocation -> {
+              BiConsumer<Long, String> consumer = invocation.getArgument(1);
+              consumer.accept(USER_ID, USERNAME);
+              return null;
+            })
+        .when(database)
+        .streamUsernames(eq(0L), any());
+    when(database.getUserIdByUsername(USERNAME)).thenReturn(Optional.of(USER_ID));
+    userService = new UserServiceImpl(database, sessionService, KnownUsernames.load(database));
+
+    assertEquals(Optional.empty(), userService.getUserIdByUsername("ghost"));
+    assertEquals(Optional.empty(), userService.login("ghost", PASSWORD));
+    assertEquals(Optional.of(USER_ID), userService.getUserIdByUsername(USERNAME));
+    assertThrows(IllegalArgumentException.class, () -> userService.register(USERNAME, PASSWORD));
+
+    verify(database, never()).getUserIdByUsername("ghost");
+    verify(database, never()).getUserByUsername("ghost");
+  }
+
+  @Test
+  void knownUsernames_RegisteredUserIsKnownRightAway() {
+    userService = new UserServiceImpl(database, sessionService, KnownUsernames.load(database));
+    when(database.createUser(anyString(), anyString())).thenReturn(USER_ID);
+
+    userService.register(USERNAME, PASSWORD);
+    when(database.getUserIdByUsername(USERNAME)).thenReturn(Optional.of(USER_ID));
+
+    verify(database, never()).getUserIdByUsername(USERNAME);
+    assertEquals(Optional.of(USER_ID), userService.getUserIdByUsername(USERNAME));
+  }
+
   @Test
   void register_InvalidUsername_ThrowsException() {
     assertThrows(
@@ -154,4 +231,53 @@ public class UserServiceTest {
 
     verify(sessionService, never()).terminateSession(anyLong());
   }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void importUsers_MixedChunk_ReportsDuplicatesAndRejected() {
+    when(database.createUsers(anyList())).thenReturn(List.of("existing1"));
+
+    ImportResult result =
+        userService.importUsers(
+            List.of(
+                userImport(1, "alice1", "Password1"),
+                userImport(2, "a!", "Password1"),
+                userImport(3, "alice1", "Password1"),
+                userImport(4, "existing1", "Password1")));
+
+    assertEquals(1, result.getImported());
+    assertEquals(List.of("alice1", "existing1"), result.getDuplicates());
+    assertEquals(1, result.getRejected().size());
+    assertTrue(result.getRejected().get(0).startsWith("line 2: "));
+    verify(database)
+        .createUsers(
+            argThat(
+                users ->
+                    users.size() == 2
+                        && BCrypt.checkpw("Password1", users.get(0).getPasswordHash())));
+  }
+
+  @Test
+  void importUsers_AlreadyRegistered_SkipsHashingAndInsert() {
+    when(database.getUserIdsByUsernames(anyCollection())).thenReturn(Map.of("alice1", 5L));
+
+    ImportResult result = userService.importUsers(List.of(userImport(1, "alice1", "Password1")));
+
+    assertEquals(0, result.getImported());
+    assertEquals(List.of("alice1"), result.getDuplicates());
+    verify(database, never()).createUsers(anyList());
+  }
+
+  @Test
+  void importUsers_AllRejected_SkipsDatabase() {
+    ImportResult result = userService.importUsers(List.of(userImport(1, "ab", "short")));
+
+    assertEquals(0, result.getImported());
+    assertEquals(1, result.getRejected().size());
+    verifyNoInteractions(database);
+  }
+
+  private UserImport userImport(int line, String username, String password) {
+    return UserImport.builder().line(line).username(username).password(password).build();
+  }
 }